@@ -7,24 +7,42 @@ import liquibase.database.jvm.JdbcConnection;
 import liquibase.resource.ClassLoaderResourceAccessor;
 import ru.ylab.habittracker.controllers.*;
 import ru.ylab.habittracker.dto.*;
+import ru.ylab.habittracker.jobs.HabitAnalyticsJob;
+import ru.ylab.habittracker.jobs.HabitCompletionPartitionJob;
+import ru.ylab.habittracker.jobs.RollupCatchUpJob;
+import ru.ylab.habittracker.jobs.StreakRepairJob;
 import ru.ylab.habittracker.models.Habit;
+import ru.ylab.habittracker.models.HabitCompletionDays;
 import ru.ylab.habittracker.repositories.HabitCompletionRepository;
 import ru.ylab.habittracker.repositories.HabitsRepository;
 import ru.ylab.habittracker.repositories.UsersRepository;
+import ru.ylab.habittracker.repositories.impl.AnalyticsSummaryRepositoryImpl;
+import ru.ylab.habittracker.repositories.impl.CachingUsersRepository;
+import ru.ylab.habittracker.repositories.impl.HabitCompletionPartitionRepositoryImpl;
 import ru.ylab.habittracker.repositories.impl.HabitCompletionRepositoryImpl;
 import ru.ylab.habittracker.repositories.impl.HabitsRepositoryImpl;
 import ru.ylab.habittracker.repositories.impl.UsersRepositoryImpl;
+import ru.ylab.habittracker.services.AnalyticsService;
+import ru.ylab.habittracker.services.impl.AnalyticsServiceImpl;
 import ru.ylab.habittracker.services.impl.AuthenticationService;
 import ru.ylab.habittracker.services.HabitCompletionService;
 import ru.ylab.habittracker.services.HabitsService;
 import ru.ylab.habittracker.services.UsersService;
+import ru.ylab.habittracker.services.impl.HabitCompletionCalendarCache;
 import ru.ylab.habittracker.services.impl.HabitCompletionServiceImpl;
+import ru.ylab.habittracker.services.impl.HabitCompletionWriteBuffer;
 import ru.ylab.habittracker.services.impl.HabitsServiceImpl;
 import ru.ylab.habittracker.services.impl.UsersServiceImpl;
 import ru.ylab.habittracker.utils.Frequency;
 
+import java.sql.Connection;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class App {
     private final AuthenticationController authenticationController;
@@ -32,31 +50,75 @@ public class App {
     private final HabitsController habitsController;
     private final HabitCompletionController habitCompletionController;
     private final AdministrationController administrationController;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "habit-tracker-jobs");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public App() {
         DatabaseConnection databaseConnection = new DatabaseConnection(PropertyLoader.getProperty("db.url"),
-                PropertyLoader.getProperty("db.username"), PropertyLoader.getProperty("db.password"));
-        try {
-            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(databaseConnection.getConnection()));
+                PropertyLoader.getProperty("db.username"), PropertyLoader.getProperty("db.password"),
+                PoolSettings.fromProperties());
+        try (Connection connection = databaseConnection.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
             Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
             liquibase.update();
         } catch (Exception e) {
             System.out.println(e.getMessage());
         }
-        UsersRepository usersRepository = new UsersRepositoryImpl(databaseConnection);
+        UsersRepository usersRepository = new CachingUsersRepository(new UsersRepositoryImpl(databaseConnection),
+                PropertyLoader.getIntProperty("cache.users.maxSize", 10_000),
+                PropertyLoader.getLongProperty("cache.users.ttlMs", 60_000));
         HabitsRepository habitsRepository = new HabitsRepositoryImpl(databaseConnection);
-        HabitCompletionRepository habitCompletionRepository = new HabitCompletionRepositoryImpl(databaseConnection);
+        HabitCompletionRepository habitCompletionRepository = new HabitCompletionRepositoryImpl(databaseConnection,
+                PropertyLoader.getIntProperty("db.batchSize", HabitCompletionRepositoryImpl.DEFAULT_BATCH_SIZE));
 
-        UsersService usersService = new UsersServiceImpl(usersRepository);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(databaseConnection);
+        UsersService usersService = new UsersServiceImpl(usersRepository, transactionTemplate);
         AuthenticationService authenticationService = new AuthenticationService(usersService, usersRepository);
-        HabitsService habitsService = new HabitsServiceImpl(usersRepository, habitsRepository);
-        HabitCompletionService habitCompletionService = new HabitCompletionServiceImpl(habitsRepository, habitCompletionRepository);
+        HabitCompletionCalendarCache calendarCache = new HabitCompletionCalendarCache(habitCompletionRepository,
+                PropertyLoader.getLongProperty("cache.completions.maxBytes", HabitCompletionCalendarCache.DEFAULT_MAX_BYTES),
+                PropertyLoader.getLongProperty("cache.completions.ttlMs", HabitCompletionCalendarCache.DEFAULT_TTL_MILLIS));
+        HabitsService habitsService = new HabitsServiceImpl(usersRepository, habitsRepository, calendarCache,
+                transactionTemplate);
+        HabitCompletionWriteBuffer writeBuffer = null;
+        if (Boolean.parseBoolean(PropertyLoader.getProperty("writeBehind.enabled", "false"))) {
+            writeBuffer = new HabitCompletionWriteBuffer(habitCompletionRepository,
+                    PropertyLoader.getIntProperty("writeBehind.capacity", HabitCompletionWriteBuffer.DEFAULT_CAPACITY),
+                    PropertyLoader.getIntProperty("writeBehind.batchSize", HabitCompletionWriteBuffer.DEFAULT_MAX_BATCH_SIZE),
+                    PropertyLoader.getLongProperty("writeBehind.flushIntervalMs", HabitCompletionWriteBuffer.DEFAULT_FLUSH_INTERVAL_MILLIS));
+        }
+        HabitCompletionService habitCompletionService = new HabitCompletionServiceImpl(habitsRepository, habitCompletionRepository,
+                calendarCache, writeBuffer);
+
+        long partitionsIntervalHours = PropertyLoader.getLongProperty("jobs.partitions.intervalHours", 24);
+        scheduler.scheduleWithFixedDelay(new HabitCompletionPartitionJob(new HabitCompletionPartitionRepositoryImpl(databaseConnection),
+                        PropertyLoader.getIntProperty("jobs.partitions.monthsAhead", 3),
+                        PropertyLoader.getIntProperty("jobs.partitions.retentionMonths", 0), calendarCache::invalidateAll),
+                0, partitionsIntervalHours, TimeUnit.HOURS);
+        long streakRepairIntervalHours = PropertyLoader.getLongProperty("jobs.streakRepair.intervalHours", 24);
+        scheduler.scheduleWithFixedDelay(new StreakRepairJob(habitsRepository, habitCompletionRepository,
+                        PropertyLoader.getIntProperty("jobs.streakRepair.batchSize", StreakRepairJob.DEFAULT_BATCH_SIZE)),
+                streakRepairIntervalHours, streakRepairIntervalHours, TimeUnit.HOURS);
+        if (Boolean.parseBoolean(PropertyLoader.getProperty("jobs.rollupCatchUp.onStartup", "false"))) {
+            scheduler.execute(new RollupCatchUpJob(habitsRepository, habitCompletionRepository,
+                    PropertyLoader.getIntProperty("jobs.rollupCatchUp.batchSize", RollupCatchUpJob.DEFAULT_BATCH_SIZE)));
+        }
+        HabitAnalyticsJob habitAnalyticsJob = new HabitAnalyticsJob(habitsRepository, habitCompletionRepository,
+                new AnalyticsSummaryRepositoryImpl(databaseConnection),
+                PropertyLoader.getIntProperty("jobs.analytics.parallelism", 4),
+                PropertyLoader.getIntProperty("jobs.analytics.topHabits", 10),
+                PropertyLoader.getIntProperty("jobs.analytics.periodDays", 30));
+        long analyticsIntervalHours = PropertyLoader.getLongProperty("jobs.analytics.intervalHours", 24);
+        scheduler.scheduleWithFixedDelay(habitAnalyticsJob, analyticsIntervalHours, analyticsIntervalHours, TimeUnit.HOURS);
+        AnalyticsService analyticsService = new AnalyticsServiceImpl(usersRepository, habitAnalyticsJob);
 
         usersController = new UsersController(usersService);
         authenticationController = new AuthenticationController(authenticationService);
         habitsController = new HabitsController(habitsService);
         habitCompletionController = new HabitCompletionController(habitCompletionService);
-        administrationController = new AdministrationController(usersService);
+        administrationController = new AdministrationController(usersService, analyticsService);
     }
 
     public void start(Scanner scanner) {
@@ -156,7 +218,7 @@ public class App {
 
     private void manageHabits(Scanner scanner, Long id) {
         while (true) {
-            switch (getOption(scanner, "1. Create Habit\n2. Edit Habit\n3. Delete Habit\n4. View All Habits\n5. View Habits by Creation Date\n6. Track Habit Completion\n7. Statistics and Analytics\n8. Return back\nAny other key - Back\nChoose an option:")) {
+            switch (getOption(scanner, "1. Create Habit\n2. Edit Habit\n3. Delete Habit\n4. View All Habits\n5. View Habits by Creation Date\n6. Track Habit Completion\n7. Statistics and Analytics\n8. Dashboard\n9. Return back\nAny other key - Back\nChoose an option:")) {
                 case 1 -> createHabit(scanner, id);
                 case 2 -> updateHabit(scanner);
                 case 3 -> deleteHabit(scanner);
@@ -164,7 +226,8 @@ public class App {
                 case 5 -> viewHabitsByDate(scanner, id);
                 case 6 -> trackHabitCompletion(scanner);
                 case 7 -> statisticsAndAnalytics(scanner);
-                case 8 -> {
+                case 8 -> viewDashboard(scanner, id);
+                case 9 -> {
                     return;
                 }
             }
@@ -206,6 +269,23 @@ public class App {
         }
     }
 
+    private void viewDashboard(Scanner scanner, Long id) {
+        LocalDate startDate = getDate(scanner);
+        LocalDate endDate = getDate(scanner);
+        if (startDate == null || endDate == null) {
+            return;
+        }
+        BaseResponse<List<HabitCompletionDays>> response = habitsController.findDashboard(id, startDate, endDate);
+        if (response.data() == null) {
+            System.out.println(response.status());
+            return;
+        }
+        for (HabitCompletionDays habitCompletionDays : response.data()) {
+            System.out.println(habitCompletionDays.habit() + " completions: "
+                    + Arrays.stream(habitCompletionDays.completionDays()).mapToObj(LocalDate::ofEpochDay).toList());
+        }
+    }
+
     private void trackHabitCompletion(Scanner scanner) {
         Long id = getId(scanner);
         habitCompletionController.markCompletion(id);
@@ -214,11 +294,13 @@ public class App {
 
     private void statisticsAndAnalytics(Scanner scanner) {
         while (true) {
-            switch (getOption(scanner, "1. Streak Count\n2. Completion Percentage\n3. Progress Report\nAny other key - Back\nChoose an option:")) {
+            switch (getOption(scanner, "1. Streak Count\n2. Completion Percentage\n3. Progress Report\n4. Streak History\n5. Completion Counts\nAny other key - Back\nChoose an option:")) {
                 case 1 -> calculateStreak(scanner);
                 case 2 -> calculateCompletionPercentage(scanner);
                 case 3 -> generateProgressReport(scanner);
-                case 4 -> {
+                case 4 -> System.out.println(habitCompletionController.calculateStreakHistory(getId(scanner)));
+                case 5 -> showCompletionCounts(scanner);
+                case 6 -> {
                     return;
                 }
             }
@@ -239,6 +321,16 @@ public class App {
         }
     }
 
+    private void showCompletionCounts(Scanner scanner) {
+        Long id = getId(scanner);
+        String period = prompt(scanner, "Enter period (week/month): ");
+        LocalDate startDate = getDate(scanner);
+        LocalDate endDate = getDate(scanner);
+        if (startDate != null && endDate != null) {
+            System.out.println(habitCompletionController.getCompletionCounts(id, period, startDate, endDate));
+        }
+    }
+
     private void generateProgressReport(Scanner scanner) {
         Long id = getId(scanner);
         LocalDate startDate = getDate(scanner);
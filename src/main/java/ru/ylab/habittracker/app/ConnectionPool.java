@@ -0,0 +1,388 @@
+package ru.ylab.habittracker.app;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный пул JDBC-соединений.
+ *
+ * <p>Пул выдаёт логические соединения: их закрытие возвращает физическое соединение
+ * в пул, а не разрывает его. Количество физических соединений ограничено
+ * {@link PoolSettings#maxSize()}, фоновая задача поддерживает не менее
+ * {@link PoolSettings#minIdle()} простаивающих соединений и закрывает лишние,
+ * простаивающие дольше {@link PoolSettings#idleTimeoutMillis()}.</p>
+ *
+ * <p>Каждое физическое соединение содержит {@link StatementCache}, поэтому подготовленные
+ * выражения переживают возврат соединения в пул и переиспользуются следующими клиентами.</p>
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final long IDLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final String url;
+    private final Properties driverProperties = new Properties();
+    private final PoolSettings settings;
+    private final Semaphore permits;
+    private final BlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger waitingThreads = new AtomicInteger();
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Создает пул соединений и запускает фоновое обслуживание.
+     *
+     * @param url      адрес базы данных.
+     * @param username имя пользователя базы данных.
+     * @param password пароль пользователя базы данных.
+     * @param settings настройки пула.
+     */
+    public ConnectionPool(String url, String username, String password, PoolSettings settings) {
+        this.url = url;
+        this.settings = settings;
+        if (username != null) {
+            driverProperties.setProperty("user", username);
+        }
+        if (password != null) {
+            driverProperties.setProperty("password", password);
+        }
+        this.permits = new Semaphore(settings.maxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1_000, Math.min(settings.idleTimeoutMillis() / 2, 30_000));
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Выдает соединение из пула, при необходимости ожидая освобождения соединения
+     * не дольше {@link PoolSettings#borrowTimeoutMillis()}.
+     *
+     * @return логическое соединение; его закрытие возвращает соединение в пул.
+     * @throws SQLTransientConnectionException если время ожидания истекло.
+     * @throws SQLException если пул закрыт или не удалось открыть новое соединение.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.borrowTimeoutMillis());
+        waitingThreads.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(settings.borrowTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw timeout();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waitingThreads.decrementAndGet();
+        }
+
+        try {
+            PooledConnection pooledConnection = acquire(deadline);
+            borrowed.increment();
+            return pooledConnection.open();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает снимок статистики пула.
+     *
+     * @return статистика пула.
+     */
+    public PoolStatistics getStatistics() {
+        return new PoolStatistics(totalConnections.get(), idleConnections.size(), activeConnections.get(),
+                waitingThreads.get(), borrowed.sum(), created.sum(), destroyed.sum(), timeouts.sum(),
+                validationFailures.sum(), statementCacheHits.sum(), statementCacheMisses.sum());
+    }
+
+    /**
+     * Закрывает пул: простаивающие соединения закрываются сразу,
+     * выданные — при возврате в пул.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            destroy(connection);
+        }
+    }
+
+    private PooledConnection acquire(long deadline) throws SQLException {
+        while (true) {
+            PooledConnection candidate = idleConnections.pollFirst();
+            if (candidate == null && reserveSlot()) {
+                return create();
+            }
+            if (candidate == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw timeout();
+                }
+                try {
+                    candidate = idleConnections.pollFirst(Math.min(remaining, IDLE_POLL_NANOS), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection", e);
+                }
+                if (candidate == null) {
+                    continue;
+                }
+            }
+            if (isUsable(candidate)) {
+                return candidate;
+            }
+            validationFailures.increment();
+            destroy(candidate);
+        }
+    }
+
+    private boolean reserveSlot() {
+        int current;
+        do {
+            current = totalConnections.get();
+            if (current >= settings.maxSize()) {
+                return false;
+            }
+        } while (!totalConnections.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private PooledConnection create() throws SQLException {
+        try {
+            Connection physical = DriverManager.getConnection(url, driverProperties);
+            created.increment();
+            return new PooledConnection(physical);
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        try {
+            if (connection.physical.isClosed()) {
+                return false;
+            }
+            long idleNanos = System.nanoTime() - connection.lastUsedNanos;
+            if (idleNanos < TimeUnit.MILLISECONDS.toNanos(settings.validateAfterIdleMillis())) {
+                return true;
+            }
+            return connection.physical.isValid(settings.validationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection connection) {
+        activeConnections.decrementAndGet();
+        try {
+            connection.lastUsedNanos = System.nanoTime();
+            connection.statementCache.releaseAll();
+            if (closed || connection.broken || !connection.reset()) {
+                destroy(connection);
+                return;
+            }
+            idleConnections.offerFirst(connection);
+            if (closed && idleConnections.remove(connection)) {
+                destroy(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection connection) {
+        totalConnections.decrementAndGet();
+        destroyed.increment();
+        connection.statementCache.closeAll();
+        try {
+            connection.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Ошибка при закрытии соединения с базой данных: " + e.getMessage());
+        }
+    }
+
+    private SQLException timeout() {
+        timeouts.increment();
+        return new SQLTransientConnectionException(
+                "Timed out after " + settings.borrowTimeoutMillis() + " ms waiting for a database connection");
+    }
+
+    /**
+     * Закрывает соединения, простаивающие дольше допустимого, и пополняет пул
+     * до минимального количества простаивающих соединений.
+     */
+    private void housekeep() {
+        if (closed) {
+            return;
+        }
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(settings.idleTimeoutMillis());
+        long now = System.nanoTime();
+        List<PooledConnection> expired = new ArrayList<>();
+        Iterator<PooledConnection> oldestFirst = idleConnections.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            PooledConnection connection = oldestFirst.next();
+            if (now - connection.lastUsedNanos > idleTimeoutNanos) {
+                expired.add(connection);
+            }
+        }
+        for (PooledConnection connection : expired) {
+            if (totalConnections.get() <= settings.minIdle()) {
+                break;
+            }
+            if (idleConnections.remove(connection)) {
+                destroy(connection);
+            }
+        }
+
+        try {
+            while (!closed && idleConnections.size() < settings.minIdle() && reserveSlot()) {
+                idleConnections.offerLast(create());
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Ошибка при пополнении пула соединений: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Физическое соединение, принадлежащее пулу.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile long lastUsedNanos = System.nanoTime();
+        private volatile boolean broken;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new StatementCache(physical, settings.statementCacheSize(),
+                    statementCacheHits, statementCacheMisses);
+        }
+
+        private Connection open() {
+            activeConnections.incrementAndGet();
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new LogicalConnection(this));
+        }
+
+        /**
+         * Возвращает соединение в исходное состояние перед повторной выдачей.
+         *
+         * @return true, если соединение можно использовать повторно.
+         */
+        private boolean reset() {
+            try {
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (physical.isReadOnly()) {
+                    physical.setReadOnly(false);
+                }
+                physical.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Логическое соединение, выданное клиенту. Закрытие возвращает физическое
+     * соединение в пул, после чего логическое соединение становится недоступным.
+     */
+    private final class LogicalConnection implements InvocationHandler {
+        private final PooledConnection pooledConnection;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private LogicalConnection(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (closed.compareAndSet(false, true)) {
+                        release(pooledConnection);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed.get() || pooledConnection.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "PooledConnection[" + pooledConnection.physical + "]";
+                }
+                default -> {
+                }
+            }
+            if (closed.get()) {
+                throw new SQLException("Connection is closed", "08003");
+            }
+            try {
+                if (pooledConnection.statementCache.supports(method, args)) {
+                    return pooledConnection.statementCache.prepare(args);
+                }
+                return method.invoke(pooledConnection.physical, args);
+            } catch (SQLException e) {
+                if (isFatal(e)) {
+                    pooledConnection.broken = true;
+                }
+                throw e;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sqlException && isFatal(sqlException)) {
+                    pooledConnection.broken = true;
+                }
+                throw cause;
+            }
+        }
+
+        private boolean isFatal(SQLException e) {
+            String sqlState = e.getSQLState();
+            return sqlState != null && sqlState.startsWith("08");
+        }
+    }
+}
@@ -1,34 +1,54 @@
 package ru.ylab.habittracker.app;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
  * Класс для установления подключения к базе данных с использованием свойств конфигурации.
+ * Соединения выдаются из ограниченного пула {@link ConnectionPool}.
  */
-public class DatabaseConnection {
-    private final String url;
-    private final String username;
-    private final String password;
+public class DatabaseConnection implements AutoCloseable {
+    private final ConnectionPool connectionPool;
 
     public DatabaseConnection(String url, String username, String password) {
-        this.url = url;
-        this.username = username;
-        this.password = password;
+        this(url, username, password, PoolSettings.defaults());
+    }
+
+    public DatabaseConnection(String url, String username, String password, PoolSettings poolSettings) {
+        this.connectionPool = new ConnectionPool(url, username, password, poolSettings);
     }
 
     /**
-     * Получает подключение к базе данных на основе значений, загруженных из файла конфигурации.
+     * Получает подключение к базе данных из пула соединений.
+     * Закрытие полученного соединения возвращает его в пул.
+     * Внутри {@link TransactionTemplate} возвращается соединение транзакции текущего потока,
+     * закрытие и фиксация которого откладываются до завершения транзакции.
      *
      * @return объект {@link Connection}, представляющий соединение с базой данных.
-     * @throws SQLException если отсутствуют необходимые свойства для подключения или возникает ошибка при установке соединения.
+     * @throws SQLException если истекло время ожидания свободного соединения или возникает ошибка при установке соединения.
      */
     public Connection getConnection() throws SQLException {
-        try {
-            return DriverManager.getConnection(url, username, password);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        TransactionScope transaction = TransactionScope.current();
+        if (transaction != null && transaction.owner() == this) {
+            return transaction.participant();
         }
+        return connectionPool.getConnection();
+    }
+
+    /**
+     * Возвращает статистику пула соединений.
+     *
+     * @return снимок статистики пула.
+     */
+    public PoolStatistics getPoolStatistics() {
+        return connectionPool.getStatistics();
+    }
+
+    /**
+     * Закрывает пул соединений.
+     */
+    @Override
+    public void close() {
+        connectionPool.close();
     }
 }
@@ -0,0 +1,63 @@
+package ru.ylab.habittracker.app;
+
+/**
+ * Настройки пула соединений с базой данных.
+ *
+ * @param minIdle                 минимальное количество простаивающих соединений, поддерживаемых пулом.
+ * @param maxSize                 максимальное количество соединений (выданных и простаивающих).
+ * @param idleTimeoutMillis       время простоя, после которого лишнее соединение закрывается.
+ * @param borrowTimeoutMillis     максимальное время ожидания свободного соединения.
+ * @param validationTimeoutSeconds время ожидания ответа при проверке соединения.
+ * @param validateAfterIdleMillis время простоя, после которого соединение проверяется перед выдачей.
+ * @param statementCacheSize      количество подготовленных выражений, кэшируемых на одно соединение (0 — кэш выключен).
+ */
+public record PoolSettings(int minIdle,
+                           int maxSize,
+                           long idleTimeoutMillis,
+                           long borrowTimeoutMillis,
+                           int validationTimeoutSeconds,
+                           long validateAfterIdleMillis,
+                           int statementCacheSize) {
+
+    public PoolSettings {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool max size must be positive: " + maxSize);
+        }
+        if (minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Pool min idle must be between 0 and max size: " + minIdle);
+        }
+        if (idleTimeoutMillis <= 0 || borrowTimeoutMillis <= 0 || validationTimeoutSeconds <= 0 || validateAfterIdleMillis < 0) {
+            throw new IllegalArgumentException("Pool timeouts must be positive");
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Statement cache size must not be negative: " + statementCacheSize);
+        }
+    }
+
+    /**
+     * Возвращает настройки пула по умолчанию.
+     *
+     * @return настройки пула по умолчанию.
+     */
+    public static PoolSettings defaults() {
+        return new PoolSettings(1, 10, 600_000, 30_000, 5, 500, 64);
+    }
+
+    /**
+     * Загружает настройки пула из файла конфигурации. Отсутствующие свойства
+     * заменяются значениями по умолчанию.
+     *
+     * @return настройки пула из application.properties.
+     */
+    public static PoolSettings fromProperties() {
+        PoolSettings defaults = defaults();
+        return new PoolSettings(
+                PropertyLoader.getIntProperty("db.pool.minIdle", defaults.minIdle()),
+                PropertyLoader.getIntProperty("db.pool.maxSize", defaults.maxSize()),
+                PropertyLoader.getLongProperty("db.pool.idleTimeoutMs", defaults.idleTimeoutMillis()),
+                PropertyLoader.getLongProperty("db.pool.borrowTimeoutMs", defaults.borrowTimeoutMillis()),
+                PropertyLoader.getIntProperty("db.pool.validationTimeoutSec", defaults.validationTimeoutSeconds()),
+                PropertyLoader.getLongProperty("db.pool.validateAfterIdleMs", defaults.validateAfterIdleMillis()),
+                PropertyLoader.getIntProperty("db.pool.statementCacheSize", defaults.statementCacheSize()));
+    }
+}
@@ -0,0 +1,39 @@
+package ru.ylab.habittracker.app;
+
+/**
+ * Снимок статистики пула соединений.
+ *
+ * @param totalConnections     количество открытых физических соединений.
+ * @param idleConnections      количество простаивающих соединений.
+ * @param activeConnections    количество выданных соединений.
+ * @param waitingThreads       количество потоков, ожидающих соединение.
+ * @param borrowed             общее количество выдач соединений.
+ * @param created              количество созданных физических соединений.
+ * @param destroyed            количество закрытых физических соединений.
+ * @param timeouts             количество ожиданий, завершившихся по таймауту.
+ * @param validationFailures   количество соединений, не прошедших проверку перед выдачей.
+ * @param statementCacheHits   количество подготовленных выражений, выданных из кэша.
+ * @param statementCacheMisses количество подготовленных выражений, созданных заново.
+ */
+public record PoolStatistics(int totalConnections,
+                             int idleConnections,
+                             int activeConnections,
+                             int waitingThreads,
+                             long borrowed,
+                             long created,
+                             long destroyed,
+                             long timeouts,
+                             long validationFailures,
+                             long statementCacheHits,
+                             long statementCacheMisses) {
+
+    /**
+     * Возвращает долю подготовленных выражений, выданных из кэша.
+     *
+     * @return доля попаданий в кэш выражений от 0 до 1.
+     */
+    public double statementCacheHitRatio() {
+        long requests = statementCacheHits + statementCacheMisses;
+        return requests == 0 ? 0.0 : (double) statementCacheHits / requests;
+    }
+}
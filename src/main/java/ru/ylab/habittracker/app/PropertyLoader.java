@@ -30,4 +30,41 @@ public class PropertyLoader {
     public static String getProperty(String key) {
         return properties.getProperty(key);
     }
+
+    /**
+     * Получает значение свойства по ключу или значение по умолчанию.
+     *
+     * @param key          ключ свойства
+     * @param defaultValue значение, возвращаемое при отсутствии ключа
+     * @return значение свойства, или defaultValue, если ключ не найден
+     */
+    public static String getProperty(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    /**
+     * Получает целочисленное значение свойства по ключу.
+     *
+     * @param key          ключ свойства
+     * @param defaultValue значение, возвращаемое при отсутствии ключа
+     * @return значение свойства, или defaultValue, если ключ не найден
+     * @throws NumberFormatException если значение свойства не является числом
+     */
+    public static int getIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Получает значение свойства типа long по ключу.
+     *
+     * @param key          ключ свойства
+     * @param defaultValue значение, возвращаемое при отсутствии ключа
+     * @return значение свойства, или defaultValue, если ключ не найден
+     * @throws NumberFormatException если значение свойства не является числом
+     */
+    public static long getLongProperty(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
 }
@@ -0,0 +1,240 @@
+package ru.ylab.habittracker.app;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш подготовленных выражений одного физического соединения.
+ *
+ * <p>Выражения хранятся по тексту SQL в порядке последнего использования (LRU).
+ * Закрытие выданного выражения возвращает его в кэш, поэтому повторные вызовы
+ * {@link Connection#prepareStatement(String)} с тем же SQL переиспользуют один и тот же
+ * {@link PreparedStatement}, а драйвер после нескольких выполнений переводит его
+ * в именованное серверное выражение с сохраненным планом.</p>
+ *
+ * <p>Экземпляр не потокобезопасен: соединение в каждый момент используется одним потоком.</p>
+ */
+final class StatementCache {
+    private final Connection physical;
+    private final int capacity;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<PreparedStatement> uncached = new ArrayList<>();
+
+    StatementCache(Connection physical, int capacity, LongAdder hits, LongAdder misses) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * Определяет, может ли вызов метода соединения быть обслужен кэшем.
+     *
+     * @param method вызываемый метод {@link Connection}.
+     * @param args   аргументы вызова.
+     * @return true для {@code prepareStatement(String)} и {@code prepareStatement(String, int)}.
+     */
+    boolean supports(Method method, Object[] args) {
+        if (capacity <= 0 || !method.getName().equals("prepareStatement") || args == null) {
+            return false;
+        }
+        Class<?>[] types = method.getParameterTypes();
+        return types.length == 1 || (types.length == 2 && types[1] == int.class);
+    }
+
+    /**
+     * Выдает подготовленное выражение из кэша или подготавливает новое.
+     *
+     * @param args аргументы вызова {@code prepareStatement}.
+     * @return логическое выражение; его закрытие возвращает выражение в кэш.
+     * @throws SQLException если не удалось подготовить выражение.
+     */
+    PreparedStatement prepare(Object[] args) throws SQLException {
+        String sql = (String) args[0];
+        int autoGeneratedKeys = args.length > 1 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+        Key key = new Key(sql, autoGeneratedKeys);
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.statement.isClosed()) {
+            entries.remove(key);
+            entry.evicted = true;
+            entry = null;
+        }
+        if (entry != null && entry.handle != null) {
+            misses.increment();
+            PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+            uncached.add(statement);
+            return statement;
+        }
+        if (entry == null) {
+            misses.increment();
+            entry = new Entry(key, physical.prepareStatement(sql, autoGeneratedKeys));
+            entries.put(key, entry);
+            evictOverflow();
+        } else {
+            hits.increment();
+        }
+        entry.handle = new LogicalStatement(entry);
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, entry.handle);
+    }
+
+    /**
+     * Возвращает в кэш все выражения, не закрытые клиентом до возврата соединения в пул.
+     */
+    void releaseAll() {
+        for (Entry entry : new ArrayList<>(entries.values())) {
+            if (entry.handle != null) {
+                entry.handle.close();
+            }
+        }
+        for (PreparedStatement statement : uncached) {
+            closeQuietly(statement);
+        }
+        uncached.clear();
+    }
+
+    /**
+     * Закрывает все закэшированные выражения. Вызывается пулом перед закрытием физического соединения.
+     */
+    void closeAll() {
+        releaseAll();
+        for (Entry entry : entries.values()) {
+            closeQuietly(entry.statement);
+        }
+        entries.clear();
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+        while (entries.size() > capacity && leastRecentlyUsed.hasNext()) {
+            Entry entry = leastRecentlyUsed.next();
+            if (entry.handle == null) {
+                leastRecentlyUsed.remove();
+                entry.evicted = true;
+                closeQuietly(entry.statement);
+            }
+        }
+    }
+
+    private void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Ошибка при закрытии подготовленного выражения: " + e.getMessage());
+        }
+    }
+
+    private record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private final PreparedStatement statement;
+        private LogicalStatement handle;
+        private boolean evicted;
+
+        private Entry(Key key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * Выданное клиенту выражение. Закрытие сбрасывает параметры, открытые результаты
+     * и настройки выполнения и возвращает выражение в кэш.
+     */
+    private final class LogicalStatement implements InvocationHandler {
+        private final Entry entry;
+        private boolean closed;
+
+        private LogicalStatement(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    close();
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || entry.statement.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "CachedStatement[" + entry.key.sql() + "]";
+                }
+                default -> {
+                }
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            entry.handle = null;
+            try {
+                ResultSet resultSet = entry.statement.getResultSet();
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                entry.statement.clearParameters();
+                entry.statement.clearBatch();
+                entry.statement.clearWarnings();
+                if (entry.statement.getFetchSize() != 0) {
+                    entry.statement.setFetchSize(0);
+                }
+                if (entry.statement.getFetchDirection() != ResultSet.FETCH_FORWARD) {
+                    entry.statement.setFetchDirection(ResultSet.FETCH_FORWARD);
+                }
+                if (entry.statement.getMaxRows() != 0) {
+                    entry.statement.setMaxRows(0);
+                }
+                if (entry.statement.getQueryTimeout() != 0) {
+                    entry.statement.setQueryTimeout(0);
+                }
+            } catch (SQLException e) {
+                entries.remove(entry.key);
+                entry.evicted = true;
+                closeQuietly(entry.statement);
+                return;
+            }
+            if (entry.evicted) {
+                closeQuietly(entry.statement);
+            } else {
+                evictOverflow();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ru.ylab.habittracker.app;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Транзакция, привязанная к текущему потоку.
+ *
+ * <p>Хранит соединение, взятое из пула в начале транзакции, и выдает репозиториям
+ * соединения-участники: их закрытие, фиксация и переключение автофиксации ничего не делают,
+ * а откат помечает транзакцию как подлежащую откату. Фиксирует или откатывает транзакцию
+ * только {@link TransactionTemplate}, начавший ее.</p>
+ */
+final class TransactionScope {
+    private static final ThreadLocal<TransactionScope> CURRENT = new ThreadLocal<>();
+
+    private final DatabaseConnection owner;
+    private final Connection connection;
+    private final List<Runnable> completionActions = new ArrayList<>();
+    private boolean rollbackOnly;
+
+    private TransactionScope(DatabaseConnection owner, Connection connection) {
+        this.owner = owner;
+        this.connection = connection;
+    }
+
+    /**
+     * Привязывает новую транзакцию к текущему потоку.
+     *
+     * @param owner      источник соединений, к которому относится транзакция.
+     * @param connection соединение из пула с отключенной автофиксацией.
+     * @return привязанная транзакция.
+     */
+    static TransactionScope bind(DatabaseConnection owner, Connection connection) {
+        TransactionScope scope = new TransactionScope(owner, connection);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Возвращает транзакцию текущего потока.
+     *
+     * @return транзакция или null, если поток выполняется вне транзакции.
+     */
+    static TransactionScope current() {
+        return CURRENT.get();
+    }
+
+    DatabaseConnection owner() {
+        return owner;
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    void addCompletionAction(Runnable action) {
+        completionActions.add(action);
+    }
+
+    /**
+     * Отвязывает транзакцию от потока и выполняет действия, отложенные до ее завершения.
+     */
+    void unbind() {
+        CURRENT.remove();
+        for (Runnable action : completionActions) {
+            action.run();
+        }
+    }
+
+    /**
+     * Создает соединение-участника транзакции.
+     *
+     * @return соединение, разделяющее физическое соединение транзакции.
+     */
+    Connection participant() {
+        return (Connection) Proxy.newProxyInstance(TransactionScope.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Participant());
+    }
+
+    private final class Participant implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close", "commit", "setAutoCommit" -> {
+                    return null;
+                }
+                case "rollback" -> {
+                    if (args == null) {
+                        rollbackOnly = true;
+                        return null;
+                    }
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "TransactionParticipant[" + connection + "]";
+                }
+                default -> {
+                }
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.ylab.habittracker.app;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * Единица работы, охватывающая несколько обращений к репозиториям.
+ *
+ * <p>На время выполнения действия одно соединение из пула привязывается к текущему потоку,
+ * и {@link DatabaseConnection#getConnection()} возвращает его всем репозиториям. Поэтому
+ * многошаговая операция берет соединение из пула и фиксирует или откатывает свои изменения один раз.</p>
+ *
+ * <p>Транзакция выполняется на уровне изоляции READ COMMITTED: каждый запрос видит данные,
+ * зафиксированные к его началу, и сама по себе транзакция не защищает проверку от параллельного
+ * изменения проверенных строк. Сервисы, которым нужна атомарная последовательность
+ * «проверить и изменить», читают проверяемые строки методами {@code ...ForUpdate}, блокирующими
+ * их до конца транзакции, а кэширующие репозитории внутри транзакции читают из базы данных
+ * в обход кэша ({@link #isTransactionActive()}).</p>
+ *
+ * <p>Вложенный вызов присоединяется к уже начатой транзакции. Транзакция откатывается, если
+ * действие завершилось исключением или один из репозиториев откатил свою часть работы
+ * (репозитории сообщают об ошибках SQL возвратом пустого результата, поэтому такой откат
+ * завершается исключением {@link IllegalStateException}).</p>
+ */
+public class TransactionTemplate {
+    private final DatabaseConnection databaseConnection;
+
+    /**
+     * Создает шаблон транзакций.
+     *
+     * @param databaseConnection источник соединений.
+     */
+    public TransactionTemplate(DatabaseConnection databaseConnection) {
+        this.databaseConnection = databaseConnection;
+    }
+
+    /**
+     * Выполняет действие в транзакции.
+     *
+     * @param action действие, обращающееся к репозиториям.
+     * @param <T>    тип результата.
+     * @return результат действия.
+     * @throws IllegalStateException если транзакцию не удалось начать или зафиксировать,
+     *                               либо она была помечена для отката.
+     */
+    public <T> T execute(Supplier<T> action) {
+        TransactionScope current = TransactionScope.current();
+        if (current != null) {
+            if (current.owner() != databaseConnection) {
+                throw new IllegalStateException("Another database transaction is already active");
+            }
+            return action.get();
+        }
+
+        Connection connection;
+        try {
+            connection = databaseConnection.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to begin transaction", e);
+        }
+        TransactionScope scope = null;
+        try {
+            connection.setAutoCommit(false);
+            scope = TransactionScope.bind(databaseConnection, connection);
+            T result = action.get();
+            if (scope.isRollbackOnly()) {
+                connection.rollback();
+                throw new IllegalStateException("Transaction was marked for rollback");
+            }
+            connection.commit();
+            return result;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to complete transaction", e);
+        } finally {
+            // Незафиксированную транзакцию откатывает пул при возврате соединения.
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Ошибка при закрытии соединения с базой данных: " + e.getMessage());
+            }
+            if (scope != null) {
+                scope.unbind();
+            }
+        }
+    }
+
+    /**
+     * Выполняет действие без результата в транзакции.
+     *
+     * @param action действие, обращающееся к репозиториям.
+     * @throws IllegalStateException если транзакцию не удалось начать или зафиксировать,
+     *                               либо она была помечена для отката.
+     */
+    public void executeWithoutResult(Runnable action) {
+        execute(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Проверяет, выполняется ли текущий поток внутри транзакции.
+     *
+     * @return true, если к потоку привязана транзакция.
+     */
+    public static boolean isTransactionActive() {
+        return TransactionScope.current() != null;
+    }
+
+    /**
+     * Откладывает действие до завершения транзакции текущего потока. Вне транзакции
+     * действие выполняется сразу. Используется кэшами, чтобы запись, загруженная
+     * из незафиксированной или откаченной транзакции, не осталась в кэше.
+     *
+     * @param action действие, выполняемое после фиксации или отката.
+     */
+    public static void afterCompletion(Runnable action) {
+        TransactionScope current = TransactionScope.current();
+        if (current == null) {
+            action.run();
+        } else {
+            current.addCompletionAction(action);
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package ru.ylab.habittracker.controllers;
 
 import ru.ylab.habittracker.dto.BaseResponse;
+import ru.ylab.habittracker.models.AnalyticsSummary;
+import ru.ylab.habittracker.services.AnalyticsService;
 import ru.ylab.habittracker.services.UsersService;
 
+import java.time.LocalDate;
+
 public class AdministrationController {
     private final UsersService usersService;
+    private final AnalyticsService analyticsService;
 
-    public AdministrationController(UsersService usersService) {
+    public AdministrationController(UsersService usersService, AnalyticsService analyticsService) {
         this.usersService = usersService;
+        this.analyticsService = analyticsService;
     }
 
     public BaseResponse<Void> blockUser(Long adminId, Long userId) {
@@ -26,6 +32,14 @@ public class AdministrationController {
         }
     }
 
+    public BaseResponse<AnalyticsSummary> calculateAnalytics(Long adminId, LocalDate periodStart, LocalDate periodEnd) {
+        try {
+            return analyticsService.calculateAnalytics(adminId, periodStart, periodEnd);
+        } catch (Exception e) {
+            return new BaseResponse<>(e.getMessage(), null);
+        }
+    }
+
     public void setAdminRole(String email) {
         usersService.setAdminRole(email);
     }
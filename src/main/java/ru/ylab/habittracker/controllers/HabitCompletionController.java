@@ -2,11 +2,14 @@ package ru.ylab.habittracker.controllers;
 
 import ru.ylab.habittracker.dto.BaseResponse;
 import ru.ylab.habittracker.dto.HabitReportResponse;
+import ru.ylab.habittracker.dto.StreakHistoryResponse;
 import ru.ylab.habittracker.models.HabitCompletion;
 import ru.ylab.habittracker.services.HabitCompletionService;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class HabitCompletionController {
     private final HabitCompletionService habitCompletionService;
@@ -19,6 +22,10 @@ public class HabitCompletionController {
         habitCompletionService.markCompletion(id);
     }
 
+    public CompletableFuture<HabitCompletion> markCompletionAsync(Long id) {
+        return habitCompletionService.markCompletionAsync(id);
+    }
+
     public BaseResponse<List<HabitCompletion>> showTheHistory(Long id) {
         return habitCompletionService.showTheHistory(id);
     }
@@ -27,11 +34,19 @@ public class HabitCompletionController {
         return habitCompletionService.getCompletion(id, period);
     }
 
+    public BaseResponse<Map<LocalDate, Integer>> getCompletionCounts(Long id, String period, LocalDate periodStart, LocalDate periodEnd) {
+        return habitCompletionService.getCompletionCounts(id, period, periodStart, periodEnd);
+    }
+
 
     public BaseResponse<Integer> calculateCurrentStreak(Long id, LocalDate currentDate) {
         return habitCompletionService.calculateCurrentStreak(id, currentDate);
     }
 
+    public BaseResponse<StreakHistoryResponse> calculateStreakHistory(Long id) {
+        return habitCompletionService.calculateStreakHistory(id);
+    }
+
     public BaseResponse<Double> calculateCompletionPercentage(Long id, LocalDate periodStart, LocalDate periodEnd) {
         return habitCompletionService.calculateCompletionPercentage(id, periodStart, periodEnd);
     }
@@ -39,4 +54,8 @@ public class HabitCompletionController {
     public BaseResponse<HabitReportResponse> generateHabitReport(Long id, LocalDate periodStart, LocalDate periodEnd) {
         return habitCompletionService.generateHabitReport(id, periodStart, periodEnd);
     }
+
+    public BaseResponse<Map<Long, HabitReportResponse>> generateUserReport(Long userId, LocalDate periodStart, LocalDate periodEnd) {
+        return habitCompletionService.generateUserReport(userId, periodStart, periodEnd);
+    }
 }
@@ -2,10 +2,13 @@ package ru.ylab.habittracker.controllers;
 
 import ru.ylab.habittracker.dto.BaseResponse;
 import ru.ylab.habittracker.models.Habit;
+import ru.ylab.habittracker.models.HabitCompletionDays;
 import ru.ylab.habittracker.services.HabitsService;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class HabitsController {
     private final HabitsService habitsService;
@@ -42,6 +45,30 @@ public class HabitsController {
         }
     }
 
+    public BaseResponse<List<Habit>> findUserHabitsPage(Long userId, String continuationToken, int limit) {
+        try {
+            return habitsService.findByUserId(userId, continuationToken, limit);
+        } catch (RuntimeException e) {
+            return new BaseResponse<>(e.getMessage(), null);
+        }
+    }
+
+    public BaseResponse<Map<Long, Habit>> findUserHabitsByIds(Long userId, Collection<Long> habitIds) {
+        try {
+            return habitsService.findByIds(userId, habitIds);
+        } catch (RuntimeException e) {
+            return new BaseResponse<>(e.getMessage(), null);
+        }
+    }
+
+    public BaseResponse<List<HabitCompletionDays>> findDashboard(Long userId, LocalDate from, LocalDate to) {
+        try {
+            return habitsService.findDashboard(userId, from, to);
+        } catch (RuntimeException e) {
+            return new BaseResponse<>(e.getMessage(), null);
+        }
+    }
+
     public BaseResponse<List<Habit>> findAllUserHabitsByUserIdAndDate(Long userId, LocalDate date) {
         try {
             return habitsService.findByUserIdAndDate(userId, date);
@@ -5,6 +5,8 @@ import ru.ylab.habittracker.dto.UpdateUserProfileRequest;
 import ru.ylab.habittracker.dto.UserResponse;
 import ru.ylab.habittracker.services.UsersService;
 
+import java.util.List;
+
 public class UsersController {
     private final UsersService usersService;
 
@@ -22,6 +24,14 @@ public class UsersController {
         return result;
     }
 
+    public BaseResponse<List<UserResponse>> findUsersPage(Long adminId, String continuationToken, int limit) {
+        try {
+            return usersService.findPage(adminId, continuationToken, limit);
+        } catch (RuntimeException e) {
+            return new BaseResponse<>(e.getMessage(), null);
+        }
+    }
+
     public void deleteUserById(Long id) {
         usersService.delete(id);
     }
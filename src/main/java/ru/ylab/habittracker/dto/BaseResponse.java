@@ -4,19 +4,32 @@ package ru.ylab.habittracker.dto;
  * Класс-обертка для возврата ответов сервиса с определенным статусом и данными.
  *
  * @param <T> Тип данных, которые содержатся в ответе.
+ * @param continuationToken токен для запроса следующей страницы или null, если страница последняя
+ *                          либо ответ не постраничный.
  */
-public record BaseResponse<T>(String status, T data) {
+public record BaseResponse<T>(String status, T data, String continuationToken) {
+
+    /**
+     * Создает непостраничный ответ без токена продолжения.
+     *
+     * @param status статус ответа.
+     * @param data   данные ответа.
+     */
+    public BaseResponse(String status, T data) {
+        this(status, data, null);
+    }
 
     /**
      * Возвращает строковое представление объекта BaseResponse.
      *
-     * @return строка, представляющая объект BaseResponse, содержащая статус и данные.
+     * @return строка, представляющая объект BaseResponse, содержащая статус, данные и токен продолжения.
      */
     @Override
     public String toString() {
         return "BaseResponse{" +
                 "status='" + status + '\'' +
                 ", data=" + data +
+                (continuationToken != null ? ", continuationToken='" + continuationToken + '\'' : "") +
                 '}';
     }
 }
@@ -3,12 +3,17 @@ package ru.ylab.habittracker.dto;
 public class HabitReportResponse {
     private String habitName;
     private long currentStreak;
+    private long longestStreak;
+    private double averageStreak;
     private long totalCompletions;
     private double successRate;
 
-    public HabitReportResponse(String habitName, long currentStreak, long totalCompletions, double successRate) {
+    public HabitReportResponse(String habitName, long currentStreak, long longestStreak, double averageStreak,
+                               long totalCompletions, double successRate) {
         this.habitName = habitName;
         this.currentStreak = currentStreak;
+        this.longestStreak = longestStreak;
+        this.averageStreak = averageStreak;
         this.totalCompletions = totalCompletions;
         this.successRate = successRate;
     }
@@ -29,6 +34,22 @@ public class HabitReportResponse {
         this.currentStreak = currentStreak;
     }
 
+    public long getLongestStreak() {
+        return longestStreak;
+    }
+
+    public void setLongestStreak(long longestStreak) {
+        this.longestStreak = longestStreak;
+    }
+
+    public double getAverageStreak() {
+        return averageStreak;
+    }
+
+    public void setAverageStreak(double averageStreak) {
+        this.averageStreak = averageStreak;
+    }
+
     public long getTotalCompletions() {
         return totalCompletions;
     }
@@ -50,6 +71,8 @@ public class HabitReportResponse {
         return "HabitReportResponse{" +
                 "habitName='" + habitName + '\'' +
                 ", currentStreak=" + currentStreak +
+                ", longestStreak=" + longestStreak +
+                ", averageStreak=" + averageStreak +
                 ", totalCompletions=" + totalCompletions +
                 ", successRate=" + successRate +
                 '}';
@@ -0,0 +1,41 @@
+package ru.ylab.habittracker.dto;
+
+import ru.ylab.habittracker.models.StreakInterval;
+
+import java.util.List;
+
+/**
+ * История серий выполнения привычки.
+ *
+ * @param longestStreak длина самой длинной серии.
+ * @param averageStreak средняя длина серии.
+ * @param streaks       серии по возрастанию дат.
+ */
+public record StreakHistoryResponse(int longestStreak, double averageStreak, List<StreakInterval> streaks) {
+
+    /**
+     * Строит историю по списку серий за один проход.
+     *
+     * @param streaks серии по возрастанию дат.
+     * @return история серий; для пустого списка длины равны нулю.
+     */
+    public static StreakHistoryResponse of(List<StreakInterval> streaks) {
+        int longest = 0;
+        long total = 0;
+        for (StreakInterval streak : streaks) {
+            longest = Math.max(longest, streak.length());
+            total += streak.length();
+        }
+        double average = streaks.isEmpty() ? 0 : (double) total / streaks.size();
+        return new StreakHistoryResponse(longest, average, List.copyOf(streaks));
+    }
+
+    @Override
+    public String toString() {
+        return "StreakHistoryResponse{" +
+                "longestStreak=" + longestStreak +
+                ", averageStreak=" + averageStreak +
+                ", streaks=" + streaks +
+                '}';
+    }
+}
@@ -0,0 +1,178 @@
+package ru.ylab.habittracker.jobs;
+
+import ru.ylab.habittracker.models.AnalyticsSummary;
+import ru.ylab.habittracker.models.CompletionActivity;
+import ru.ylab.habittracker.utils.Frequency;
+import ru.ylab.habittracker.utils.IsoWeeks;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Накопитель аналитики по части привычек, который можно объединять с другими накопителями.
+ *
+ * <p>Строки активности одной привычки должны поступать подряд: при смене привычки ее процент
+ * выполнения сразу попадает в гистограмму, а количество выполнений — в ограниченную кучу
+ * самых выполняемых привычек, поэтому по самим привычкам ничего не хранится. Процент выполнения
+ * считается по дням (неделям) от создания привычки, если она создана внутри периода, а привычки,
+ * созданные после периода и не выполнявшиеся в нем, не учитываются. Активные пользователи по дням
+ * накопителем не собираются: их считает база данных и передает в {@link #toSummary(Map)}.
+ * Занимаемая память зависит только от размера топа и количества недель периода, но не от
+ * количества строк, привычек или пользователей.</p>
+ */
+public class AnalyticsAccumulator {
+    /**
+     * Количество интервалов гистограммы процента выполнения.
+     */
+    public static final int HISTOGRAM_BUCKETS = 10;
+
+    /**
+     * Наибольшая длина периода в днях: сводка содержит по строке активных пользователей на каждый день.
+     */
+    public static final int MAX_PERIOD_DAYS = 366;
+
+    private static final Comparator<AnalyticsSummary.TopHabit> TOP_HABIT_ORDER =
+            Comparator.comparingLong(AnalyticsSummary.TopHabit::completions)
+                    .thenComparing(Comparator.comparingLong(AnalyticsSummary.TopHabit::habitId).reversed());
+
+    private final LocalDate periodStart;
+    private final LocalDate periodEnd;
+    private final int topHabitsLimit;
+    private final long[] completionRateHistogram = new long[HISTOGRAM_BUCKETS];
+    private final PriorityQueue<AnalyticsSummary.TopHabit> topHabits;
+    private final BitSet currentWeeks = new BitSet();
+    private long totalCompletions;
+    private long habits;
+    private long currentHabitId = -1;
+    private Frequency currentFrequency;
+    private LocalDate currentActiveFrom;
+    private long currentCompletions;
+
+    /**
+     * Создает пустой накопитель.
+     *
+     * @param periodStart    начало периода.
+     * @param periodEnd      конец периода.
+     * @param topHabitsLimit количество самых выполняемых привычек в результате.
+     * @throws IllegalArgumentException если начало периода позже его конца или период длиннее
+     *                                  {@link #MAX_PERIOD_DAYS} дней.
+     */
+    public AnalyticsAccumulator(LocalDate periodStart, LocalDate periodEnd, int topHabitsLimit) {
+        if (periodStart.isAfter(periodEnd)) {
+            throw new IllegalArgumentException("Period start is after period end");
+        }
+        this.periodStart = periodStart;
+        this.periodEnd = periodEnd;
+        if (ChronoUnit.DAYS.between(periodStart, periodEnd) + 1 > MAX_PERIOD_DAYS) {
+            throw new IllegalArgumentException("Period is longer than " + MAX_PERIOD_DAYS + " days");
+        }
+        this.topHabitsLimit = topHabitsLimit;
+        this.topHabits = new PriorityQueue<>(Math.max(1, topHabitsLimit + 1), TOP_HABIT_ORDER);
+    }
+
+    /**
+     * Учитывает строку активности.
+     *
+     * @param activity строка активности; строки одной привычки должны идти подряд.
+     */
+    public void accept(CompletionActivity activity) {
+        if (activity.habitId() != currentHabitId) {
+            finishHabit();
+            currentHabitId = activity.habitId();
+            currentFrequency = activity.frequency();
+            currentActiveFrom = activity.createdDate().isAfter(periodStart) ? activity.createdDate() : periodStart;
+        }
+        LocalDate completionDate = activity.completionDate();
+        if (completionDate == null || completionDate.isBefore(periodStart) || completionDate.isAfter(periodEnd)) {
+            return;
+        }
+        totalCompletions++;
+        currentCompletions++;
+        if (completionDate.isBefore(currentActiveFrom)) {
+            currentActiveFrom = completionDate;
+        }
+        if (currentFrequency == Frequency.WEEKLY) {
+            currentWeeks.set((int) ChronoUnit.WEEKS.between(IsoWeeks.weekStart(periodStart), IsoWeeks.weekStart(completionDate)));
+        }
+    }
+
+    /**
+     * Объединяет накопитель с другим, полученным по непересекающейся части привычек.
+     *
+     * @param other другой накопитель за тот же период.
+     * @return этот накопитель.
+     */
+    public AnalyticsAccumulator merge(AnalyticsAccumulator other) {
+        if (!periodStart.equals(other.periodStart) || !periodEnd.equals(other.periodEnd)) {
+            throw new IllegalArgumentException("Cannot merge analytics of different periods");
+        }
+        finishHabit();
+        other.finishHabit();
+        totalCompletions += other.totalCompletions;
+        habits += other.habits;
+        for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) {
+            completionRateHistogram[bucket] += other.completionRateHistogram[bucket];
+        }
+        other.topHabits.forEach(this::offerTopHabit);
+        return this;
+    }
+
+    /**
+     * Завершает накопление и строит сводную аналитику.
+     *
+     * @param activeUsers количество активных пользователей по дням периода; дни без активности могут отсутствовать.
+     * @return сводная аналитика.
+     */
+    public AnalyticsSummary toSummary(Map<LocalDate, Integer> activeUsers) {
+        finishHabit();
+        Map<LocalDate, Integer> dailyActiveUsers = new LinkedHashMap<>();
+        for (LocalDate day = periodStart; !day.isAfter(periodEnd); day = day.plusDays(1)) {
+            dailyActiveUsers.put(day, activeUsers.getOrDefault(day, 0));
+        }
+        List<Long> histogram = new ArrayList<>(HISTOGRAM_BUCKETS);
+        for (long count : completionRateHistogram) {
+            histogram.add(count);
+        }
+        List<AnalyticsSummary.TopHabit> top = new ArrayList<>(topHabits);
+        top.sort(TOP_HABIT_ORDER.reversed());
+        return new AnalyticsSummary(periodStart, periodEnd, totalCompletions, habits, dailyActiveUsers, histogram, top);
+    }
+
+    private void finishHabit() {
+        if (currentHabitId < 0) {
+            return;
+        }
+        if (currentActiveFrom.isAfter(periodEnd)) {
+            currentHabitId = -1;
+            return;
+        }
+        double rate = currentFrequency == Frequency.WEEKLY
+                ? (double) currentWeeks.cardinality() / IsoWeeks.weeksInPeriod(currentActiveFrom, periodEnd)
+                : (double) currentCompletions / (ChronoUnit.DAYS.between(currentActiveFrom, periodEnd) + 1);
+        completionRateHistogram[Math.min(HISTOGRAM_BUCKETS - 1, (int) (rate * HISTOGRAM_BUCKETS))]++;
+        habits++;
+        if (currentCompletions > 0) {
+            offerTopHabit(new AnalyticsSummary.TopHabit(currentHabitId, currentCompletions));
+        }
+        currentHabitId = -1;
+        currentCompletions = 0;
+        currentWeeks.clear();
+    }
+
+    private void offerTopHabit(AnalyticsSummary.TopHabit topHabit) {
+        if (topHabitsLimit == 0) {
+            return;
+        }
+        topHabits.offer(topHabit);
+        if (topHabits.size() > topHabitsLimit) {
+            topHabits.poll();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ru.ylab.habittracker.jobs;
+
+import ru.ylab.habittracker.models.AnalyticsSummary;
+import ru.ylab.habittracker.models.CompletionActivity;
+import ru.ylab.habittracker.models.IdRange;
+import ru.ylab.habittracker.repositories.AnalyticsSummaryRepository;
+import ru.ylab.habittracker.repositories.HabitCompletionRepository;
+import ru.ylab.habittracker.repositories.HabitsRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.logging.Logger;
+
+/**
+ * Фоновая задача расчета сводной аналитики по всем привычкам.
+ *
+ * <p>Диапазон идентификаторов привычек делится на части, каждая часть читается отдельным
+ * серверным курсором и сворачивается в свой {@link AnalyticsAccumulator}; части обрабатываются
+ * параллельным потоком в выделенном {@link ForkJoinPool}, а накопители объединяются слиянием.
+ * Активные пользователи по дням подсчитываются отдельным запросом с группировкой в базе данных.
+ * Каждая часть занимает одно соединение из пула, поэтому параллельность не должна превышать
+ * размер пула соединений. Результат записывается в таблицу analytics_summary.</p>
+ */
+public class HabitAnalyticsJob implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(HabitAnalyticsJob.class.getName());
+
+    /**
+     * Количество частей диапазона привычек на один поток.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final HabitsRepository habitsRepository;
+    private final HabitCompletionRepository habitCompletionRepository;
+    private final AnalyticsSummaryRepository analyticsSummaryRepository;
+    private final int parallelism;
+    private final int topHabitsLimit;
+    private final int periodDays;
+
+    /**
+     * Создает задачу расчета аналитики.
+     *
+     * @param habitsRepository           репозиторий привычек.
+     * @param habitCompletionRepository  репозиторий выполнений привычек.
+     * @param analyticsSummaryRepository репозиторий, в который сохраняется результат.
+     * @param parallelism                количество потоков расчета.
+     * @param topHabitsLimit             количество самых выполняемых привычек в результате.
+     * @param periodDays                 длина периода плановых запусков в днях, заканчивающегося вчерашним днем,
+     *                                   не больше {@link AnalyticsAccumulator#MAX_PERIOD_DAYS}.
+     */
+    public HabitAnalyticsJob(HabitsRepository habitsRepository, HabitCompletionRepository habitCompletionRepository,
+                             AnalyticsSummaryRepository analyticsSummaryRepository, int parallelism, int topHabitsLimit,
+                             int periodDays) {
+        if (parallelism <= 0 || topHabitsLimit < 0 || periodDays <= 0 || periodDays > AnalyticsAccumulator.MAX_PERIOD_DAYS) {
+            throw new IllegalArgumentException("Invalid analytics job settings");
+        }
+        this.habitsRepository = habitsRepository;
+        this.habitCompletionRepository = habitCompletionRepository;
+        this.analyticsSummaryRepository = analyticsSummaryRepository;
+        this.parallelism = parallelism;
+        this.topHabitsLimit = topHabitsLimit;
+        this.periodDays = periodDays;
+    }
+
+    @Override
+    public void run() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        try {
+            AnalyticsSummary summary = calculate(yesterday.minusDays(periodDays - 1), yesterday);
+            LOGGER.fine(() -> "Analytics calculated, completions: " + summary.totalCompletions());
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка при расчете аналитики: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Рассчитывает сводную аналитику за период и сохраняет ее.
+     *
+     * @param periodStart начало периода.
+     * @param periodEnd   конец периода.
+     * @return сводная аналитика.
+     */
+    public AnalyticsSummary calculate(LocalDate periodStart, LocalDate periodEnd) {
+        Optional<IdRange> habitIds = habitsRepository.findIdRange();
+        AnalyticsAccumulator accumulator = habitIds.isEmpty()
+                ? new AnalyticsAccumulator(periodStart, periodEnd, topHabitsLimit)
+                : aggregate(habitIds.get().split(parallelism * PARTITIONS_PER_THREAD), periodStart, periodEnd);
+        AnalyticsSummary summary = accumulator.toSummary(habitCompletionRepository.countDailyActiveUsers(periodStart, periodEnd));
+        analyticsSummaryRepository.save(summary, LocalDateTime.now());
+        return summary;
+    }
+
+    private AnalyticsAccumulator aggregate(List<IdRange> partitions, LocalDate periodStart, LocalDate periodEnd) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> partitions.parallelStream()
+                            .map(partition -> aggregate(partition, periodStart, periodEnd))
+                            .reduce(AnalyticsAccumulator::merge)
+                            .orElseGet(() -> new AnalyticsAccumulator(periodStart, periodEnd, topHabitsLimit)))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Analytics calculation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Analytics calculation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private AnalyticsAccumulator aggregate(IdRange partition, LocalDate periodStart, LocalDate periodEnd) {
+        AnalyticsAccumulator accumulator = new AnalyticsAccumulator(periodStart, periodEnd, topHabitsLimit);
+        try (Stream<CompletionActivity> activity = habitCompletionRepository.streamActivity(partition, periodStart, periodEnd)) {
+            activity.forEach(accumulator::accept);
+        }
+        return accumulator;
+    }
+}
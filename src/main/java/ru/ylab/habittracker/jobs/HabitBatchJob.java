@@ -0,0 +1,71 @@
+package ru.ylab.habittracker.jobs;
+
+import ru.ylab.habittracker.models.Habit;
+import ru.ylab.habittracker.repositories.HabitsRepository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Основа фоновых задач, обрабатывающих все привычки пакетами идентификаторов.
+ *
+ * <p>Привычки читаются потоком, поэтому в памяти находится не больше одного пакета
+ * из {@code batchSize} идентификаторов; каждый пакет передается в {@link #process(List)}.</p>
+ */
+public abstract class HabitBatchJob implements Runnable {
+    /**
+     * Размер пакета привычек по умолчанию.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final HabitsRepository habitsRepository;
+    private final int batchSize;
+
+    /**
+     * Создает задачу пакетной обработки привычек.
+     *
+     * @param habitsRepository репозиторий привычек.
+     * @param batchSize        количество привычек в одном пакете.
+     */
+    protected HabitBatchJob(HabitsRepository habitsRepository, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.habitsRepository = habitsRepository;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Обрабатывает все привычки пакетами.
+     *
+     * @return сумма результатов обработки пакетов.
+     */
+    protected int processAll() {
+        List<Long> batch = new ArrayList<>(batchSize);
+        int processed = 0;
+        try (Stream<Habit> habits = habitsRepository.streamAll()) {
+            Iterator<Habit> iterator = habits.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next().getId());
+                if (batch.size() == batchSize) {
+                    processed += process(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            processed += process(batch);
+        }
+        return processed;
+    }
+
+    /**
+     * Обрабатывает пакет привычек.
+     *
+     * @param habitIds идентификаторы привычек пакета.
+     * @return результат обработки пакета, суммируемый по всем пакетам.
+     */
+    protected abstract int process(List<Long> habitIds);
+}
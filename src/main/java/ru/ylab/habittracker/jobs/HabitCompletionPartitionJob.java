@@ -0,0 +1,132 @@
+package ru.ylab.habittracker.jobs;
+
+import ru.ylab.habittracker.repositories.HabitCompletionPartitionRepository;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Фоновая задача обслуживания месячных секций таблицы habit_completion.
+ *
+ * <p>Создает секции текущего и {@code monthsAhead} следующих месяцев, чтобы новые выполнения
+ * не попадали в секцию по умолчанию, и удаляет секции месяцев старше {@code retentionMonths}
+ * целиком, без построчного DELETE. При {@code retentionMonths = 0} секции не удаляются.
+ * Сводные таблицы недель и месяцев исправляются при удалении секции, счетчики серий
+ * приводятся к оставшимся строкам задачей {@link StreakRepairJob}, а кэшированные календари
+ * выполнений сбрасываются действием {@code onPartitionsDropped}.</p>
+ *
+ * <p>Итоги запуска записываются в журнал на уровне FINE, чтобы не смешиваться с выводом консольного меню.</p>
+ *
+ * <p>Секции закрытых месяцев упорядочиваются командой CLUSTER по (habit_id, completion_date),
+ * чтобы чтение истории одной привычки затрагивало соседние страницы. Секции текущего
+ * и предыдущего месяцев остаются в порядке добавления строк, то есть по дате, — на них
+ * приходятся запросы за последние дни, которые читаются по BRIN-индексу completion_date.</p>
+ */
+public class HabitCompletionPartitionJob implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(HabitCompletionPartitionJob.class.getName());
+
+    private final HabitCompletionPartitionRepository partitionRepository;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Runnable onPartitionsDropped;
+
+    /**
+     * Создает задачу обслуживания секций.
+     *
+     * @param partitionRepository репозиторий секций таблицы выполнений.
+     * @param monthsAhead         количество месяцев после текущего, для которых секции создаются заранее.
+     * @param retentionMonths     количество хранимых месяцев, включая текущий; 0 — хранить все секции.
+     */
+    public HabitCompletionPartitionJob(HabitCompletionPartitionRepository partitionRepository, int monthsAhead, int retentionMonths) {
+        this(partitionRepository, monthsAhead, retentionMonths, () -> {
+        });
+    }
+
+    /**
+     * Создает задачу обслуживания секций.
+     *
+     * @param partitionRepository репозиторий секций таблицы выполнений.
+     * @param monthsAhead         количество месяцев после текущего, для которых секции создаются заранее.
+     * @param retentionMonths     количество хранимых месяцев, включая текущий; 0 — хранить все секции.
+     * @param onPartitionsDropped действие после удаления хотя бы одной секции, например сброс кэша календарей.
+     */
+    public HabitCompletionPartitionJob(HabitCompletionPartitionRepository partitionRepository, int monthsAhead, int retentionMonths,
+                                       Runnable onPartitionsDropped) {
+        if (monthsAhead < 0) {
+            throw new IllegalArgumentException("Months ahead must not be negative: " + monthsAhead);
+        }
+        if (retentionMonths < 0) {
+            throw new IllegalArgumentException("Retention months must not be negative: " + retentionMonths);
+        }
+        this.partitionRepository = partitionRepository;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.onPartitionsDropped = onPartitionsDropped;
+    }
+
+    @Override
+    public void run() {
+        try {
+            YearMonth currentMonth = YearMonth.now();
+            int created = createMissing(currentMonth);
+            int dropped = dropExpired(currentMonth);
+            int clustered = clusterClosed(currentMonth);
+            LOGGER.fine(() -> "Partition maintenance finished, created: " + created + ", dropped: " + dropped + ", clustered: " + clustered);
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка при обслуживании секций завершений привычек: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Создает недостающие секции текущего и следующих месяцев.
+     *
+     * @param currentMonth текущий месяц.
+     * @return количество созданных секций.
+     */
+    public int createMissing(YearMonth currentMonth) {
+        List<YearMonth> existing = partitionRepository.findPartitions();
+        int created = 0;
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = currentMonth.plusMonths(i);
+            if (!existing.contains(month) && partitionRepository.createPartition(month)) {
+                created++;
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Удаляет секции месяцев, вышедших за срок хранения, и, если удалена хотя бы одна секция,
+     * выполняет действие {@code onPartitionsDropped}.
+     *
+     * @param currentMonth текущий месяц.
+     * @return количество удаленных секций.
+     */
+    public int dropExpired(YearMonth currentMonth) {
+        if (retentionMonths == 0) {
+            return 0;
+        }
+        YearMonth oldestRetained = currentMonth.minusMonths(retentionMonths - 1L);
+        int dropped = 0;
+        for (YearMonth month : partitionRepository.findPartitions()) {
+            if (month.isBefore(oldestRetained) && partitionRepository.dropPartition(month)) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            onPartitionsDropped.run();
+        }
+        return dropped;
+    }
+
+    /**
+     * Упорядочивает секции месяцев раньше предыдущего, еще не упорядоченные по (habit_id, completion_date).
+     *
+     * @param currentMonth текущий месяц.
+     * @return количество упорядоченных секций.
+     */
+    public int clusterClosed(YearMonth currentMonth) {
+        return partitionRepository.clusterPartitions(currentMonth.minusMonths(1));
+    }
+}
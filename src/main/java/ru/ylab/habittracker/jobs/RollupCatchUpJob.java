@@ -0,0 +1,59 @@
+package ru.ylab.habittracker.jobs;
+
+import ru.ylab.habittracker.repositories.HabitCompletionRepository;
+import ru.ylab.habittracker.repositories.HabitsRepository;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Задача ручного перестроения сводных таблиц выполнений по неделям и месяцам.
+ *
+ * <p>Сводные таблицы поддерживаются репозиторием в транзакции каждой записи выполнения,
+ * заполняются миграцией и исправляются при удалении секций, поэтому задача не запускается
+ * по расписанию. Она нужна только после изменений в обход приложения (ручные правки,
+ * восстановление из резервной копии) и запускается однократно при старте приложения, если
+ * задано свойство {@code jobs.rollupCatchUp.onStartup}. Задача перестраивает строки всех привычек
+ * пакетами по {@code batchSize}, каждый пакет — в отдельной транзакции.</p>
+ */
+public class RollupCatchUpJob extends HabitBatchJob {
+    private static final Logger LOGGER = Logger.getLogger(RollupCatchUpJob.class.getName());
+
+    private final HabitCompletionRepository habitCompletionRepository;
+
+    /**
+     * Создает задачу перестроения сводных таблиц.
+     *
+     * @param habitsRepository          репозиторий привычек.
+     * @param habitCompletionRepository репозиторий выполнений привычек.
+     * @param batchSize                 количество привычек, перестраиваемых в одной транзакции.
+     */
+    public RollupCatchUpJob(HabitsRepository habitsRepository, HabitCompletionRepository habitCompletionRepository, int batchSize) {
+        super(habitsRepository, batchSize);
+        this.habitCompletionRepository = habitCompletionRepository;
+    }
+
+    @Override
+    public void run() {
+        try {
+            int written = catchUp();
+            LOGGER.fine(() -> "Rollup catch-up finished, rows written: " + written);
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка при перестроении сводных таблиц выполнений: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Перестраивает строки сводных таблиц всех привычек.
+     *
+     * @return количество записанных строк сводных таблиц.
+     */
+    public int catchUp() {
+        return processAll();
+    }
+
+    @Override
+    protected int process(List<Long> habitIds) {
+        return habitCompletionRepository.recalculateRollups(habitIds);
+    }
+}
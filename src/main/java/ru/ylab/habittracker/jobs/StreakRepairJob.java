@@ -0,0 +1,56 @@
+package ru.ylab.habittracker.jobs;
+
+import ru.ylab.habittracker.repositories.HabitCompletionRepository;
+import ru.ylab.habittracker.repositories.HabitsRepository;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Фоновая задача сверки счетчиков серий привычек с таблицей выполнений.
+ *
+ * <p>Счетчики поддерживаются при каждой записи выполнения, задача лишь исправляет расхождения,
+ * возникшие в обход репозитория (ручные правки, восстановление из резервной копии).
+ * Привычки читаются потоком и пересчитываются пакетами по {@code batchSize} идентификаторов.</p>
+ */
+public class StreakRepairJob extends HabitBatchJob {
+    private static final Logger LOGGER = Logger.getLogger(StreakRepairJob.class.getName());
+
+    private final HabitCompletionRepository habitCompletionRepository;
+
+    /**
+     * Создает задачу сверки счетчиков серий.
+     *
+     * @param habitsRepository          репозиторий привычек.
+     * @param habitCompletionRepository репозиторий выполнений привычек.
+     * @param batchSize                 количество привычек, пересчитываемых одним запросом.
+     */
+    public StreakRepairJob(HabitsRepository habitsRepository, HabitCompletionRepository habitCompletionRepository, int batchSize) {
+        super(habitsRepository, batchSize);
+        this.habitCompletionRepository = habitCompletionRepository;
+    }
+
+    @Override
+    public void run() {
+        try {
+            int updated = repair();
+            LOGGER.fine(() -> "Streak repair finished, habits updated: " + updated);
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка при сверке серий привычек: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Пересчитывает счетчики серий всех привычек.
+     *
+     * @return количество обновленных привычек.
+     */
+    public int repair() {
+        return processAll();
+    }
+
+    @Override
+    protected int process(List<Long> habitIds) {
+        return habitCompletionRepository.recalculateStreaks(habitIds);
+    }
+}
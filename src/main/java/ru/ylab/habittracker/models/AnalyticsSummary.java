@@ -0,0 +1,30 @@
+package ru.ylab.habittracker.models;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сводная аналитика по всем привычкам за период.
+ *
+ * @param periodStart             начало периода.
+ * @param periodEnd               конец периода.
+ * @param totalCompletions        количество выполнений за период.
+ * @param habits                  количество привычек.
+ * @param dailyActiveUsers        количество пользователей, выполнивших хотя бы одну привычку, по дням периода.
+ * @param completionRateHistogram количество привычек по интервалам процента выполнения шириной 10%.
+ * @param topHabits               привычки с наибольшим количеством выполнений по убыванию.
+ */
+public record AnalyticsSummary(LocalDate periodStart, LocalDate periodEnd, long totalCompletions, long habits,
+                               Map<LocalDate, Integer> dailyActiveUsers, List<Long> completionRateHistogram,
+                               List<TopHabit> topHabits) {
+
+    /**
+     * Привычка и количество ее выполнений за период.
+     *
+     * @param habitId     идентификатор привычки.
+     * @param completions количество выполнений.
+     */
+    public record TopHabit(long habitId, long completions) {
+    }
+}
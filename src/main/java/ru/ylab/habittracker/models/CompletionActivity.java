@@ -0,0 +1,16 @@
+package ru.ylab.habittracker.models;
+
+import ru.ylab.habittracker.utils.Frequency;
+
+import java.time.LocalDate;
+
+/**
+ * Строка потока активности: привычка и одно ее выполнение за период.
+ *
+ * @param habitId        идентификатор привычки.
+ * @param createdDate    дата создания привычки.
+ * @param frequency      частота выполнения привычки.
+ * @param completionDate дата выполнения или null, если в периоде привычка не выполнялась.
+ */
+public record CompletionActivity(long habitId, LocalDate createdDate, Frequency frequency, LocalDate completionDate) {
+}
@@ -0,0 +1,353 @@
+package ru.ylab.habittracker.models;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Календарь выполнения привычки в виде битовой карты дней.
+ *
+ * <p>Бит {@code i} установлен, если привычка выполнена в день {@code baseDate + i}.
+ * Проверка дня выполняется за O(1), подсчет дней в диапазоне — через {@link Long#bitCount(long)}
+ * по словам, серия — сканированием слов от конца, список серий — одним проходом по словам. Десять лет ежедневной истории занимают
+ * 58 слов (464 байта) вместо нескольких тысяч объектов {@link HabitCompletion}.</p>
+ *
+ * <p>Экземпляр неизменяем: {@link #withDay(LocalDate)} возвращает новый календарь,
+ * поэтому один экземпляр можно безопасно читать из нескольких потоков.</p>
+ */
+public final class CompletionCalendar {
+    private static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES;
+
+    private final int baseDay;
+    private final long[] words;
+    private final int cardinality;
+
+    private CompletionCalendar(int baseDay, long[] words) {
+        this.baseDay = baseDay;
+        this.words = words;
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        this.cardinality = count;
+    }
+
+    /**
+     * Создает пустой календарь с указанной начальной датой.
+     *
+     * @param baseDate дата, соответствующая нулевому биту.
+     * @return пустой календарь.
+     */
+    public static CompletionCalendar empty(LocalDate baseDate) {
+        return new CompletionCalendar(toDay(baseDate), new long[0]);
+    }
+
+    /**
+     * Создает календарь из дней выполнения.
+     *
+     * @param baseDate  желаемая начальная дата, например дата создания привычки; если есть
+     *                  более ранние выполнения, начальной становится дата самого раннего из них.
+     * @param epochDays дни выполнения в виде {@link LocalDate#toEpochDay()} в любом порядке.
+     * @return календарь с указанными днями.
+     */
+    public static CompletionCalendar of(LocalDate baseDate, int[] epochDays) {
+        int base = toDay(baseDate);
+        int last = base - 1;
+        for (int day : epochDays) {
+            base = Math.min(base, day);
+            last = Math.max(last, day);
+        }
+        long[] words = new long[wordCount(last - base + 1)];
+        for (int day : epochDays) {
+            int bit = day - base;
+            words[bit >>> 6] |= 1L << bit;
+        }
+        return new CompletionCalendar(base, words);
+    }
+
+    /**
+     * Восстанавливает календарь из представления, полученного {@link #toBytes()}.
+     *
+     * @param bytes сериализованный календарь, например значение столбца bytea.
+     * @return календарь.
+     * @throws IllegalArgumentException если длина данных некорректна.
+     */
+    public static CompletionCalendar fromBytes(byte[] bytes) {
+        if (bytes.length < HEADER_BYTES || (bytes.length - HEADER_BYTES) % Long.BYTES != 0) {
+            throw new IllegalArgumentException("Invalid completion calendar length: " + bytes.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int base = buffer.getInt();
+        int wordCount = buffer.getInt();
+        if (wordCount != (bytes.length - HEADER_BYTES) / Long.BYTES) {
+            throw new IllegalArgumentException("Invalid completion calendar word count: " + wordCount);
+        }
+        long[] words = new long[wordCount];
+        buffer.asLongBuffer().get(words);
+        return new CompletionCalendar(base, words);
+    }
+
+    /**
+     * Сериализует календарь: начальный день, количество слов и слова битовой карты (big-endian).
+     *
+     * @return байтовое представление, пригодное для хранения в столбце bytea.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + words.length * Long.BYTES);
+        buffer.putInt(baseDay).putInt(words.length);
+        buffer.asLongBuffer().put(words);
+        return buffer.array();
+    }
+
+    /**
+     * Возвращает календарь с добавленным днем выполнения.
+     *
+     * @param date дата выполнения.
+     * @return этот же календарь, если день уже отмечен, иначе новый календарь.
+     */
+    public CompletionCalendar withDay(LocalDate date) {
+        int day = toDay(date);
+        if (contains(day)) {
+            return this;
+        }
+        if (day < baseDay) {
+            int shift = baseDay - day;
+            long[] shifted = new long[wordCount(words.length * 64 + shift)];
+            for (int bit = nextSetBit(0); bit >= 0; bit = nextSetBit(bit + 1)) {
+                int target = bit + shift;
+                shifted[target >>> 6] |= 1L << target;
+            }
+            shifted[0] |= 1L;
+            return new CompletionCalendar(day, shifted);
+        }
+        int bit = day - baseDay;
+        long[] extended = Arrays.copyOf(words, Math.max(words.length, wordCount(bit + 1)));
+        extended[bit >>> 6] |= 1L << bit;
+        return new CompletionCalendar(baseDay, extended);
+    }
+
+    /**
+     * Проверяет, выполнена ли привычка в указанный день.
+     *
+     * @param date дата.
+     * @return true, если день отмечен.
+     */
+    public boolean contains(LocalDate date) {
+        return contains(toDay(date));
+    }
+
+    /**
+     * Возвращает общее количество дней выполнения.
+     *
+     * @return количество установленных битов.
+     */
+    public int count() {
+        return cardinality;
+    }
+
+    /**
+     * Подсчитывает дни выполнения в периоде.
+     *
+     * @param startDate начало периода.
+     * @param endDate   конец периода.
+     * @return количество дней выполнения в периоде включительно.
+     */
+    public int countInRange(LocalDate startDate, LocalDate endDate) {
+        long from = Math.max(0L, startDate.toEpochDay() - baseDay);
+        long to = Math.min((long) words.length * 64 - 1, endDate.toEpochDay() - baseDay);
+        if (from > to) {
+            return 0;
+        }
+        int firstWord = (int) (from >>> 6);
+        int lastWord = (int) (to >>> 6);
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if (firstWord == lastWord) {
+            return Long.bitCount(words[firstWord] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(words[firstWord] & firstMask);
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return count + Long.bitCount(words[lastWord] & lastMask);
+    }
+
+    /**
+     * Вычисляет серию подряд идущих дней выполнения, заканчивающуюся указанной датой.
+     *
+     * @param date последний день серии.
+     * @return длина серии; 0, если в указанный день привычка не выполнена.
+     */
+    public int streakEndingAt(LocalDate date) {
+        long day = date.toEpochDay() - baseDay;
+        if (day < 0 || day >= (long) words.length * 64) {
+            return 0;
+        }
+        int wordIndex = (int) (day >>> 6);
+        int bit = (int) (day & 63);
+        int streak = 0;
+        while (wordIndex >= 0) {
+            int run = Math.min(Long.numberOfLeadingZeros(~(words[wordIndex] << (63 - bit))), bit + 1);
+            streak += run;
+            if (run <= bit) {
+                break;
+            }
+            wordIndex--;
+            bit = 63;
+        }
+        return streak;
+    }
+
+    /**
+     * Возвращает все серии подряд идущих дней выполнения за один проход по битовой карте:
+     * начало серии ищется среди установленных битов, конец — среди сброшенных.
+     *
+     * @return серии по возрастанию дат.
+     */
+    public List<StreakInterval> streaks() {
+        List<StreakInterval> streaks = new ArrayList<>();
+        for (int start = nextSetBit(0); start >= 0; ) {
+            int end = nextClearBit(start);
+            streaks.add(new StreakInterval(LocalDate.ofEpochDay(baseDay + start), LocalDate.ofEpochDay(baseDay + end - 1)));
+            start = nextSetBit(end);
+        }
+        return streaks;
+    }
+
+    /**
+     * Вычисляет показатели отчета за один проход по сериям битовой карты: количество дней
+     * в периоде, текущую, самую длинную и среднюю серию. В отличие от {@link #streaks()}
+     * объекты серий не создаются.
+     *
+     * @param startDate   начало периода отчета.
+     * @param endDate     конец периода отчета.
+     * @param currentDate последний день текущей серии.
+     * @return показатели выполнения привычки.
+     */
+    public CompletionStatistics statistics(LocalDate startDate, LocalDate endDate, LocalDate currentDate) {
+        long from = startDate.toEpochDay() - baseDay;
+        long to = endDate.toEpochDay() - baseDay;
+        long current = currentDate.toEpochDay() - baseDay;
+        int inPeriod = 0;
+        int currentStreak = 0;
+        int longest = 0;
+        long total = 0;
+        int streakCount = 0;
+        for (int start = nextSetBit(0); start >= 0; ) {
+            int end = nextClearBit(start);
+            int length = end - start;
+            longest = Math.max(longest, length);
+            total += length;
+            streakCount++;
+            inPeriod += (int) Math.max(0, Math.min(to + 1, end) - Math.max(from, start));
+            if (current >= start && current < end) {
+                currentStreak = (int) (current - start + 1);
+            }
+            start = nextSetBit(end);
+        }
+        double average = streakCount == 0 ? 0 : (double) total / streakCount;
+        return new CompletionStatistics(inPeriod, currentStreak, longest, average);
+    }
+
+    /**
+     * Возвращает дни выполнения по возрастанию.
+     *
+     * @return массив дней в виде {@link LocalDate#toEpochDay()}.
+     */
+    public int[] toEpochDays() {
+        int[] days = new int[cardinality];
+        int i = 0;
+        for (int bit = nextSetBit(0); bit >= 0; bit = nextSetBit(bit + 1)) {
+            days[i++] = baseDay + bit;
+        }
+        return days;
+    }
+
+    /**
+     * Возвращает дату, соответствующую нулевому биту.
+     *
+     * @return начальная дата календаря.
+     */
+    public LocalDate getBaseDate() {
+        return LocalDate.ofEpochDay(baseDay);
+    }
+
+    /**
+     * Возвращает оценку памяти, занимаемой календарем в куче.
+     *
+     * @return объем, байт.
+     */
+    public long memoryBytes() {
+        return 32L + 16L + (long) words.length * Long.BYTES;
+    }
+
+    private boolean contains(int day) {
+        int bit = day - baseDay;
+        return bit >= 0 && (bit >>> 6) < words.length && (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private int nextSetBit(int fromBit) {
+        int wordIndex = fromBit >>> 6;
+        if (wordIndex >= words.length) {
+            return -1;
+        }
+        long word = words[wordIndex] & (-1L << fromBit);
+        while (true) {
+            if (word != 0) {
+                return wordIndex * 64 + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+    }
+
+    private int nextClearBit(int fromBit) {
+        int wordIndex = fromBit >>> 6;
+        if (wordIndex >= words.length) {
+            return fromBit;
+        }
+        long word = ~words[wordIndex] & (-1L << fromBit);
+        while (true) {
+            if (word != 0) {
+                return wordIndex * 64 + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == words.length) {
+                return words.length * 64;
+            }
+            word = ~words[wordIndex];
+        }
+    }
+
+    private static int wordCount(int bits) {
+        return bits <= 0 ? 0 : ((bits - 1) >>> 6) + 1;
+    }
+
+    private static int toDay(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompletionCalendar that = (CompletionCalendar) o;
+        return Arrays.equals(toEpochDays(), that.toEpochDays());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toEpochDays());
+    }
+
+    @Override
+    public String toString() {
+        return "CompletionCalendar{" +
+                "baseDate=" + getBaseDate() +
+                ", count=" + cardinality +
+                '}';
+    }
+}
@@ -0,0 +1,12 @@
+package ru.ylab.habittracker.models;
+
+/**
+ * Показатели выполнения привычки для отчета, полученные за один проход по календарю.
+ *
+ * @param completionsInPeriod количество дней выполнения в периоде отчета.
+ * @param currentStreak       длина серии, заканчивающейся текущей датой.
+ * @param longestStreak       длина самой длинной серии.
+ * @param averageStreak       средняя длина серии.
+ */
+public record CompletionStatistics(int completionsInPeriod, int currentStreak, int longestStreak, double averageStreak) {
+}
@@ -0,0 +1,10 @@
+package ru.ylab.habittracker.models;
+
+/**
+ * Привычка вместе с днями ее выполнения.
+ *
+ * @param habit          привычка.
+ * @param completionDays дни выполнения по возрастанию в виде {@link java.time.LocalDate#toEpochDay()}.
+ */
+public record HabitCompletionDays(Habit habit, int[] completionDays) {
+}
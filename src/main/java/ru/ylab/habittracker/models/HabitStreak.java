@@ -0,0 +1,39 @@
+package ru.ylab.habittracker.models;
+
+import ru.ylab.habittracker.utils.Frequency;
+
+import java.time.LocalDate;
+
+/**
+ * Счетчики серий привычки, хранящиеся в таблице habit. Счетчики ведутся по дням
+ * независимо от частоты привычки.
+ *
+ * @param habitId           идентификатор привычки.
+ * @param frequency         частота выполнения привычки.
+ * @param currentStreak     длина серии, заканчивающейся днем последнего выполнения.
+ * @param longestStreak     длина самой длинной серии за всю историю.
+ * @param lastCompletedDate дата последнего выполнения или null, если выполнений нет.
+ */
+public record HabitStreak(Long habitId, Frequency frequency, int currentStreak, int longestStreak, LocalDate lastCompletedDate) {
+
+    /**
+     * Проверяет, может ли серия на указанную дату быть получена из счетчиков.
+     * Для дат раньше последнего выполнения счетчики не содержат информации.
+     *
+     * @param date дата, на которую запрашивается серия.
+     * @return true, если дата не раньше последнего выполнения или выполнений нет.
+     */
+    public boolean covers(LocalDate date) {
+        return lastCompletedDate == null || !date.isBefore(lastCompletedDate);
+    }
+
+    /**
+     * Возвращает серию, заканчивающуюся указанной датой, для дат, покрываемых счетчиками.
+     *
+     * @param date дата, не раньше даты последнего выполнения.
+     * @return длина серии; 0, если в указанный день привычка не выполнена.
+     */
+    public int streakEndingAt(LocalDate date) {
+        return date.equals(lastCompletedDate) ? currentStreak : 0;
+    }
+}
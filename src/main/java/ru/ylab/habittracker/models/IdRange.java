@@ -0,0 +1,41 @@
+package ru.ylab.habittracker.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Диапазон идентификаторов, включающий обе границы.
+ *
+ * @param from первый идентификатор диапазона.
+ * @param to   последний идентификатор диапазона.
+ */
+public record IdRange(long from, long to) {
+
+    public IdRange {
+        if (from > to) {
+            throw new IllegalArgumentException("Invalid id range: " + from + ".." + to);
+        }
+    }
+
+    /**
+     * Делит диапазон на непересекающиеся части примерно равной ширины.
+     *
+     * @param parts желаемое количество частей.
+     * @return части по возрастанию идентификаторов; частей меньше, если диапазон уже {@code parts}.
+     */
+    public List<IdRange> split(int parts) {
+        if (parts <= 0) {
+            throw new IllegalArgumentException("Number of parts must be positive: " + parts);
+        }
+        long width = Math.max(1, (to - from) / parts + 1);
+        List<IdRange> ranges = new ArrayList<>(parts);
+        for (long start = from; start <= to; start += width) {
+            long end = to - start < width ? to : start + width - 1;
+            ranges.add(new IdRange(start, end));
+            if (end == to) {
+                break;
+            }
+        }
+        return ranges;
+    }
+}
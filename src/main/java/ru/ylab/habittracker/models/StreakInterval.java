@@ -0,0 +1,25 @@
+package ru.ylab.habittracker.models;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Серия подряд идущих периодов выполнения привычки: дней для ежедневных привычек
+ * и недель для еженедельных.
+ *
+ * @param startDate первый день серии.
+ * @param endDate   последний день серии.
+ * @param length    длина серии в периодах частоты привычки.
+ */
+public record StreakInterval(LocalDate startDate, LocalDate endDate, int length) {
+
+    /**
+     * Создает серию подряд идущих дней.
+     *
+     * @param startDate первый день серии.
+     * @param endDate   последний день серии.
+     */
+    public StreakInterval(LocalDate startDate, LocalDate endDate) {
+        this(startDate, endDate, (int) ChronoUnit.DAYS.between(startDate, endDate) + 1);
+    }
+}
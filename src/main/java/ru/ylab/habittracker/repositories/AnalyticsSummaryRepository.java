@@ -0,0 +1,19 @@
+package ru.ylab.habittracker.repositories;
+
+import ru.ylab.habittracker.models.AnalyticsSummary;
+
+import java.time.LocalDateTime;
+
+/**
+ * Интерфейс репозитория для сохранения сводной аналитики.
+ */
+public interface AnalyticsSummaryRepository {
+    /**
+     * Сохраняет сводную аналитику в таблицу analytics_summary.
+     *
+     * @param summary сводная аналитика
+     * @param computedAt момент расчета
+     * @return количество сохраненных строк, или 0, если сохранение не удалось
+     */
+    int save(AnalyticsSummary summary, LocalDateTime computedAt);
+}
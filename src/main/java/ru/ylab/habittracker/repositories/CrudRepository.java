@@ -1,6 +1,8 @@
 package ru.ylab.habittracker.repositories;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Интерфейс для выполнения операций CRUD (создание, чтение, обновление, удаление)
@@ -17,6 +19,26 @@ public interface CrudRepository<T> {
      */
     List<T> findAll();
 
+    /**
+     * Возвращает все сущности в виде потока, читаемого через серверный курсор порциями.
+     * Поток удерживает соединение с базой данных, поэтому его необходимо закрыть,
+     * например с помощью try-with-resources.
+     *
+     * @return поток всех сущностей
+     */
+    Stream<T> streamAll();
+
+    /**
+     * Передает все сущности обработчику, не загружая их в память целиком.
+     *
+     * @param action обработчик, вызываемый для каждой сущности
+     */
+    default void forEach(Consumer<? super T> action) {
+        try (Stream<T> entities = streamAll()) {
+            entities.forEach(action);
+        }
+    }
+
     /**
      * Сохраняет новую сущность.
      *
@@ -0,0 +1,47 @@
+package ru.ylab.habittracker.repositories;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Интерфейс репозитория для управления месячными секциями таблицы habit_completion.
+ *
+ * <p>Таблица секционирована по диапазонам completion_date: по секции на месяц и секция
+ * по умолчанию для дат, на которые месячная секция еще не создана.</p>
+ */
+public interface HabitCompletionPartitionRepository {
+    /**
+     * Возвращает месяцы, для которых созданы секции.
+     *
+     * @return месяцы по возрастанию
+     */
+    List<YearMonth> findPartitions();
+
+    /**
+     * Создает секцию за месяц. Строки этого месяца, попавшие в секцию по умолчанию,
+     * переносятся в новую секцию в той же транзакции.
+     *
+     * @param month месяц секции
+     * @return true, если секция создана; false, если она уже существует или создание не удалось
+     */
+    boolean createPartition(YearMonth month);
+
+    /**
+     * Отсоединяет секцию за месяц от таблицы и удаляет ее вместе со строками. Сводные таблицы
+     * недель и месяцев в той же транзакции приводятся к оставшимся строкам.
+     *
+     * @param month месяц секции
+     * @return true, если секция удалена; false, если ее нет или удаление не удалось
+     */
+    boolean dropPartition(YearMonth month);
+
+    /**
+     * Упорядочивает строки месячных секций по (habit_id, completion_date) командой CLUSTER,
+     * чтобы история одной привычки занимала соседние страницы. Обрабатываются секции месяцев
+     * раньше указанного, еще не упорядоченные по этому индексу.
+     *
+     * @param before первый месяц, секции которого не упорядочиваются
+     * @return количество упорядоченных секций
+     */
+    int clusterPartitions(YearMonth before);
+}
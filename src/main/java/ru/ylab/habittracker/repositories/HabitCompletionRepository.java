@@ -1,10 +1,17 @@
 package ru.ylab.habittracker.repositories;
 
+import ru.ylab.habittracker.models.CompletionActivity;
 import ru.ylab.habittracker.models.HabitCompletion;
+import ru.ylab.habittracker.models.IdRange;
+import ru.ylab.habittracker.models.StreakInterval;
+import ru.ylab.habittracker.utils.RollupPeriod;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Интерфейс репозитория для управления сущностями {@code HabitCompletion}.
@@ -21,14 +28,62 @@ public interface HabitCompletionRepository extends CrudRepository<HabitCompletio
      */
     Optional<HabitCompletion> findById(Long id);
 
+    /**
+     * Сохраняет завершение привычки, если за эту дату привычка еще не отмечена.
+     * Проверка и вставка выполняются одной атомарной командой.
+     *
+     * @param entity завершение привычки для сохранения
+     * @return {@link Optional} с сохраненным завершением, или {@link Optional#empty()},
+     * если завершение за эту дату уже существует
+     * @throws IllegalStateException если сохранение не удалось из-за ошибки базы данных
+     */
+    Optional<HabitCompletion> saveIfAbsent(HabitCompletion entity);
+
+    /**
+     * Сохраняет набор завершений привычек пакетами в одной транзакции.
+     *
+     * @param entities завершения привычек для сохранения
+     * @return сохраненные завершения с идентификаторами в порядке входной коллекции,
+     * или пустой список, если сохранение не удалось
+     */
+    List<HabitCompletion> saveAll(Collection<HabitCompletion> entities);
+
+    /**
+     * Сохраняет набор завершений привычек одной командой в одной транзакции, пропуская даты,
+     * за которые привычка уже отмечена, в том числе повторы внутри набора.
+     *
+     * @param entities завершения привычек для сохранения
+     * @return результаты в порядке входного списка: сохраненное завершение или {@link Optional#empty()}
+     * для дубликата; пустой список, если сохранение не удалось
+     */
+    List<Optional<HabitCompletion>> saveAllIfAbsent(List<HabitCompletion> entities);
+
+    /**
+     * Загружает набор завершений привычек командой {@code COPY FROM STDIN}.
+     * Предназначен для больших объемов данных: идентификаторы сохраненных записей не возвращаются.
+     *
+     * @param entities завершения привычек для загрузки
+     * @return количество загруженных строк, или 0, если загрузка не удалась
+     */
+    long copyAll(Collection<HabitCompletion> entities);
+
     /**
      * Находит все завершения привычки по идентификатору привычки.
      *
      * @param habitId идентификатор привычки
-     * @return список завершений привычки
+     * @return список завершений привычки, упорядоченный по дате
      */
     List<HabitCompletion> findByHabitId(Long habitId);
 
+    /**
+     * Возвращает дни выполнения привычки в виде отсортированного по возрастанию массива
+     * {@link LocalDate#toEpochDay()} без создания объектов на каждую строку.
+     *
+     * @param habitId идентификатор привычки
+     * @return отсортированный массив дней выполнения
+     */
+    int[] findCompletionDaysByHabitId(Long habitId);
+
     /**
      * Находит завершения привычки по идентификатору привычки и диапазону дат.
      *
@@ -38,4 +93,79 @@ public interface HabitCompletionRepository extends CrudRepository<HabitCompletio
      * @return список завершений привычки за указанный период
      */
     List<HabitCompletion> findByHabitIdAndPeriod(Long habitId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Подсчитывает количество завершений привычки за указанный период. Полные календарные месяцы
+     * периода читаются из сводной таблицы месяцев, построчно считаются только дни неполных
+     * месяцев на краях периода.
+     *
+     * @param habitId идентификатор привычки
+     * @param startDate дата начала периода
+     * @param endDate дата окончания периода
+     * @return количество завершений привычки за указанный период
+     */
+    long countByHabitIdAndPeriod(Long habitId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Находит все серии выполнения привычки с учетом ее частоты: для ежедневных привычек
+     * серия состоит из подряд идущих дней, для еженедельных — из подряд идущих недель ISO.
+     * Серии выделяются в базе данных запросом gaps-and-islands, клиенту передается
+     * по одной строке на серию.
+     *
+     * @param habitId идентификатор привычки
+     * @return серии по возрастанию дат
+     */
+    List<StreakInterval> findStreakIntervals(Long habitId);
+
+    /**
+     * Открывает поток активности привычек из диапазона идентификаторов за период: по строке на каждое
+     * выполнение и по строке с пустой датой на привычку без выполнений. Строки одной привычки идут подряд.
+     * Поток необходимо закрыть после использования.
+     *
+     * @param habitIds диапазон идентификаторов привычек
+     * @param startDate начало периода
+     * @param endDate конец периода
+     * @return поток активности, упорядоченный по идентификатору привычки
+     */
+    Stream<CompletionActivity> streamActivity(IdRange habitIds, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Подсчитывает по дням периода количество разных пользователей, выполнивших хотя бы одну привычку.
+     * Подсчет выполняется базой данных, поэтому приложение не хранит идентификаторы пользователей.
+     *
+     * @param startDate начало периода
+     * @param endDate конец периода
+     * @return количество активных пользователей по дате, упорядоченное по возрастанию дат; дни без выполнений отсутствуют
+     */
+    Map<LocalDate, Integer> countDailyActiveUsers(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Пересчитывает счетчики серий (current_streak, longest_streak, last_completed_date)
+     * указанных привычек по таблице выполнений.
+     *
+     * @param habitIds идентификаторы привычек
+     * @return количество обновленных привычек
+     */
+    int recalculateStreaks(Collection<Long> habitIds);
+
+    /**
+     * Возвращает количество выполнений привычки по периодам из сводной таблицы (неделя или месяц).
+     * Чтение затрагивает по строке на период, а не по строке на выполнение. В выборку входят
+     * все периоды, пересекающиеся с диапазоном дат; периоды без выполнений отсутствуют.
+     *
+     * @param habitId идентификатор привычки
+     * @param period период агрегации
+     * @param startDate дата начала диапазона
+     * @param endDate дата окончания диапазона
+     * @return количество выполнений по началу периода, упорядоченное по возрастанию дат
+     */
+    Map<LocalDate, Integer> findCompletionCounts(Long habitId, RollupPeriod period, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Перестраивает строки сводных таблиц недель и месяцев указанных привычек по таблице выполнений.
+     *
+     * @param habitIds идентификаторы привычек
+     * @return количество записанных строк сводных таблиц
+     */
+    int recalculateRollups(Collection<Long> habitIds);
 }
@@ -1,9 +1,14 @@
 package ru.ylab.habittracker.repositories;
 
 import ru.ylab.habittracker.models.Habit;
+import ru.ylab.habittracker.models.HabitCompletionDays;
+import ru.ylab.habittracker.models.HabitStreak;
+import ru.ylab.habittracker.models.IdRange;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -21,6 +26,23 @@ public interface HabitsRepository extends CrudRepository<Habit> {
      */
     Optional<Habit> findById(Long id);
 
+    /**
+     * Находит привычки по набору идентификаторов одним запросом.
+     *
+     * @param ids идентификаторы привычек
+     * @return привычки по идентификаторам; отсутствующие идентификаторы в результат не попадают
+     */
+    Map<Long, Habit> findAllByIds(Collection<Long> ids);
+
+    /**
+     * Находит привычку по идентификатору и блокирует ее строку до конца текущей транзакции
+     * ({@code SELECT ... FOR UPDATE}).
+     *
+     * @param id идентификатор привычки
+     * @return {@link Optional} с привычкой, если найдена, иначе {@link Optional#empty()}
+     */
+    Optional<Habit> findByIdForUpdate(Long id);
+
     /**
      * Находит все привычки по идентификатору пользователя.
      *
@@ -29,6 +51,17 @@ public interface HabitsRepository extends CrudRepository<Habit> {
      */
     List<Habit> findByUserId(Long userId);
 
+    /**
+     * Возвращает страницу привычек пользователя, упорядоченных по идентификатору,
+     * начиная после указанного идентификатора.
+     *
+     * @param userId идентификатор пользователя
+     * @param afterId идентификатор последней привычки предыдущей страницы или null для первой страницы
+     * @param limit максимальное количество привычек на странице
+     * @return список привычек страницы
+     */
+    List<Habit> findByUserId(Long userId, Long afterId, int limit);
+
     /**
      * Находит привычки по идентификатору пользователя и дате создания.
      *
@@ -37,4 +70,29 @@ public interface HabitsRepository extends CrudRepository<Habit> {
      * @return список привычек, созданных в указанную дату
      */
     List<Habit> findByUserIdAndDate(Long userId, LocalDate createdDate);
+
+    /**
+     * Находит все привычки пользователя вместе с днями их выполнения за период одним запросом.
+     *
+     * @param userId идентификатор пользователя
+     * @param from   первая дата периода или null, чтобы включить всю историю до {@code to}
+     * @param to     последняя дата периода
+     * @return привычки пользователя по возрастанию идентификатора с днями выполнения за период по возрастанию
+     */
+    List<HabitCompletionDays> findWithCompletionDaysByUserId(Long userId, LocalDate from, LocalDate to);
+
+    /**
+     * Находит счетчики серий привычки по ее идентификатору.
+     *
+     * @param id идентификатор привычки
+     * @return {@link Optional} со счетчиками, если привычка найдена, иначе {@link Optional#empty()}
+     */
+    Optional<HabitStreak> findStreakById(Long id);
+
+    /**
+     * Находит диапазон идентификаторов всех привычек.
+     *
+     * @return {@link Optional} с наименьшим и наибольшим идентификатором, или {@link Optional#empty()}, если привычек нет
+     */
+    Optional<IdRange> findIdRange();
 }
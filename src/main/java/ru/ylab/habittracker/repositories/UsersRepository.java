@@ -2,6 +2,9 @@ package ru.ylab.habittracker.repositories;
 
 import ru.ylab.habittracker.models.Users;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 
@@ -27,4 +30,31 @@ public interface UsersRepository extends CrudRepository<Users> {
      * @return {@link Optional} с пользователем, если найден, иначе {@link Optional#empty()}
      */
     Optional<Users> findById(Long id);
+
+    /**
+     * Находит пользователей по набору идентификаторов одним запросом.
+     *
+     * @param ids идентификаторы пользователей
+     * @return пользователи по идентификаторам; отсутствующие идентификаторы в результат не попадают
+     */
+    Map<Long, Users> findAllByIds(Collection<Long> ids);
+
+    /**
+     * Находит пользователей по набору идентификаторов и блокирует найденные строки
+     * до конца текущей транзакции ({@code SELECT ... FOR UPDATE}).
+     *
+     * @param ids идентификаторы пользователей
+     * @return пользователи по идентификаторам; отсутствующие идентификаторы в результат не попадают
+     */
+    Map<Long, Users> findAllByIdsForUpdate(Collection<Long> ids);
+
+    /**
+     * Возвращает страницу пользователей, упорядоченных по идентификатору, начиная
+     * после указанного идентификатора.
+     *
+     * @param afterId идентификатор последнего пользователя предыдущей страницы или null для первой страницы
+     * @param limit максимальное количество пользователей на странице
+     * @return список пользователей страницы
+     */
+    List<Users> findPage(Long afterId, int limit);
 }
@@ -0,0 +1,104 @@
+package ru.ylab.habittracker.repositories.impl;
+
+import ru.ylab.habittracker.app.DatabaseConnection;
+import ru.ylab.habittracker.models.AnalyticsSummary;
+import ru.ylab.habittracker.repositories.AnalyticsSummaryRepository;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Реализация репозитория сводной аналитики.
+ *
+ * <p>Каждая метрика хранится строкой (metric, metric_key, metric_value), все строки одного
+ * расчета записываются одним JDBC-пакетом в одной транзакции и имеют общий computed_at.</p>
+ */
+public class AnalyticsSummaryRepositoryImpl implements AnalyticsSummaryRepository {
+    /**
+     * Общее количество выполнений за период.
+     */
+    public static final String TOTAL_COMPLETIONS = "total_completions";
+    /**
+     * Количество привычек.
+     */
+    public static final String HABITS = "habits";
+    /**
+     * Количество активных пользователей за день; ключ — дата.
+     */
+    public static final String DAILY_ACTIVE_USERS = "daily_active_users";
+    /**
+     * Количество привычек в интервале процента выполнения; ключ — нижняя граница интервала в процентах.
+     */
+    public static final String COMPLETION_RATE_HISTOGRAM = "completion_rate_histogram";
+    /**
+     * Количество выполнений привычки из числа самых выполняемых; ключ — идентификатор привычки.
+     */
+    public static final String TOP_HABIT = "top_habit";
+
+    private final DatabaseConnection databaseConnection;
+
+    public AnalyticsSummaryRepositoryImpl(DatabaseConnection databaseConnection) {
+        this.databaseConnection = databaseConnection;
+    }
+
+    /**
+     * Сохраняет сводную аналитику в таблицу analytics_summary.
+     *
+     * @param summary сводная аналитика
+     * @param computedAt момент расчета
+     * @return количество сохраненных строк, или 0, если сохранение не удалось
+     */
+    @Override
+    public int save(AnalyticsSummary summary, LocalDateTime computedAt) {
+        String sql = "INSERT INTO habit_tracking_schema.analytics_summary(computed_at, period_start, period_end, metric, metric_key, metric_value) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                Timestamp timestamp = Timestamp.valueOf(computedAt);
+                int rows = 0;
+                rows += addRow(statement, timestamp, summary, TOTAL_COMPLETIONS, null, summary.totalCompletions());
+                rows += addRow(statement, timestamp, summary, HABITS, null, summary.habits());
+                for (Map.Entry<LocalDate, Integer> day : summary.dailyActiveUsers().entrySet()) {
+                    rows += addRow(statement, timestamp, summary, DAILY_ACTIVE_USERS, day.getKey().toString(), day.getValue());
+                }
+                List<Long> histogram = summary.completionRateHistogram();
+                for (int bucket = 0; bucket < histogram.size(); bucket++) {
+                    rows += addRow(statement, timestamp, summary, COMPLETION_RATE_HISTOGRAM,
+                            String.valueOf(bucket * 100 / histogram.size()), histogram.get(bucket));
+                }
+                for (AnalyticsSummary.TopHabit topHabit : summary.topHabits()) {
+                    rows += addRow(statement, timestamp, summary, TOP_HABIT, String.valueOf(topHabit.habitId()), topHabit.completions());
+                }
+                statement.executeBatch();
+                connection.commit();
+                return rows;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при сохранении аналитики: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    private int addRow(PreparedStatement statement, Timestamp computedAt, AnalyticsSummary summary,
+                       String metric, String key, double value) throws SQLException {
+        statement.setTimestamp(1, computedAt);
+        statement.setDate(2, Date.valueOf(summary.periodStart()));
+        statement.setDate(3, Date.valueOf(summary.periodEnd()));
+        statement.setString(4, metric);
+        statement.setString(5, key);
+        statement.setDouble(6, value);
+        statement.addBatch();
+        return 1;
+    }
+}
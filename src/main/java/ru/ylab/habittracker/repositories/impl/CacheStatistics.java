@@ -0,0 +1,22 @@
+package ru.ylab.habittracker.repositories.impl;
+
+/**
+ * Снимок статистики кэша репозитория.
+ *
+ * @param size      текущее количество записей в кэше.
+ * @param hits      количество запросов, обслуженных из кэша.
+ * @param misses    количество запросов, переданных в базу данных.
+ * @param evictions количество записей, вытесненных из-за ограничения размера или истечения срока.
+ */
+public record CacheStatistics(int size, long hits, long misses, long evictions) {
+
+    /**
+     * Возвращает долю запросов, обслуженных из кэша.
+     *
+     * @return доля попаданий в кэш от 0 до 1.
+     */
+    public double hitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,246 @@
+package ru.ylab.habittracker.repositories.impl;
+
+import ru.ylab.habittracker.app.TransactionTemplate;
+import ru.ylab.habittracker.models.Users;
+import ru.ylab.habittracker.repositories.UsersRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Кэширующая обертка над {@link UsersRepository}.
+ *
+ * <p>Результаты {@link #findById(Long)} хранятся ограниченное время в кэше ограниченного размера
+ * с вытеснением давно не использованных записей (LRU). Изменение и удаление пользователя
+ * проходят в базу данных и затем удаляют запись из кэша. Отсутствующие пользователи
+ * не кэшируются, поэтому сохранение нового пользователя не требует инвалидации.</p>
+ *
+ * <p>Чтение из базы данных выполняется вне блокировки. Чтобы значение, прочитанное до
+ * параллельного изменения, не попало в кэш после инвалидации, каждая инвалидация увеличивает
+ * номер эпохи, а загруженное значение сохраняется, только если эпоха за время чтения не изменилась.
+ * Внутри {@link TransactionTemplate} запись удаляется повторно после завершения транзакции,
+ * чтобы в кэше не осталось значение, прочитанное до фиксации или из откаченной транзакции.</p>
+ *
+ * <p>Внутри транзакции чтение идет в базу данных через соединение транзакции в обход кэша
+ * и не заполняет его: проверки прав в транзакции должны видеть текущие роль и блокировку
+ * пользователя, а не значение, загруженное до их изменения.</p>
+ *
+ * <p>Кэш хранит и возвращает копии объектов, так как {@link Users} изменяем и сервисы
+ * модифицируют полученные объекты перед сохранением.</p>
+ */
+public class CachingUsersRepository implements UsersRepository {
+    private final UsersRepository delegate;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long epoch;
+
+    /**
+     * Создает кэширующий репозиторий.
+     *
+     * @param delegate  репозиторий, к которому обращается кэш при промахе.
+     * @param maxSize   максимальное количество пользователей в кэше.
+     * @param ttlMillis время жизни записи в миллисекундах.
+     */
+    public CachingUsersRepository(UsersRepository delegate, int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache max size must be positive: " + maxSize);
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache TTL must be positive: " + ttlMillis);
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * Находит пользователя по идентификатору, обращаясь к базе данных только при промахе кэша.
+     *
+     * @param id идентификатор пользователя.
+     * @return Optional<Users> копия пользователя, если найден, иначе пустой Optional.
+     */
+    @Override
+    public Optional<Users> findById(Long id) {
+        if (TransactionTemplate.isTransactionActive()) {
+            return delegate.findById(id);
+        }
+        long loadEpoch;
+        synchronized (this) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAtNanos < 0) {
+                    hits.increment();
+                    return Optional.of(copyOf(entry.user));
+                }
+                entries.remove(id);
+                evictions.increment();
+            }
+            misses.increment();
+            loadEpoch = epoch;
+        }
+
+        Optional<Users> loaded = delegate.findById(id);
+        loaded.ifPresent(user -> put(id, copyOf(user), loadEpoch));
+        return loaded;
+    }
+
+    /**
+     * Находит пользователей по набору идентификаторов. Найденные в кэше пользователи
+     * возвращаются из него, остальные загружаются одним запросом и помещаются в кэш.
+     *
+     * @param ids идентификаторы пользователей.
+     * @return копии пользователей по идентификаторам; отсутствующие идентификаторы в результат не попадают.
+     */
+    @Override
+    public Map<Long, Users> findAllByIds(Collection<Long> ids) {
+        if (TransactionTemplate.isTransactionActive()) {
+            return delegate.findAllByIds(ids);
+        }
+        Map<Long, Users> users = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        long loadEpoch;
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Long id : ids) {
+                if (users.containsKey(id) || missing.contains(id)) {
+                    continue;
+                }
+                Entry entry = entries.get(id);
+                if (entry != null && now - entry.expiresAtNanos < 0) {
+                    hits.increment();
+                    users.put(id, copyOf(entry.user));
+                    continue;
+                }
+                if (entry != null) {
+                    entries.remove(id);
+                    evictions.increment();
+                }
+                misses.increment();
+                missing.add(id);
+            }
+            loadEpoch = epoch;
+        }
+
+        if (!missing.isEmpty()) {
+            delegate.findAllByIds(missing).forEach((id, user) -> {
+                put(id, copyOf(user), loadEpoch);
+                users.put(id, user);
+            });
+        }
+        return users;
+    }
+
+    @Override
+    public Map<Long, Users> findAllByIdsForUpdate(Collection<Long> ids) {
+        return delegate.findAllByIdsForUpdate(ids);
+    }
+
+    @Override
+    public Optional<Users> findByEmail(String email) {
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public List<Users> findPage(Long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public List<Users> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Stream<Users> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public Users save(Users entity) {
+        return delegate.save(entity);
+    }
+
+    /**
+     * Обновляет пользователя в базе данных и удаляет его из кэша.
+     *
+     * @param entity объект Users с обновленными данными.
+     * @return Users объект, если обновление успешно, иначе null.
+     */
+    @Override
+    public Users update(Users entity) {
+        try {
+            return delegate.update(entity);
+        } finally {
+            invalidate(entity.getId());
+            TransactionTemplate.afterCompletion(() -> invalidate(entity.getId()));
+        }
+    }
+
+    /**
+     * Удаляет пользователя из базы данных и из кэша.
+     *
+     * @param id идентификатор пользователя.
+     */
+    @Override
+    public void delete(Long id) {
+        try {
+            delegate.delete(id);
+        } finally {
+            invalidate(id);
+            TransactionTemplate.afterCompletion(() -> invalidate(id));
+        }
+    }
+
+    /**
+     * Удаляет пользователя из кэша.
+     *
+     * @param id идентификатор пользователя.
+     */
+    public synchronized void invalidate(Long id) {
+        epoch++;
+        entries.remove(id);
+    }
+
+    /**
+     * Возвращает статистику кэша.
+     *
+     * @return снимок статистики кэша.
+     */
+    public synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(entries.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private synchronized void put(Long id, Users user, long loadEpoch) {
+        if (loadEpoch != epoch) {
+            return;
+        }
+        entries.put(id, new Entry(user, System.nanoTime() + ttlNanos));
+        Iterator<Map.Entry<Long, Entry>> leastRecentlyUsed = entries.entrySet().iterator();
+        while (entries.size() > maxSize) {
+            leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            evictions.increment();
+        }
+    }
+
+    private static Users copyOf(Users user) {
+        return new Users(user.getId(), user.getName(), user.getEmail(), user.getPassword(), user.getRole(), user.isBlocked());
+    }
+
+    private record Entry(Users user, long expiresAtNanos) {
+    }
+}
@@ -0,0 +1,230 @@
+package ru.ylab.habittracker.repositories.impl;
+
+import ru.ylab.habittracker.app.DatabaseConnection;
+import ru.ylab.habittracker.repositories.HabitCompletionPartitionRepository;
+import ru.ylab.habittracker.utils.IsoWeeks;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реализация репозитория месячных секций таблицы habit_completion.
+ *
+ * <p>Секция месяца называется {@code habit_completion_pYYYY_MM} и покрывает даты
+ * с первого числа месяца включительно до первого числа следующего месяца. Границы секций
+ * задаются в DDL, поэтому подставляются в текст команды; имена и даты формируются только
+ * из {@link YearMonth}. Удаление секции выполняется через DETACH PARTITION и DROP TABLE
+ * и не требует построчного DELETE. В той же транзакции удаляется строка сводной таблицы
+ * месяцев, а строки сводной таблицы недель, пересекающихся с месяцем, перестраиваются
+ * по оставшимся выполнениям этих недель.</p>
+ *
+ * <p>Упорядочивание выполняется по секциям, так как CLUSTER секционированной таблицы целиком
+ * не поддерживается; для каждой секции используется ее часть индекса
+ * ux_habit_completion_habit_id_completion_date. Признак indisclustered, который CLUSTER
+ * устанавливает на индексе, отмечает уже упорядоченные секции.</p>
+ */
+public class HabitCompletionPartitionRepositoryImpl implements HabitCompletionPartitionRepository {
+    private static final String SCHEMA = "habit_tracking_schema";
+    private static final String PARENT_TABLE = SCHEMA + ".habit_completion";
+    private static final String DEFAULT_PARTITION = SCHEMA + ".habit_completion_default";
+    private static final String HABIT_DATE_INDEX = SCHEMA + ".ux_habit_completion_habit_id_completion_date";
+    private static final String PARTITION_PREFIX = "habit_completion_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String DELETE_MONTHLY_ROLLUP_SQL = "DELETE FROM " + SCHEMA + ".habit_completion_monthly WHERE month_start = ?";
+    private static final String DELETE_WEEKLY_ROLLUPS_SQL = "DELETE FROM " + SCHEMA + ".habit_completion_weekly WHERE week_start BETWEEN ? AND ?";
+    private static final String REBUILD_WEEKLY_ROLLUPS_SQL = "INSERT INTO " + SCHEMA + ".habit_completion_weekly(habit_id, week_start, completions) " +
+            "SELECT habit_id, CAST(date_trunc('week', completion_date) AS DATE), COUNT(*) FROM " + PARENT_TABLE +
+            " WHERE completion_date BETWEEN ? AND ? GROUP BY 1, 2";
+
+    private final DatabaseConnection databaseConnection;
+
+    public HabitCompletionPartitionRepositoryImpl(DatabaseConnection databaseConnection) {
+        this.databaseConnection = databaseConnection;
+    }
+
+    /**
+     * Возвращает месяцы, для которых созданы секции, по данным каталога pg_inherits.
+     *
+     * @return месяцы по возрастанию, или пустой список, если произошла ошибка
+     */
+    @Override
+    public List<YearMonth> findPartitions() {
+        String sql = "SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "JOIN pg_namespace n ON n.oid = p.relnamespace " +
+                "WHERE n.nspname = ? AND p.relname = 'habit_completion' AND c.relname ~ '^habit_completion_p[0-9]{4}_[0-9]{2}$' " +
+                "ORDER BY c.relname";
+        List<YearMonth> partitions = new ArrayList<>();
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, SCHEMA);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    partitions.add(YearMonth.parse(resultSet.getString(1).substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении секций завершений привычек: " + e.getMessage());
+        }
+        return partitions;
+    }
+
+    /**
+     * Создает секцию за месяц: пустая таблица заполняется строками месяца из секции по умолчанию
+     * и присоединяется к habit_completion. Секция по умолчанию блокируется на время транзакции,
+     * чтобы в нее не попали новые строки этого месяца.
+     *
+     * @param month месяц секции
+     * @return true, если секция создана; false, если она уже существует или создание не удалось
+     */
+    @Override
+    public boolean createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        String from = month.atDay(1).toString();
+        String to = month.plusMonths(1).atDay(1).toString();
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LOCK TABLE " + DEFAULT_PARTITION + " IN ACCESS EXCLUSIVE MODE");
+                if (exists(connection, partition)) {
+                    connection.rollback();
+                    return false;
+                }
+                statement.executeUpdate("CREATE TABLE " + partition + " (LIKE " + PARENT_TABLE + " INCLUDING DEFAULTS)");
+                statement.executeUpdate("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION +
+                        " WHERE completion_date >= DATE '" + from + "' AND completion_date < DATE '" + to + "' RETURNING id, completion_date, habit_id) " +
+                        "INSERT INTO " + partition + "(id, completion_date, habit_id) SELECT id, completion_date, habit_id FROM moved");
+                statement.executeUpdate("ALTER TABLE " + PARENT_TABLE + " ATTACH PARTITION " + partition +
+                        " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при создании секции завершений привычек: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Отсоединяет секцию за месяц, удаляет ее таблицу и приводит сводные таблицы к оставшимся
+     * выполнениям в одной транзакции.
+     *
+     * @param month месяц секции
+     * @return true, если секция удалена; false, если ее нет или удаление не удалось
+     */
+    @Override
+    public boolean dropPartition(YearMonth month) {
+        String partition = partitionName(month);
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                if (!exists(connection, partition)) {
+                    connection.rollback();
+                    return false;
+                }
+                statement.executeUpdate("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partition);
+                statement.executeUpdate("DROP TABLE " + partition);
+                removeRollups(connection, month);
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при удалении секции завершений привычек: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Упорядочивает по индексу (habit_id, completion_date) секции месяцев раньше указанного,
+     * которые еще не упорядочены. Каждая секция обрабатывается отдельной командой CLUSTER
+     * с последующим ANALYZE, блокируя только эту секцию.
+     *
+     * @param before первый месяц, секции которого не упорядочиваются
+     * @return количество упорядоченных секций; при ошибке — количество упорядоченных до нее
+     */
+    @Override
+    public int clusterPartitions(YearMonth before) {
+        String sql = "SELECT t.relname, ci.relname FROM pg_inherits i " +
+                "JOIN pg_class ci ON ci.oid = i.inhrelid " +
+                "JOIN pg_index x ON x.indexrelid = ci.oid " +
+                "JOIN pg_class t ON t.oid = x.indrelid " +
+                "WHERE i.inhparent = to_regclass(?) AND NOT x.indisclustered " +
+                "AND t.relname ~ '^habit_completion_p[0-9]{4}_[0-9]{2}$' " +
+                "ORDER BY t.relname";
+        int clustered = 0;
+        try (Connection connection = databaseConnection.getConnection()) {
+            List<PartitionIndex> partitions = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, HABIT_DATE_INDEX);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        String partition = resultSet.getString(1);
+                        YearMonth month = YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+                        if (month.isBefore(before)) {
+                            partitions.add(new PartitionIndex(partition, resultSet.getString(2)));
+                        }
+                    }
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                for (PartitionIndex partition : partitions) {
+                    statement.execute("CLUSTER " + SCHEMA + ".\"" + partition.table() + "\" USING \"" + partition.index() + "\"");
+                    statement.execute("ANALYZE " + SCHEMA + ".\"" + partition.table() + "\"");
+                    clustered++;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при упорядочивании секций завершений привычек: " + e.getMessage());
+        }
+        return clustered;
+    }
+
+    private void removeRollups(Connection connection, YearMonth month) throws SQLException {
+        LocalDate firstWeek = IsoWeeks.weekStart(month.atDay(1));
+        LocalDate lastWeek = IsoWeeks.weekStart(month.atEndOfMonth());
+        try (PreparedStatement deleteMonthly = connection.prepareStatement(DELETE_MONTHLY_ROLLUP_SQL);
+             PreparedStatement deleteWeekly = connection.prepareStatement(DELETE_WEEKLY_ROLLUPS_SQL);
+             PreparedStatement rebuildWeekly = connection.prepareStatement(REBUILD_WEEKLY_ROLLUPS_SQL)) {
+            deleteMonthly.setDate(1, Date.valueOf(month.atDay(1)));
+            deleteMonthly.executeUpdate();
+            deleteWeekly.setDate(1, Date.valueOf(firstWeek));
+            deleteWeekly.setDate(2, Date.valueOf(lastWeek));
+            deleteWeekly.executeUpdate();
+            rebuildWeekly.setDate(1, Date.valueOf(firstWeek));
+            rebuildWeekly.setDate(2, Date.valueOf(lastWeek.plusDays(6)));
+            rebuildWeekly.executeUpdate();
+        }
+    }
+
+    private boolean exists(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private static String partitionName(YearMonth month) {
+        return SCHEMA + "." + PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    private record PartitionIndex(String table, String index) {
+    }
+}
@@ -1,23 +1,100 @@
 package ru.ylab.habittracker.repositories.impl;
 
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
 import ru.ylab.habittracker.app.DatabaseConnection;
+import ru.ylab.habittracker.models.CompletionActivity;
 import ru.ylab.habittracker.models.HabitCompletion;
+import ru.ylab.habittracker.models.IdRange;
+import ru.ylab.habittracker.models.StreakInterval;
 import ru.ylab.habittracker.repositories.HabitCompletionRepository;
+import ru.ylab.habittracker.utils.Frequency;
+import ru.ylab.habittracker.utils.RollupPeriod;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Реализация репозитория для работы с завершениями привычек.
+ *
+ * <p>Все операции записи в той же транзакции поддерживают счетчики серий в таблице habit
+ * (current_streak, longest_streak, last_completed_date): добавление выполнения за день после
+ * последнего продлевает серию одной командой UPDATE, остальные изменения пересчитывают счетчики
+ * затронутых привычек запросом gaps-and-islands.</p>
+ *
+ * <p>В тех же транзакциях поддерживаются сводные таблицы количества выполнений по неделям
+ * (habit_completion_weekly) и месяцам (habit_completion_monthly): одиночная вставка увеличивает
+ * счетчики своих периодов, пакетные и прочие изменения перестраивают строки затронутых привычек.</p>
  */
 public class HabitCompletionRepositoryImpl implements HabitCompletionRepository {
+    /**
+     * Размер пакета вставки по умолчанию.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String ADVANCE_STREAK_SQL = "UPDATE habit_tracking_schema.habit SET " +
+            "current_streak = CASE WHEN last_completed_date = ? THEN current_streak + 1 ELSE 1 END, " +
+            "longest_streak = GREATEST(longest_streak, CASE WHEN last_completed_date = ? THEN current_streak + 1 ELSE 1 END), " +
+            "last_completed_date = ? " +
+            "WHERE id = ? AND (last_completed_date IS NULL OR last_completed_date < ?)";
+
+    private static final String RECALCULATE_STREAKS_SQL = "WITH islands AS (" +
+            "SELECT habit_id, completion_date, " +
+            "completion_date - CAST(ROW_NUMBER() OVER (PARTITION BY habit_id ORDER BY completion_date) AS INT) AS island " +
+            "FROM habit_tracking_schema.habit_completion WHERE habit_id = ANY (?)" +
+            "), runs AS (" +
+            "SELECT habit_id, MAX(completion_date) AS run_end, COUNT(*) AS run_length FROM islands GROUP BY habit_id, island" +
+            "), streaks AS (" +
+            "SELECT habit_id, MAX(run_end) AS last_completed_date, MAX(run_length) AS longest_streak, " +
+            "(ARRAY_AGG(run_length ORDER BY run_end DESC))[1] AS current_streak FROM runs GROUP BY habit_id" +
+            ") " +
+            "UPDATE habit_tracking_schema.habit h SET " +
+            "current_streak = COALESCE(s.current_streak, 0), " +
+            "longest_streak = COALESCE(s.longest_streak, 0), " +
+            "last_completed_date = s.last_completed_date " +
+            "FROM habit_tracking_schema.habit t LEFT JOIN streaks s ON s.habit_id = t.id " +
+            "WHERE h.id = t.id AND t.id = ANY (?)";
+
+    private static final String COUNT_IN_PERIOD_SQL = "SELECT COALESCE((SELECT SUM(completions) " +
+            "FROM habit_tracking_schema.habit_completion_monthly WHERE habit_id = ? AND month_start BETWEEN ? AND ?), 0) + " +
+            "(SELECT COUNT(*) FROM habit_tracking_schema.habit_completion WHERE habit_id = ? " +
+            "AND (completion_date BETWEEN ? AND ? OR completion_date BETWEEN ? AND ?))";
+
+    private static final String INCREMENT_ROLLUPS_SQL = "WITH weekly AS (" +
+            "INSERT INTO habit_tracking_schema.habit_completion_weekly(habit_id, week_start, completions) VALUES (?, ?, 1) " +
+            "ON CONFLICT (habit_id, week_start) DO UPDATE SET completions = habit_completion_weekly.completions + 1" +
+            ") " +
+            "INSERT INTO habit_tracking_schema.habit_completion_monthly(habit_id, month_start, completions) VALUES (?, ?, 1) " +
+            "ON CONFLICT (habit_id, month_start) DO UPDATE SET completions = habit_completion_monthly.completions + 1";
+
     DatabaseConnection databaseConnection;
+    private final int batchSize;
 
     public HabitCompletionRepositoryImpl(DatabaseConnection databaseConnection) {
+        this(databaseConnection, DEFAULT_BATCH_SIZE);
+    }
+
+    public HabitCompletionRepositoryImpl(DatabaseConnection databaseConnection, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
         this.databaseConnection = databaseConnection;
+        this.batchSize = batchSize;
     }
 
     /**
@@ -32,10 +109,7 @@ public class HabitCompletionRepositoryImpl implements HabitCompletionRepository
              PreparedStatement statement = connection.prepareStatement("SELECT * FROM habit_tracking_schema.habit_completion")) {
             ResultSet resultSet = statement.executeQuery();
             while (resultSet.next()) {
-                Long id = resultSet.getLong("id");
-                LocalDate completionDate = resultSet.getDate("completion_date").toLocalDate();
-                Long habitId = resultSet.getLong("habit_id");
-                habitCompletionList.add(new HabitCompletion(id, completionDate, habitId));
+                habitCompletionList.add(mapRowToHabitCompletion(resultSet));
             }
         } catch (SQLException e) {
             System.err.println("Ошибка при получении всех завершений привычек: " + e.getMessage());
@@ -44,24 +118,45 @@ public class HabitCompletionRepositoryImpl implements HabitCompletionRepository
     }
 
     /**
-     * Сохраняет новое завершение привычки.
+     * Возвращает все завершения привычек в виде потока, читаемого через серверный курсор.
+     *
+     * @return поток завершений привычек; должен быть закрыт после использования
+     */
+    @Override
+    public Stream<HabitCompletion> streamAll() {
+        return ResultSetStreams.stream(databaseConnection, "SELECT * FROM habit_tracking_schema.habit_completion ORDER BY id",
+                this::mapRowToHabitCompletion);
+    }
+
+    /**
+     * Сохраняет новое завершение привычки и обновляет счетчики серий и сводные таблицы в той же транзакции.
      *
      * @param entity объект завершения привычки для сохранения
      * @return сохраненное завершение привычки, включая его ID
      */
     @Override
     public HabitCompletion save(HabitCompletion entity) {
-        try (Connection connection = databaseConnection.getConnection();
-             PreparedStatement statement = connection.prepareStatement("INSERT INTO habit_tracking_schema.habit_completion(completion_date, habit_id) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
-            statement.setDate(1, Date.valueOf(entity.getCompletionDate()));
-            statement.setLong(2, entity.getHabitId());
-            statement.execute();
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO habit_tracking_schema.habit_completion(completion_date, habit_id) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+                statement.setDate(1, Date.valueOf(entity.getCompletionDate()));
+                statement.setLong(2, entity.getHabitId());
+                statement.execute();
 
-            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    Long id = generatedKeys.getLong(1);
-                    return new HabitCompletion(id, entity.getCompletionDate(), entity.getHabitId());
+                HabitCompletion saved = null;
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        saved = new HabitCompletion(generatedKeys.getLong(1), entity.getCompletionDate(), entity.getHabitId());
+                    }
                 }
+                if (saved != null) {
+                    applyCompletion(connection, saved.getHabitId(), saved.getCompletionDate());
+                }
+                connection.commit();
+                return saved;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             System.err.println("Ошибка при сохранении завершения привычки: " + e.getMessage());
@@ -70,21 +165,260 @@ public class HabitCompletionRepositoryImpl implements HabitCompletionRepository
     }
 
     /**
-     * Обновляет существующее завершение привычки.
+     * Сохраняет завершение привычки, если за эту дату оно еще не существует.
+     * Дубликаты отсекаются уникальным индексом (habit_id, completion_date).
+     * Счетчики серий и сводные таблицы обновляются в той же транзакции, что и вставка.
+     *
+     * @param entity объект завершения привычки для сохранения
+     * @return сохраненное завершение привычки, или Optional.empty(), если завершение за эту дату уже есть
+     * @throws IllegalStateException если сохранение не удалось из-за ошибки базы данных; пустой результат
+     *                               означает только то, что вставка была отклонена ON CONFLICT DO NOTHING
+     */
+    @Override
+    public Optional<HabitCompletion> saveIfAbsent(HabitCompletion entity) {
+        String sql = "INSERT INTO habit_tracking_schema.habit_completion(completion_date, habit_id) VALUES (?, ?) " +
+                "ON CONFLICT (habit_id, completion_date) DO NOTHING RETURNING id";
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setDate(1, Date.valueOf(entity.getCompletionDate()));
+                statement.setLong(2, entity.getHabitId());
+                Optional<HabitCompletion> saved = Optional.empty();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        saved = Optional.of(new HabitCompletion(resultSet.getLong("id"), entity.getCompletionDate(), entity.getHabitId()));
+                    }
+                }
+                if (saved.isPresent()) {
+                    applyCompletion(connection, entity.getHabitId(), entity.getCompletionDate());
+                }
+                connection.commit();
+                return saved;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при сохранении завершения привычки: " + e.getMessage());
+            throw new IllegalStateException("Failed to save habit completion", e);
+        }
+    }
+
+    /**
+     * Сохраняет набор завершений привычек JDBC-пакетами по {@code batchSize} строк в одной транзакции.
+     * При включенном в драйвере {@code reWriteBatchedInserts} каждый пакет отправляется
+     * одной многострочной командой INSERT. Счетчики серий и сводные таблицы затронутых привычек
+     * пересчитываются перед фиксацией транзакции.
+     *
+     * @param entities завершения привычек для сохранения
+     * @return сохраненные завершения с идентификаторами в порядке входной коллекции,
+     * или пустой список, если сохранение не удалось
+     */
+    @Override
+    public List<HabitCompletion> saveAll(Collection<HabitCompletion> entities) {
+        List<HabitCompletion> savedCompletions = new ArrayList<>(entities.size());
+        if (entities.isEmpty()) {
+            return savedCompletions;
+        }
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO habit_tracking_schema.habit_completion(completion_date, habit_id) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+                List<HabitCompletion> batch = new ArrayList<>(Math.min(batchSize, entities.size()));
+                for (HabitCompletion entity : entities) {
+                    statement.setDate(1, Date.valueOf(entity.getCompletionDate()));
+                    statement.setLong(2, entity.getHabitId());
+                    statement.addBatch();
+                    batch.add(entity);
+                    if (batch.size() == batchSize) {
+                        executeBatch(statement, batch, savedCompletions);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    executeBatch(statement, batch, savedCompletions);
+                }
+                refreshAggregates(connection, habitIdsOf(entities));
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при пакетном сохранении завершений привычек: " + e.getMessage());
+            return new ArrayList<>();
+        }
+        return savedCompletions;
+    }
+
+    /**
+     * Сохраняет набор завершений одной командой INSERT ... SELECT FROM unnest ... ON CONFLICT DO NOTHING,
+     * поэтому набор любого размера требует одного обращения к базе данных на вставку. Для вставленных
+     * строк счетчики серий и сводные таблицы обновляются JDBC-пакетами в той же транзакции,
+     * по каждой привычке в порядке дат.
+     *
+     * @param entities завершения привычек для сохранения
+     * @return результаты в порядке входного списка: сохраненное завершение или Optional.empty() для дубликата;
+     * пустой список, если сохранение не удалось
+     */
+    @Override
+    public List<Optional<HabitCompletion>> saveAllIfAbsent(List<HabitCompletion> entities) {
+        if (entities.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sql = "INSERT INTO habit_tracking_schema.habit_completion(completion_date, habit_id) " +
+                "SELECT * FROM unnest(CAST(? AS DATE[]), CAST(? AS BIGINT[])) ON CONFLICT (habit_id, completion_date) DO NOTHING " +
+                "RETURNING id, completion_date, habit_id";
+        Date[] dates = new Date[entities.size()];
+        Long[] habitIds = new Long[entities.size()];
+        for (int i = 0; i < entities.size(); i++) {
+            dates[i] = Date.valueOf(entities.get(i).getCompletionDate());
+            habitIds[i] = entities.get(i).getHabitId();
+        }
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            Array dateArray = connection.createArrayOf("date", dates);
+            Array habitIdArray = connection.createArrayOf("bigint", habitIds);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setArray(1, dateArray);
+                statement.setArray(2, habitIdArray);
+                Map<CompletionKey, HabitCompletion> inserted = new HashMap<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        HabitCompletion saved = mapRowToHabitCompletion(resultSet);
+                        inserted.put(new CompletionKey(saved.getHabitId(), saved.getCompletionDate()), saved);
+                    }
+                }
+                applyCompletions(connection, inserted.values());
+                connection.commit();
+
+                List<Optional<HabitCompletion>> results = new ArrayList<>(entities.size());
+                for (HabitCompletion entity : entities) {
+                    results.add(Optional.ofNullable(inserted.remove(new CompletionKey(entity.getHabitId(), entity.getCompletionDate()))));
+                }
+                return results;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                dateArray.free();
+                habitIdArray.free();
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при пакетном сохранении завершений привычек: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Выполняет накопленный пакет и сопоставляет сгенерированные ключи с исходными записями.
+     *
+     * @param statement подготовленное выражение с накопленным пакетом
+     * @param batch записи текущего пакета в порядке добавления
+     * @param savedCompletions список, в который добавляются сохраненные записи
+     * @throws SQLException если выполнение пакета не удалось или ключей меньше, чем записей
+     */
+    private void executeBatch(PreparedStatement statement, List<HabitCompletion> batch, List<HabitCompletion> savedCompletions) throws SQLException {
+        statement.executeBatch();
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+            for (HabitCompletion entity : batch) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("Generated keys count does not match batch size");
+                }
+                savedCompletions.add(new HabitCompletion(generatedKeys.getLong(1), entity.getCompletionDate(), entity.getHabitId()));
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * Загружает завершения привычек командой COPY FROM STDIN, передавая данные
+     * частями без построения всего набора в памяти. Счетчики серий и сводные таблицы затронутых
+     * привычек пересчитываются в той же транзакции.
+     *
+     * @param entities завершения привычек для загрузки
+     * @return количество загруженных строк, или 0, если загрузка не удалась
+     */
+    @Override
+    public long copyAll(Collection<HabitCompletion> entities) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                long copied = copy(copyManager, entities);
+                refreshAggregates(connection, habitIdsOf(entities));
+                connection.commit();
+                return copied;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при загрузке завершений привычек через COPY: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    private long copy(CopyManager copyManager, Collection<HabitCompletion> entities) throws SQLException {
+        CopyIn copyIn = copyManager.copyIn("COPY habit_tracking_schema.habit_completion(completion_date, habit_id) FROM STDIN");
+        try {
+            StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE);
+            for (HabitCompletion entity : entities) {
+                buffer.append(entity.getCompletionDate()).append('\t').append(entity.getHabitId()).append('\n');
+                if (buffer.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copyIn, buffer);
+                }
+            }
+            writeToCopy(copyIn, buffer);
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    /**
+     * Обновляет существующее завершение привычки и пересчитывает счетчики серий и сводные
+     * таблицы прежней и новой привычки в той же транзакции.
      *
      * @param entity объект завершения привычки с обновленными данными
      * @return обновленное завершение привычки, или null, если обновление не удалось
      */
     @Override
     public HabitCompletion update(HabitCompletion entity) {
-        try (Connection connection = databaseConnection.getConnection();
-             PreparedStatement statement = connection.prepareStatement("UPDATE habit_tracking_schema.habit_completion SET completion_date = ?, habit_id = ? WHERE id = ?")) {
-            statement.setDate(1, Date.valueOf(entity.getCompletionDate()));
-            statement.setLong(2, entity.getHabitId());
-            statement.setLong(3, entity.getId());
-            int affectedRows = statement.executeUpdate();
-            if (affectedRows > 0) {
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement select = connection.prepareStatement("SELECT habit_id FROM habit_tracking_schema.habit_completion WHERE id = ? FOR UPDATE");
+                 PreparedStatement statement = connection.prepareStatement("UPDATE habit_tracking_schema.habit_completion SET completion_date = ?, habit_id = ? WHERE id = ?")) {
+                select.setLong(1, entity.getId());
+                Long previousHabitId = null;
+                try (ResultSet resultSet = select.executeQuery()) {
+                    if (resultSet.next()) {
+                        previousHabitId = resultSet.getLong(1);
+                    }
+                }
+                if (previousHabitId == null) {
+                    connection.rollback();
+                    return null;
+                }
+                statement.setDate(1, Date.valueOf(entity.getCompletionDate()));
+                statement.setLong(2, entity.getHabitId());
+                statement.setLong(3, entity.getId());
+                statement.executeUpdate();
+                refreshAggregates(connection, List.of(previousHabitId, entity.getHabitId()));
+                connection.commit();
                 return entity;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             System.err.println("Ошибка при обновлении завершения привычки: " + e.getMessage());
@@ -93,16 +427,27 @@ public class HabitCompletionRepositoryImpl implements HabitCompletionRepository
     }
 
     /**
-     * Удаляет завершение привычки по указанному ID.
+     * Удаляет завершение привычки по указанному ID и пересчитывает счетчики серий
+     * и сводные таблицы привычки в той же транзакции.
      *
      * @param id идентификатор завершения привычки для удаления
      */
     @Override
     public void delete(Long id) {
-        try (Connection connection = databaseConnection.getConnection();
-             PreparedStatement statement = connection.prepareStatement("DELETE FROM habit_tracking_schema.habit_completion WHERE id = ?")) {
-            statement.setLong(1, id);
-            statement.executeUpdate();
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM habit_tracking_schema.habit_completion WHERE id = ? RETURNING habit_id")) {
+                statement.setLong(1, id);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        refreshAggregates(connection, List.of(resultSet.getLong(1)));
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             System.err.println("Ошибка при удалении завершения привычки: " + e.getMessage());
         }
@@ -136,13 +481,13 @@ public class HabitCompletionRepositoryImpl implements HabitCompletionRepository
      * Находит завершения привычки по ID привычки.
      *
      * @param habitId идентификатор привычки
-     * @return список завершений привычки с указанным ID
+     * @return список завершений привычки с указанным ID, упорядоченный по дате
      */
     @Override
     public List<HabitCompletion> findByHabitId(Long habitId) {
         List<HabitCompletion> habitCompletionList = new ArrayList<>();
         try (Connection connection = databaseConnection.getConnection();
-             PreparedStatement statement = connection.prepareStatement("SELECT * FROM habit_tracking_schema.habit_completion WHERE habit_id = ?")) {
+             PreparedStatement statement = connection.prepareStatement("SELECT * FROM habit_tracking_schema.habit_completion WHERE habit_id = ? ORDER BY completion_date")) {
             statement.setLong(1, habitId);
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
@@ -157,6 +502,37 @@ public class HabitCompletionRepositoryImpl implements HabitCompletionRepository
         return habitCompletionList;
     }
 
+    /**
+     * Возвращает дни выполнения привычки в виде отсортированного массива дней от эпохи.
+     * Разность дат вычисляется в базе данных, поэтому строки читаются как int
+     * без создания {@link Date} и {@link LocalDate}.
+     *
+     * @param habitId идентификатор привычки
+     * @return отсортированный массив дней выполнения; пустой массив при ошибке
+     */
+    @Override
+    public int[] findCompletionDaysByHabitId(Long habitId) {
+        String sql = "SELECT completion_date - DATE '1970-01-01' FROM habit_tracking_schema.habit_completion WHERE habit_id = ? ORDER BY completion_date";
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, habitId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int[] days = new int[16];
+                int size = 0;
+                while (resultSet.next()) {
+                    if (size == days.length) {
+                        days = Arrays.copyOf(days, size * 2);
+                    }
+                    days[size++] = resultSet.getInt(1);
+                }
+                return Arrays.copyOf(days, size);
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении дней выполнения привычки: " + e.getMessage());
+        }
+        return new int[0];
+    }
+
     /**
      * Находит завершения привычки по ID привычки и периоду.
      *
@@ -167,7 +543,7 @@ public class HabitCompletionRepositoryImpl implements HabitCompletionRepository
      */
     @Override
     public List<HabitCompletion> findByHabitIdAndPeriod(Long habitId, LocalDate startDate, LocalDate endDate) {
-        String sql = "SELECT * FROM habit_tracking_schema.habit_completion WHERE habit_id = ? AND completion_date BETWEEN ? AND ?";
+        String sql = "SELECT * FROM habit_tracking_schema.habit_completion WHERE habit_id = ? AND completion_date BETWEEN ? AND ? ORDER BY completion_date";
         List<HabitCompletion> habitCompletionList = new ArrayList<>();
         try (Connection connection = databaseConnection.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
@@ -188,4 +564,385 @@ public class HabitCompletionRepositoryImpl implements HabitCompletionRepository
         }
         return habitCompletionList;
     }
+
+    /**
+     * Подсчитывает количество завершений привычки за период на стороне базы данных одним запросом:
+     * полные месяцы периода суммируются по habit_completion_monthly, а строки habit_completion
+     * читаются только для неполных месяцев в начале и в конце периода. Поэтому стоимость запроса
+     * за длинный период зависит от количества месяцев, а не дней.
+     *
+     * @param habitId идентификатор привычки
+     * @param startDate дата начала периода
+     * @param endDate дата окончания периода
+     * @return количество завершений привычки в заданном периоде
+     */
+    @Override
+    public long countByHabitIdAndPeriod(Long habitId, LocalDate startDate, LocalDate endDate) {
+        LocalDate firstFullMonth = startDate.getDayOfMonth() == 1 ? startDate : startDate.plusMonths(1).withDayOfMonth(1);
+        LocalDate lastFullMonthEnd = endDate.getDayOfMonth() == endDate.lengthOfMonth() ? endDate : endDate.withDayOfMonth(1).minusDays(1);
+        LocalDate headEnd;
+        LocalDate tailStart;
+        if (firstFullMonth.isAfter(lastFullMonthEnd)) {
+            headEnd = endDate;
+            tailStart = endDate.plusDays(1);
+        } else {
+            headEnd = firstFullMonth.minusDays(1);
+            tailStart = lastFullMonthEnd.plusDays(1);
+        }
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(COUNT_IN_PERIOD_SQL)) {
+            statement.setLong(1, habitId);
+            statement.setDate(2, Date.valueOf(firstFullMonth));
+            statement.setDate(3, Date.valueOf(lastFullMonthEnd));
+            statement.setLong(4, habitId);
+            statement.setDate(5, Date.valueOf(startDate));
+            statement.setDate(6, Date.valueOf(headEnd));
+            statement.setDate(7, Date.valueOf(tailStart));
+            statement.setDate(8, Date.valueOf(endDate));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return resultSet.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при подсчете завершений привычки за период: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Находит все серии выполнения привычки запросом gaps-and-islands. Выполнения сначала
+     * сводятся к периодам частоты привычки: дню или неделе ISO ({@code date_trunc('week', ...)}),
+     * затем у периодов одной серии разность начала периода и порядкового номера, умноженного
+     * на длину периода, постоянна.
+     *
+     * @param habitId идентификатор привычки
+     * @return серии по возрастанию дат, или пустой список, если произошла ошибка
+     */
+    @Override
+    public List<StreakInterval> findStreakIntervals(Long habitId) {
+        String sql = "SELECT MIN(bucket) AS start_date, MAX(bucket) + step - 1 AS end_date, COUNT(*) AS length FROM (" +
+                "SELECT bucket, step, bucket - CAST(ROW_NUMBER() OVER (ORDER BY bucket) AS INT) * step AS island FROM (" +
+                "SELECT DISTINCT CASE WHEN h.frequency = ? THEN CAST(date_trunc('week', c.completion_date) AS DATE) ELSE c.completion_date END AS bucket, " +
+                "CASE WHEN h.frequency = ? THEN 7 ELSE 1 END AS step " +
+                "FROM habit_tracking_schema.habit_completion c JOIN habit_tracking_schema.habit h ON h.id = c.habit_id " +
+                "WHERE c.habit_id = ?" +
+                ") buckets) islands GROUP BY island, step ORDER BY start_date";
+        List<StreakInterval> streaks = new ArrayList<>();
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, Frequency.WEEKLY.ordinal());
+            statement.setInt(2, Frequency.WEEKLY.ordinal());
+            statement.setLong(3, habitId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    streaks.add(new StreakInterval(resultSet.getDate("start_date").toLocalDate(),
+                            resultSet.getDate("end_date").toLocalDate(), resultSet.getInt("length")));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении серий привычки: " + e.getMessage());
+        }
+        return streaks;
+    }
+
+    /**
+     * Открывает поток активности привычек из диапазона идентификаторов за период через серверный курсор.
+     *
+     * @param habitIds диапазон идентификаторов привычек
+     * @param startDate начало периода
+     * @param endDate конец периода
+     * @return поток активности, упорядоченный по идентификатору привычки; пустой поток, если запрос не удалось выполнить
+     */
+    @Override
+    public Stream<CompletionActivity> streamActivity(IdRange habitIds, LocalDate startDate, LocalDate endDate) {
+        String sql = "SELECT h.id, h.created_date, h.frequency, c.completion_date FROM habit_tracking_schema.habit h " +
+                "LEFT JOIN habit_tracking_schema.habit_completion c ON c.habit_id = h.id AND c.completion_date BETWEEN ? AND ? " +
+                "WHERE h.id BETWEEN ? AND ? ORDER BY h.id";
+        return ResultSetStreams.stream(databaseConnection, sql, statement -> {
+            statement.setDate(1, Date.valueOf(startDate));
+            statement.setDate(2, Date.valueOf(endDate));
+            statement.setLong(3, habitIds.from());
+            statement.setLong(4, habitIds.to());
+        }, resultSet -> {
+            Date completionDate = resultSet.getDate("completion_date");
+            return new CompletionActivity(resultSet.getLong("id"), resultSet.getDate("created_date").toLocalDate(),
+                    Frequency.fromValue(resultSet.getInt("frequency")),
+                    completionDate == null ? null : completionDate.toLocalDate());
+        });
+    }
+
+    /**
+     * Подсчитывает активных пользователей по дням периода одним запросом с группировкой по дате.
+     *
+     * @param startDate начало периода
+     * @param endDate конец периода
+     * @return количество активных пользователей по дате; пустая карта, если произошла ошибка
+     */
+    @Override
+    public Map<LocalDate, Integer> countDailyActiveUsers(LocalDate startDate, LocalDate endDate) {
+        String sql = "SELECT c.completion_date, COUNT(DISTINCT h.user_id) FROM habit_tracking_schema.habit_completion c " +
+                "JOIN habit_tracking_schema.habit h ON h.id = c.habit_id " +
+                "WHERE c.completion_date BETWEEN ? AND ? GROUP BY c.completion_date ORDER BY c.completion_date";
+        Map<LocalDate, Integer> counts = new LinkedHashMap<>();
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setDate(1, Date.valueOf(startDate));
+            statement.setDate(2, Date.valueOf(endDate));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    counts.put(resultSet.getDate(1).toLocalDate(), resultSet.getInt(2));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при подсчете активных пользователей: " + e.getMessage());
+        }
+        return counts;
+    }
+
+    /**
+     * Пересчитывает счетчики серий привычек по их выполнениям.
+     *
+     * @param habitIds идентификаторы привычек
+     * @return количество обновленных привычек, или 0, если пересчет не удался
+     */
+    @Override
+    public int recalculateStreaks(Collection<Long> habitIds) {
+        if (habitIds.isEmpty()) {
+            return 0;
+        }
+        try (Connection connection = databaseConnection.getConnection()) {
+            return recalculateStreaks(connection, habitIds);
+        } catch (SQLException e) {
+            System.err.println("Ошибка при пересчете серий привычек: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Возвращает количество выполнений привычки по неделям или месяцам из сводной таблицы.
+     *
+     * @param habitId идентификатор привычки
+     * @param period период агрегации
+     * @param startDate дата начала диапазона
+     * @param endDate дата окончания диапазона
+     * @return количество выполнений по началу периода; пустая карта, если произошла ошибка
+     */
+    @Override
+    public Map<LocalDate, Integer> findCompletionCounts(Long habitId, RollupPeriod period, LocalDate startDate, LocalDate endDate) {
+        String column = rollupColumn(period);
+        String sql = "SELECT " + column + ", completions FROM " + rollupTable(period) +
+                " WHERE habit_id = ? AND " + column + " BETWEEN ? AND ? ORDER BY " + column;
+        Map<LocalDate, Integer> counts = new LinkedHashMap<>();
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, habitId);
+            statement.setDate(2, Date.valueOf(period.start(startDate)));
+            statement.setDate(3, Date.valueOf(endDate));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    counts.put(resultSet.getDate(1).toLocalDate(), resultSet.getInt(2));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении сводных данных выполнений привычки: " + e.getMessage());
+        }
+        return counts;
+    }
+
+    /**
+     * Перестраивает строки сводных таблиц указанных привычек в одной транзакции.
+     *
+     * @param habitIds идентификаторы привычек
+     * @return количество записанных строк сводных таблиц, или 0, если пересчет не удался
+     */
+    @Override
+    public int recalculateRollups(Collection<Long> habitIds) {
+        if (habitIds.isEmpty()) {
+            return 0;
+        }
+        try (Connection connection = databaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                int written = recalculateRollups(connection, habitIds);
+                connection.commit();
+                return written;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при пересчете сводных таблиц выполнений: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Учитывает новый день выполнения: продлевает серию и увеличивает счетчики недели и месяца.
+     *
+     * @param connection соединение с открытой транзакцией
+     * @param habitId идентификатор привычки
+     * @param completionDate добавленный день выполнения
+     * @throws SQLException если обновление не удалось
+     */
+    private void applyCompletion(Connection connection, Long habitId, LocalDate completionDate) throws SQLException {
+        advanceStreak(connection, habitId, completionDate);
+        try (PreparedStatement statement = connection.prepareStatement(INCREMENT_ROLLUPS_SQL)) {
+            statement.setLong(1, habitId);
+            statement.setDate(2, Date.valueOf(RollupPeriod.WEEK.start(completionDate)));
+            statement.setLong(3, habitId);
+            statement.setDate(4, Date.valueOf(RollupPeriod.MONTH.start(completionDate)));
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Учитывает набор новых дней выполнения двумя JDBC-пакетами: продление серий и увеличение счетчиков
+     * недель и месяцев. Привычки, серия которых не продлилась (день не следует за последним выполнением),
+     * пересчитываются полностью.
+     *
+     * @param connection соединение с открытой транзакцией
+     * @param completions вставленные завершения
+     * @throws SQLException если обновление не удалось
+     */
+    private void applyCompletions(Connection connection, Collection<HabitCompletion> completions) throws SQLException {
+        if (completions.isEmpty()) {
+            return;
+        }
+        List<HabitCompletion> ordered = new ArrayList<>(completions);
+        ordered.sort(Comparator.comparing(HabitCompletion::getHabitId).thenComparing(HabitCompletion::getCompletionDate));
+        Collection<Long> notAdvanced = new LinkedHashSet<>();
+        try (PreparedStatement advance = connection.prepareStatement(ADVANCE_STREAK_SQL);
+             PreparedStatement rollups = connection.prepareStatement(INCREMENT_ROLLUPS_SQL)) {
+            for (HabitCompletion completion : ordered) {
+                Date previousDay = Date.valueOf(completion.getCompletionDate().minusDays(1));
+                Date completionDay = Date.valueOf(completion.getCompletionDate());
+                advance.setDate(1, previousDay);
+                advance.setDate(2, previousDay);
+                advance.setDate(3, completionDay);
+                advance.setLong(4, completion.getHabitId());
+                advance.setDate(5, completionDay);
+                advance.addBatch();
+                rollups.setLong(1, completion.getHabitId());
+                rollups.setDate(2, Date.valueOf(RollupPeriod.WEEK.start(completion.getCompletionDate())));
+                rollups.setLong(3, completion.getHabitId());
+                rollups.setDate(4, Date.valueOf(RollupPeriod.MONTH.start(completion.getCompletionDate())));
+                rollups.addBatch();
+            }
+            int[] advanced = advance.executeBatch();
+            for (int i = 0; i < advanced.length; i++) {
+                if (advanced[i] == 0) {
+                    notAdvanced.add(ordered.get(i).getHabitId());
+                }
+            }
+            rollups.executeBatch();
+        }
+        if (!notAdvanced.isEmpty()) {
+            recalculateStreaks(connection, notAdvanced);
+        }
+    }
+
+    /**
+     * Пересчитывает счетчики серий и сводные таблицы привычек после произвольных изменений выполнений.
+     *
+     * @param connection соединение с открытой транзакцией
+     * @param habitIds идентификаторы привычек
+     * @throws SQLException если пересчет не удался
+     */
+    private void refreshAggregates(Connection connection, Collection<Long> habitIds) throws SQLException {
+        recalculateStreaks(connection, habitIds);
+        recalculateRollups(connection, habitIds);
+    }
+
+    /**
+     * Продлевает серию привычки новым днем выполнения. Если день не следует за последним
+     * выполнением (например, добавлено выполнение задним числом), счетчики пересчитываются полностью.
+     *
+     * @param connection соединение с открытой транзакцией
+     * @param habitId идентификатор привычки
+     * @param completionDate добавленный день выполнения
+     * @throws SQLException если обновление не удалось
+     */
+    private void advanceStreak(Connection connection, Long habitId, LocalDate completionDate) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(ADVANCE_STREAK_SQL)) {
+            Date previousDay = Date.valueOf(completionDate.minusDays(1));
+            Date completionDay = Date.valueOf(completionDate);
+            statement.setDate(1, previousDay);
+            statement.setDate(2, previousDay);
+            statement.setDate(3, completionDay);
+            statement.setLong(4, habitId);
+            statement.setDate(5, completionDay);
+            if (statement.executeUpdate() == 0) {
+                recalculateStreaks(connection, List.of(habitId));
+            }
+        }
+    }
+
+    private int recalculateStreaks(Connection connection, Collection<Long> habitIds) throws SQLException {
+        Array ids = connection.createArrayOf("bigint", habitIds.toArray());
+        try (PreparedStatement statement = connection.prepareStatement(RECALCULATE_STREAKS_SQL)) {
+            statement.setArray(1, ids);
+            statement.setArray(2, ids);
+            return statement.executeUpdate();
+        } finally {
+            ids.free();
+        }
+    }
+
+    private int recalculateRollups(Connection connection, Collection<Long> habitIds) throws SQLException {
+        Array ids = connection.createArrayOf("bigint", habitIds.toArray());
+        try {
+            int written = 0;
+            for (RollupPeriod period : RollupPeriod.values()) {
+                String table = rollupTable(period);
+                try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + table + " WHERE habit_id = ANY (?)");
+                     PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + "(habit_id, " + rollupColumn(period) + ", completions) " +
+                             "SELECT habit_id, CAST(date_trunc('" + period.name().toLowerCase() + "', completion_date) AS DATE), COUNT(*) " +
+                             "FROM habit_tracking_schema.habit_completion WHERE habit_id = ANY (?) GROUP BY 1, 2")) {
+                    delete.setArray(1, ids);
+                    delete.executeUpdate();
+                    insert.setArray(1, ids);
+                    written += insert.executeUpdate();
+                }
+            }
+            return written;
+        } finally {
+            ids.free();
+        }
+    }
+
+    private static String rollupTable(RollupPeriod period) {
+        return period == RollupPeriod.WEEK
+                ? "habit_tracking_schema.habit_completion_weekly"
+                : "habit_tracking_schema.habit_completion_monthly";
+    }
+
+    private static String rollupColumn(RollupPeriod period) {
+        return period == RollupPeriod.WEEK ? "week_start" : "month_start";
+    }
+
+    private static Collection<Long> habitIdsOf(Collection<HabitCompletion> entities) {
+        Collection<Long> habitIds = new LinkedHashSet<>();
+        for (HabitCompletion entity : entities) {
+            habitIds.add(entity.getHabitId());
+        }
+        return habitIds;
+    }
+
+    /**
+     * Преобразует текущую строку результата в объект завершения привычки.
+     *
+     * @param resultSet результат запроса к базе данных
+     * @return объект завершения привычки
+     * @throws SQLException если возникают ошибки при извлечении данных
+     */
+    private HabitCompletion mapRowToHabitCompletion(ResultSet resultSet) throws SQLException {
+        Long id = resultSet.getLong("id");
+        LocalDate completionDate = resultSet.getDate("completion_date").toLocalDate();
+        Long habitId = resultSet.getLong("habit_id");
+        return new HabitCompletion(id, completionDate, habitId);
+    }
+
+    private record CompletionKey(Long habitId, LocalDate completionDate) {
+    }
 }
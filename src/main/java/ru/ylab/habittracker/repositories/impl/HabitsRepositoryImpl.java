@@ -2,6 +2,9 @@ package ru.ylab.habittracker.repositories.impl;
 
 import ru.ylab.habittracker.app.DatabaseConnection;
 import ru.ylab.habittracker.models.Habit;
+import ru.ylab.habittracker.models.HabitCompletionDays;
+import ru.ylab.habittracker.models.HabitStreak;
+import ru.ylab.habittracker.models.IdRange;
 import ru.ylab.habittracker.repositories.HabitsRepository;
 import ru.ylab.habittracker.utils.Frequency;
 
@@ -9,12 +12,24 @@ import java.sql.*;
 import java.sql.Date;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Реализация репозитория для работы с привычками.
  * Этот класс предоставляет методы для выполнения CRUD операций над сущностями Habit в базе данных.
  */
 public class HabitsRepositoryImpl implements HabitsRepository {
+    /**
+     * Запрос привычек пользователя; обслуживается индексом ix_habit_user_id_created_date.
+     */
+    public static final String FIND_BY_USER_ID_SQL = "SELECT * FROM habit_tracking_schema.habit WHERE user_id = ?";
+
+    /**
+     * Запрос привычек пользователя, созданных в определенную дату; обслуживается индексом
+     * ix_habit_user_id_created_date.
+     */
+    public static final String FIND_BY_USER_ID_AND_DATE_SQL = "SELECT * FROM habit_tracking_schema.habit WHERE user_id = ? AND created_date = ?";
+
     DatabaseConnection databaseConnection;
 
     public HabitsRepositoryImpl(DatabaseConnection databaseConnection) {
@@ -33,14 +48,7 @@ public class HabitsRepositoryImpl implements HabitsRepository {
              PreparedStatement statement = connection.prepareStatement("SELECT * FROM habit_tracking_schema.habit")) {
             ResultSet resultSet = statement.executeQuery();
             while (resultSet.next()) {
-                Long id = resultSet.getLong("id");
-                String name = resultSet.getString("name");
-                String description = resultSet.getString("description");
-                Frequency frequency = Frequency.fromValue(resultSet.getInt("frequency"));
-                Long userId = resultSet.getLong("user_id");
-                LocalDate createdDate = resultSet.getDate("created_date").toLocalDate();
-                Habit habit = new Habit(id, name, description, frequency, userId, createdDate);
-                habits.add(habit);
+                habits.add(mapRowToHabit(resultSet));
             }
         } catch (SQLException e) {
             System.out.println("Error fetching habits: " + e.getMessage());
@@ -48,6 +56,17 @@ public class HabitsRepositoryImpl implements HabitsRepository {
         return habits;
     }
 
+    /**
+     * Получает все привычки в виде потока, читаемого через серверный курсор.
+     *
+     * @return Поток привычек; должен быть закрыт после использования.
+     */
+    @Override
+    public Stream<Habit> streamAll() {
+        return ResultSetStreams.stream(databaseConnection, "SELECT * FROM habit_tracking_schema.habit ORDER BY id",
+                this::mapRowToHabit);
+    }
+
     /**
      * Сохраняет новую привычку в базе данных.
      *
@@ -137,6 +156,61 @@ public class HabitsRepositoryImpl implements HabitsRepository {
         return Optional.empty();
     }
 
+    /**
+     * Ищет привычку по ID и блокирует ее строку до конца транзакции.
+     *
+     * @param id Идентификатор привычки.
+     * @return Optional, содержащий найденную привычку, или пустой Optional, если привычка не найдена.
+     */
+    @Override
+    public Optional<Habit> findByIdForUpdate(Long id) {
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT * FROM habit_tracking_schema.habit WHERE id = ? FOR UPDATE")) {
+            statement.setLong(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return Optional.of(mapRowToHabit(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error locking habit by ID: " + e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Ищет привычки по набору идентификаторов. Идентификаторы передаются одним массивом
+     * в условие {@code id = ANY(?)}, поэтому запрос выполняется за одно обращение к базе данных.
+     *
+     * @param ids Идентификаторы привычек.
+     * @return Привычки по идентификаторам; отсутствующие идентификаторы в результат не попадают.
+     */
+    @Override
+    public Map<Long, Habit> findAllByIds(Collection<Long> ids) {
+        Map<Long, Habit> habits = new HashMap<>();
+        if (ids.isEmpty()) {
+            return habits;
+        }
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT * FROM habit_tracking_schema.habit WHERE id = ANY(?)")) {
+            Array idArray = connection.createArrayOf("bigint", ids.toArray());
+            try {
+                statement.setArray(1, idArray);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        Habit habit = mapRowToHabit(resultSet);
+                        habits.put(habit.getId(), habit);
+                    }
+                }
+            } finally {
+                idArray.free();
+            }
+        } catch (SQLException e) {
+            System.out.println("Error finding habits by IDs: " + e.getMessage());
+        }
+        return habits;
+    }
+
     /**
      * Ищет все привычки, принадлежащие определенному пользователю.
      *
@@ -147,7 +221,7 @@ public class HabitsRepositoryImpl implements HabitsRepository {
     public List<Habit> findByUserId(Long userId) {
         List<Habit> habits = new ArrayList<>();
         try (Connection connection = databaseConnection.getConnection();
-             PreparedStatement statement = connection.prepareStatement("SELECT * FROM habit_tracking_schema.habit WHERE user_id = ?")) {
+             PreparedStatement statement = connection.prepareStatement(FIND_BY_USER_ID_SQL)) {
             statement.setLong(1, userId);
             ResultSet resultSet = statement.executeQuery();
             while (resultSet.next()) {
@@ -165,6 +239,35 @@ public class HabitsRepositoryImpl implements HabitsRepository {
         return habits;
     }
 
+    /**
+     * Возвращает страницу привычек пользователя по ключу: выбираются привычки с идентификатором
+     * больше {@code afterId}, поэтому стоимость запроса не зависит от номера страницы.
+     *
+     * @param userId  Идентификатор пользователя.
+     * @param afterId Идентификатор последней привычки предыдущей страницы или null для первой страницы.
+     * @param limit   Максимальное количество привычек на странице.
+     * @return Список привычек страницы.
+     */
+    @Override
+    public List<Habit> findByUserId(Long userId, Long afterId, int limit) {
+        List<Habit> habits = new ArrayList<>();
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT * FROM habit_tracking_schema.habit WHERE user_id = ? AND id > ? ORDER BY id LIMIT ?")) {
+            statement.setLong(1, userId);
+            statement.setLong(2, afterId != null ? afterId : Long.MIN_VALUE);
+            statement.setInt(3, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    habits.add(mapRowToHabit(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error finding habit page by user ID: " + e.getMessage());
+        }
+        return habits;
+    }
+
     /**
      * Ищет привычки, принадлежащие пользователю и созданные в определенную дату.
      *
@@ -176,7 +279,7 @@ public class HabitsRepositoryImpl implements HabitsRepository {
     public List<Habit> findByUserIdAndDate(Long userId, LocalDate createdDate) {
         List<Habit> habits = new ArrayList<>();
         try (Connection connection = databaseConnection.getConnection();
-             PreparedStatement statement = connection.prepareStatement("SELECT * FROM habit_tracking_schema.habit WHERE user_id = ? AND created_date = ?")) {
+             PreparedStatement statement = connection.prepareStatement(FIND_BY_USER_ID_AND_DATE_SQL)) {
             statement.setLong(1, userId);
             statement.setDate(2, Date.valueOf(createdDate));
             ResultSet resultSet = statement.executeQuery();
@@ -209,4 +312,129 @@ public class HabitsRepositoryImpl implements HabitsRepository {
             System.out.println("Error deleting habit: " + e.getMessage());
         }
     }
+
+    /**
+     * Находит все привычки пользователя вместе с днями их выполнения за период одним запросом.
+     * Дни каждой привычки собираются на стороне базы данных функцией {@code array_agg} в один массив
+     * целых чисел, поэтому на привычку приходится одна строка результата, а массив декодируется
+     * в {@code int[]} без создания объектов на выполнение. Границы периода по completion_date
+     * позволяют планировщику отсечь секции таблицы выполнений вне периода.
+     *
+     * @param userId идентификатор пользователя
+     * @param from   первая дата периода или null, чтобы включить всю историю до {@code to}
+     * @param to     последняя дата периода
+     * @return привычки пользователя с днями выполнения за период, или пустой список, если произошла ошибка
+     */
+    @Override
+    public List<HabitCompletionDays> findWithCompletionDaysByUserId(Long userId, LocalDate from, LocalDate to) {
+        String sql = "SELECT h.*, c.completion_days FROM habit_tracking_schema.habit h " +
+                "LEFT JOIN LATERAL (SELECT array_agg(completion_date - DATE '1970-01-01' ORDER BY completion_date) AS completion_days " +
+                "FROM habit_tracking_schema.habit_completion WHERE habit_id = h.id AND completion_date <= ?" +
+                (from != null ? " AND completion_date >= ?" : "") + ") c ON TRUE " +
+                "WHERE h.user_id = ? ORDER BY h.id";
+        List<HabitCompletionDays> habits = new ArrayList<>();
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            statement.setDate(index++, Date.valueOf(to));
+            if (from != null) {
+                statement.setDate(index++, Date.valueOf(from));
+            }
+            statement.setLong(index, userId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    habits.add(new HabitCompletionDays(mapRowToHabit(resultSet), toDays(resultSet.getArray("completion_days"))));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error finding habits with completions by user ID: " + e.getMessage());
+        }
+        return habits;
+    }
+
+    /**
+     * Находит счетчики серий привычки по ее идентификатору.
+     *
+     * @param id идентификатор привычки
+     * @return {@link Optional} со счетчиками, если привычка найдена, иначе {@link Optional#empty()}
+     */
+    @Override
+    public Optional<HabitStreak> findStreakById(Long id) {
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT frequency, current_streak, longest_streak, last_completed_date FROM habit_tracking_schema.habit WHERE id = ?")) {
+            statement.setLong(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    Date lastCompletedDate = resultSet.getDate("last_completed_date");
+                    return Optional.of(new HabitStreak(id, Frequency.fromValue(resultSet.getInt("frequency")), resultSet.getInt("current_streak"), resultSet.getInt("longest_streak"),
+                            lastCompletedDate == null ? null : lastCompletedDate.toLocalDate()));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error finding habit streak by ID: " + e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Находит диапазон идентификаторов всех привычек.
+     *
+     * @return {@link Optional} с наименьшим и наибольшим идентификатором, или {@link Optional#empty()}, если привычек нет
+     */
+    @Override
+    public Optional<IdRange> findIdRange() {
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT MIN(id), MAX(id) FROM habit_tracking_schema.habit");
+             ResultSet resultSet = statement.executeQuery()) {
+            if (resultSet.next()) {
+                long from = resultSet.getLong(1);
+                if (!resultSet.wasNull()) {
+                    return Optional.of(new IdRange(from, resultSet.getLong(2)));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error finding habit id range: " + e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Декодирует массив дней, собранный {@code array_agg}, в примитивный массив.
+     *
+     * @param array массив SQL или null, если у привычки нет выполнений.
+     * @return дни выполнения в виде {@link LocalDate#toEpochDay()}.
+     * @throws SQLException если возникают ошибки при извлечении данных.
+     */
+    private int[] toDays(Array array) throws SQLException {
+        if (array == null) {
+            return new int[0];
+        }
+        try {
+            Integer[] values = (Integer[]) array.getArray();
+            int[] days = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                days[i] = values[i];
+            }
+            return days;
+        } finally {
+            array.free();
+        }
+    }
+
+    /**
+     * Преобразует текущую строку результата в объект Habit.
+     *
+     * @param resultSet Результат запроса к базе данных.
+     * @return Объект Habit.
+     * @throws SQLException если возникают ошибки при извлечении данных.
+     */
+    private Habit mapRowToHabit(ResultSet resultSet) throws SQLException {
+        Long id = resultSet.getLong("id");
+        String name = resultSet.getString("name");
+        String description = resultSet.getString("description");
+        Frequency frequency = Frequency.fromValue(resultSet.getInt("frequency"));
+        Long userId = resultSet.getLong("user_id");
+        LocalDate createdDate = resultSet.getDate("created_date").toLocalDate();
+        return new Habit(id, name, description, frequency, userId, createdDate);
+    }
 }
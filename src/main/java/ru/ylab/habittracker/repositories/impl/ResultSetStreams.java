@@ -0,0 +1,131 @@
+package ru.ylab.habittracker.repositories.impl;
+
+import ru.ylab.habittracker.app.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Вспомогательный класс для потокового чтения результатов запросов через серверный курсор.
+ *
+ * <p>Запрос выполняется с выключенным автокоммитом и заданным размером выборки, поэтому
+ * драйвер получает строки порциями по {@code fetchSize}, а не загружает весь результат в память.
+ * Соединение, выражение и результат освобождаются при закрытии потока, поэтому поток
+ * необходимо использовать в блоке try-with-resources.</p>
+ */
+final class ResultSetStreams {
+    /**
+     * Количество строк, запрашиваемых у сервера за одну порцию.
+     */
+    static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private ResultSetStreams() {
+    }
+
+    /**
+     * Устанавливает параметры подготовленного выражения.
+     */
+    @FunctionalInterface
+    interface StatementBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    /**
+     * Преобразует текущую строку результата в объект.
+     *
+     * @param <T> тип объекта
+     */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Открывает поток строк запроса без параметров.
+     *
+     * @param databaseConnection источник соединений.
+     * @param sql                текст запроса.
+     * @param rowMapper          преобразование строки в объект.
+     * @param <T>                тип элементов потока.
+     * @return поток объектов; пустой поток, если запрос не удалось выполнить.
+     */
+    static <T> Stream<T> stream(DatabaseConnection databaseConnection, String sql, RowMapper<T> rowMapper) {
+        return stream(databaseConnection, sql, statement -> {
+        }, rowMapper);
+    }
+
+    /**
+     * Открывает поток строк параметризованного запроса.
+     *
+     * @param databaseConnection источник соединений.
+     * @param sql                текст запроса.
+     * @param binder             установка параметров запроса.
+     * @param rowMapper          преобразование строки в объект.
+     * @param <T>                тип элементов потока.
+     * @return поток объектов; пустой поток, если запрос не удалось выполнить.
+     */
+    static <T> Stream<T> stream(DatabaseConnection databaseConnection, String sql, StatementBinder binder, RowMapper<T> rowMapper) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet;
+        try {
+            connection = databaseConnection.getConnection();
+            connection.setAutoCommit(false);
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(DEFAULT_FETCH_SIZE);
+            binder.bind(statement);
+            resultSet = statement.executeQuery();
+        } catch (SQLException e) {
+            System.err.println("Ошибка при открытии курсора: " + e.getMessage());
+            close(null, statement, connection);
+            return Stream.empty();
+        }
+
+        Connection openConnection = connection;
+        PreparedStatement openStatement = statement;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(rowMapper.map(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException("Failed to read the next row from the cursor", e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> close(resultSet, openStatement, openConnection));
+    }
+
+    private static void close(ResultSet resultSet, PreparedStatement statement, Connection connection) {
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при закрытии курсора: " + e.getMessage());
+        } finally {
+            try {
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                System.err.println("Ошибка при закрытии соединения: " + e.getMessage());
+            }
+        }
+    }
+}
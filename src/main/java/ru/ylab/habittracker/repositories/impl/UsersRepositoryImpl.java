@@ -7,8 +7,12 @@ import ru.ylab.habittracker.utils.Role;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Реализация репозитория для работы с пользователями.
@@ -63,6 +67,55 @@ public class UsersRepositoryImpl implements UsersRepository {
         return Optional.empty();
     }
 
+    /**
+     * Находит пользователей по набору идентификаторов. Идентификаторы передаются
+     * одним массивом в условие {@code id = ANY(?)}, поэтому запрос выполняется за одно обращение к базе данных.
+     *
+     * @param ids идентификаторы пользователей.
+     * @return пользователи по идентификаторам; отсутствующие идентификаторы в результат не попадают.
+     */
+    @Override
+    public Map<Long, Users> findAllByIds(Collection<Long> ids) {
+        return findAllByIds(ids, "SELECT * FROM habit_tracking_schema.users WHERE id = ANY(?)");
+    }
+
+    /**
+     * Находит пользователей по набору идентификаторов и блокирует найденные строки до конца
+     * транзакции. Строки блокируются в порядке идентификаторов, чтобы параллельные транзакции,
+     * блокирующие одних и тех же пользователей, не попадали во взаимную блокировку.
+     *
+     * @param ids идентификаторы пользователей.
+     * @return пользователи по идентификаторам; отсутствующие идентификаторы в результат не попадают.
+     */
+    @Override
+    public Map<Long, Users> findAllByIdsForUpdate(Collection<Long> ids) {
+        return findAllByIds(ids, "SELECT * FROM habit_tracking_schema.users WHERE id = ANY(?) ORDER BY id FOR UPDATE");
+    }
+
+    private Map<Long, Users> findAllByIds(Collection<Long> ids, String sql) {
+        Map<Long, Users> users = new HashMap<>();
+        if (ids.isEmpty()) {
+            return users;
+        }
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            Array idArray = connection.createArrayOf("bigint", ids.toArray());
+            try {
+                statement.setArray(1, idArray);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        mapRowToUser(resultSet).ifPresent(user -> users.put(user.getId(), user));
+                    }
+                }
+            } finally {
+                idArray.free();
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return users;
+    }
+
     /**
      * Находит всех пользователей в базе данных.
      *
@@ -84,6 +137,43 @@ public class UsersRepositoryImpl implements UsersRepository {
         return users;
     }
 
+    /**
+     * Возвращает страницу пользователей по ключу: выбираются пользователи с идентификатором
+     * больше {@code afterId}, поэтому стоимость запроса не зависит от номера страницы.
+     *
+     * @param afterId идентификатор последнего пользователя предыдущей страницы или null для первой страницы.
+     * @param limit   максимальное количество пользователей на странице.
+     * @return список пользователей страницы.
+     */
+    @Override
+    public List<Users> findPage(Long afterId, int limit) {
+        List<Users> users = new ArrayList<>();
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT * FROM habit_tracking_schema.users WHERE id > ? ORDER BY id LIMIT ?")) {
+            statement.setLong(1, afterId != null ? afterId : Long.MIN_VALUE);
+            statement.setInt(2, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    mapRowToUser(resultSet).ifPresent(users::add);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return users;
+    }
+
+    /**
+     * Возвращает всех пользователей в виде потока, читаемого через серверный курсор.
+     *
+     * @return поток пользователей; должен быть закрыт после использования.
+     */
+    @Override
+    public Stream<Users> streamAll() {
+        return ResultSetStreams.stream(databaseConnection, "SELECT * FROM habit_tracking_schema.users ORDER BY id",
+                resultSet -> mapRowToUser(resultSet).orElseThrow());
+    }
+
     /**
      * Сохраняет нового пользователя в базе данных.
      *
@@ -0,0 +1,19 @@
+package ru.ylab.habittracker.services;
+
+import ru.ylab.habittracker.dto.BaseResponse;
+import ru.ylab.habittracker.models.AnalyticsSummary;
+
+import java.time.LocalDate;
+
+public interface AnalyticsService {
+
+    /**
+     * Рассчитывает сводную аналитику по всем привычкам за период и сохраняет ее.
+     *
+     * @param adminId идентификатор администратора, запрашивающего расчет.
+     * @param periodStart начало периода.
+     * @param periodEnd конец периода.
+     * @return BaseResponse<AnalyticsSummary> объект ответа со сводной аналитикой.
+     */
+    BaseResponse<AnalyticsSummary> calculateAnalytics(Long adminId, LocalDate periodStart, LocalDate periodEnd);
+}
@@ -2,10 +2,13 @@ package ru.ylab.habittracker.services;
 
 import ru.ylab.habittracker.dto.BaseResponse;
 import ru.ylab.habittracker.dto.HabitReportResponse;
+import ru.ylab.habittracker.dto.StreakHistoryResponse;
 import ru.ylab.habittracker.models.HabitCompletion;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Сервис для управления выполнением привычек.
@@ -22,6 +25,14 @@ public interface HabitCompletionService {
      */
     HabitCompletion markCompletion(Long id);
 
+    /**
+     * Отмечает выполнение привычки по ее идентификатору без ожидания записи.
+     *
+     * @param id идентификатор привычки, которую нужно отметить как выполненную.
+     * @return future с выполнением привычки, завершающийся после фиксации записи в базе данных.
+     */
+    CompletableFuture<HabitCompletion> markCompletionAsync(Long id);
+
     /**
      * Показывает историю выполнения привычки по ее идентификатору.
      *
@@ -39,6 +50,17 @@ public interface HabitCompletionService {
      */
     BaseResponse<List<HabitCompletion>> getCompletion(Long id, String period);
 
+    /**
+     * Получает количество выполнений привычки по неделям или месяцам из сводных таблиц.
+     *
+     * @param id идентификатор привычки.
+     * @param period период агрегации: "week" или "month".
+     * @param periodStart начало диапазона.
+     * @param periodEnd конец диапазона.
+     * @return BaseResponse<Map<LocalDate, Integer>> объект ответа с количеством выполнений по началу периода.
+     */
+    BaseResponse<Map<LocalDate, Integer>> getCompletionCounts(Long id, String period, LocalDate periodStart, LocalDate periodEnd);
+
     /**
      * Получает выполнение привычки за месяц по заданной дате.
      *
@@ -94,6 +116,14 @@ public interface HabitCompletionService {
      */
     long calculateTotalDays(LocalDate startDate, LocalDate endDate);
 
+    /**
+     * Вычисляет историю серий выполнения привычки: все серии, самую длинную и среднюю длину.
+     *
+     * @param id идентификатор привычки.
+     * @return BaseResponse<StreakHistoryResponse> объект ответа с историей серий.
+     */
+    BaseResponse<StreakHistoryResponse> calculateStreakHistory(Long id);
+
     /**
      * Генерирует отчет о выполнении привычки за указанный период.
      *
@@ -103,4 +133,15 @@ public interface HabitCompletionService {
      * @return BaseResponse<HabitReportResponse> объект ответа с отчетом о выполнении привычки.
      */
     BaseResponse<HabitReportResponse> generateHabitReport(Long id, LocalDate periodStart, LocalDate periodEnd);
+
+    /**
+     * Генерирует отчеты о выполнении всех привычек пользователя за указанный период.
+     *
+     * @param userId идентификатор пользователя.
+     * @param periodStart начало периода.
+     * @param periodEnd конец периода.
+     * @return BaseResponse<Map<Long, HabitReportResponse>> объект ответа с отчетами по идентификаторам привычек.
+     * @throws ru.ylab.habittracker.exception.InvalidPeriodException если начало периода позже его конца.
+     */
+    BaseResponse<Map<Long, HabitReportResponse>> generateUserReport(Long userId, LocalDate periodStart, LocalDate periodEnd);
 }
@@ -2,9 +2,12 @@ package ru.ylab.habittracker.services;
 
 import ru.ylab.habittracker.dto.BaseResponse;
 import ru.ylab.habittracker.models.Habit;
+import ru.ylab.habittracker.models.HabitCompletionDays;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface HabitsService {
 
@@ -39,6 +42,16 @@ public interface HabitsService {
      */
     BaseResponse<List<Habit>> findByUserId(Long userId);
 
+    /**
+     * Возвращает страницу привычек пользователя.
+     *
+     * @param userId            идентификатор пользователя, чьи привычки нужно найти.
+     * @param continuationToken токен продолжения из предыдущего ответа или null для первой страницы.
+     * @param limit             максимальное количество привычек на странице.
+     * @return BaseResponse<List<Habit>> объект ответа со страницей привычек и токеном следующей страницы.
+     */
+    BaseResponse<List<Habit>> findByUserId(Long userId, String continuationToken, int limit);
+
     /**
      * Находит привычки пользователя по его идентификатору и дате создания.
      *
@@ -47,4 +60,23 @@ public interface HabitsService {
      * @return BaseResponse<List < Habit>> объект ответа со списком привычек пользователя за указанную дату.
      */
     BaseResponse<List<Habit>> findByUserIdAndDate(Long userId, LocalDate localDate);
+
+    /**
+     * Находит привычки пользователя по набору идентификаторов одним запросом.
+     *
+     * @param userId   идентификатор пользователя, чьи привычки нужно найти.
+     * @param habitIds идентификаторы привычек.
+     * @return BaseResponse<Map<Long, Habit>> объект ответа с привычками пользователя по идентификаторам.
+     */
+    BaseResponse<Map<Long, Habit>> findByIds(Long userId, Collection<Long> habitIds);
+
+    /**
+     * Находит привычки пользователя вместе с днями их выполнения за период для экрана сводки.
+     *
+     * @param userId идентификатор пользователя.
+     * @param from   первая дата периода.
+     * @param to     последняя дата периода.
+     * @return BaseResponse<List<HabitCompletionDays>> объект ответа с привычками и днями их выполнения.
+     */
+    BaseResponse<List<HabitCompletionDays>> findDashboard(Long userId, LocalDate from, LocalDate to);
 }
@@ -5,6 +5,8 @@ import ru.ylab.habittracker.dto.UpdateUserProfileRequest;
 import ru.ylab.habittracker.dto.UserResponse;
 import ru.ylab.habittracker.models.Users;
 
+import java.util.List;
+
 /**
  * Сервис для управления пользователями.
  * Этот интерфейс определяет методы для создания, обновления, удаления и изменения ролей пользователей.
@@ -52,6 +54,16 @@ public interface UsersService {
      */
     BaseResponse<Void> deleteUserByAdmin(Long adminId, Long userId);
 
+    /**
+     * Возвращает страницу списка пользователей для администратора.
+     *
+     * @param adminId           идентификатор администратора, запрашивающего список.
+     * @param continuationToken токен продолжения из предыдущего ответа или null для первой страницы.
+     * @param limit             максимальное количество пользователей на странице.
+     * @return BaseResponse<List<UserResponse>> объект ответа со страницей пользователей и токеном следующей страницы.
+     */
+    BaseResponse<List<UserResponse>> findPage(Long adminId, String continuationToken, int limit);
+
     /**
      * Устанавливает роль администратора для пользователя по его электронной почте.
      *
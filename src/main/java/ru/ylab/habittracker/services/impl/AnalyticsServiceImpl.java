@@ -0,0 +1,64 @@
+package ru.ylab.habittracker.services.impl;
+
+import ru.ylab.habittracker.dto.BaseResponse;
+import ru.ylab.habittracker.exception.InvalidPeriodException;
+import ru.ylab.habittracker.jobs.AnalyticsAccumulator;
+import ru.ylab.habittracker.jobs.HabitAnalyticsJob;
+import ru.ylab.habittracker.models.AnalyticsSummary;
+import ru.ylab.habittracker.models.Users;
+import ru.ylab.habittracker.repositories.UsersRepository;
+import ru.ylab.habittracker.services.AnalyticsService;
+import ru.ylab.habittracker.utils.Role;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+/**
+ * Реализация сервиса сводной аналитики для администраторов.
+ */
+public class AnalyticsServiceImpl implements AnalyticsService {
+    private final UsersRepository usersRepository;
+    private final HabitAnalyticsJob habitAnalyticsJob;
+
+    /**
+     * Конструктор класса AnalyticsServiceImpl.
+     *
+     * @param usersRepository репозиторий для доступа к данным пользователей.
+     * @param habitAnalyticsJob задача расчета аналитики.
+     */
+    public AnalyticsServiceImpl(UsersRepository usersRepository, HabitAnalyticsJob habitAnalyticsJob) {
+        this.usersRepository = usersRepository;
+        this.habitAnalyticsJob = habitAnalyticsJob;
+    }
+
+    /**
+     * Рассчитывает сводную аналитику по всем привычкам за период и сохраняет ее.
+     *
+     * @param adminId идентификатор администратора, запрашивающего расчет.
+     * @param periodStart начало периода.
+     * @param periodEnd конец периода.
+     * @return BaseResponse<AnalyticsSummary> объект ответа со сводной аналитикой.
+     * @throws RuntimeException если администратор не найден или у пользователя нет прав администратора.
+     * @throws InvalidPeriodException если начало периода позже его конца или период длиннее
+     *                                {@link AnalyticsAccumulator#MAX_PERIOD_DAYS} дней.
+     */
+    @Override
+    public BaseResponse<AnalyticsSummary> calculateAnalytics(Long adminId, LocalDate periodStart, LocalDate periodEnd) {
+        Optional<Users> optionalAdmin = usersRepository.findById(adminId);
+        if (optionalAdmin.isEmpty()) {
+            throw new RuntimeException("Admin not found");
+        }
+
+        if (optionalAdmin.get().getRole() == Role.USER) {
+            throw new RuntimeException("Forbidden");
+        }
+
+        if (periodStart.isAfter(periodEnd)
+                || ChronoUnit.DAYS.between(periodStart, periodEnd) >= AnalyticsAccumulator.MAX_PERIOD_DAYS) {
+            throw new InvalidPeriodException("Invalid period");
+        }
+
+        return new BaseResponse<>("Analytics calculated", habitAnalyticsJob.calculate(periodStart, periodEnd));
+    }
+}
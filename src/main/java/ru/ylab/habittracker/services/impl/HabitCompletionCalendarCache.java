@@ -0,0 +1,256 @@
+package ru.ylab.habittracker.services.impl;
+
+import ru.ylab.habittracker.models.CompletionCalendar;
+import ru.ylab.habittracker.models.CompletionStatistics;
+import ru.ylab.habittracker.models.HabitCompletion;
+import ru.ylab.habittracker.models.StreakInterval;
+import ru.ylab.habittracker.repositories.HabitCompletionRepository;
+import ru.ylab.habittracker.repositories.impl.CacheStatistics;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш календарей выполнения привычек.
+ *
+ * <p>Для каждой привычки хранится битовая карта дней выполнения {@link CompletionCalendar},
+ * что занимает один бит на день истории вместо объекта {@link HabitCompletion} на каждое
+ * выполнение. Календарь начинается с самого раннего выполнения и загружается из репозитория
+ * при первом обращении в виде массива дней, без создания объектов на каждую строку;
+ * {@link #addCompletion(Long, LocalDate)} добавляет день в уже загруженный календарь,
+ * а {@link #invalidate(Long)} удаляет его. Объем кэша ограничен оценкой занимаемой
+ * памяти, при превышении вытесняются давно не использованные календари (LRU).</p>
+ *
+ * <p>Календарь хранится ограниченное время с момента загрузки. Выполнения меняются не только
+ * через сервисы, обновляющие кэш: каскадное удаление пользователя, пакетная загрузка, удаление
+ * секций старых месяцев. Поэтому устаревший календарь виден не дольше времени жизни записи,
+ * а для массовых изменений есть {@link #invalidateAll()}.</p>
+ *
+ * <p>Календари неизменяемы: добавление дня создает новый календарь. Загрузка выполняется
+ * вне блокировки, поэтому каждая запись в кэш увеличивает номер эпохи, а загруженный
+ * календарь сохраняется, только если эпоха за время чтения не изменилась.</p>
+ */
+public class HabitCompletionCalendarCache {
+    /**
+     * Объем памяти кэша по умолчанию, байт.
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    /**
+     * Время жизни календаря по умолчанию, мс.
+     */
+    public static final long DEFAULT_TTL_MILLIS = 60_000;
+
+    /**
+     * Оценка накладных расходов на одну запись карты: узел и ключ.
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 64;
+
+    private final HabitCompletionRepository habitCompletionRepository;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final LinkedHashMap<Long, Entry> calendars = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long usedBytes;
+    private long epoch;
+
+    /**
+     * Создает кэш календарей с временем жизни записи по умолчанию.
+     *
+     * @param habitCompletionRepository репозиторий, из которого загружаются календари.
+     * @param maxBytes                  допустимый объем памяти кэша, байт.
+     */
+    public HabitCompletionCalendarCache(HabitCompletionRepository habitCompletionRepository, long maxBytes) {
+        this(habitCompletionRepository, maxBytes, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Создает кэш календарей.
+     *
+     * @param habitCompletionRepository репозиторий, из которого загружаются календари.
+     * @param maxBytes                  допустимый объем памяти кэша, байт.
+     * @param ttlMillis                 время жизни календаря с момента загрузки, мс.
+     */
+    public HabitCompletionCalendarCache(HabitCompletionRepository habitCompletionRepository, long maxBytes, long ttlMillis) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache memory budget must be positive: " + maxBytes);
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache TTL must be positive: " + ttlMillis);
+        }
+        this.habitCompletionRepository = habitCompletionRepository;
+        this.maxBytes = maxBytes;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * Возвращает количество выполнений привычки за все время.
+     *
+     * @param habitId идентификатор привычки.
+     * @return количество дней выполнения.
+     */
+    public int count(Long habitId) {
+        return calendar(habitId).count();
+    }
+
+    /**
+     * Подсчитывает дни выполнения привычки в периоде.
+     *
+     * @param habitId   идентификатор привычки.
+     * @param startDate начало периода.
+     * @param endDate   конец периода.
+     * @return количество дней выполнения в периоде.
+     */
+    public int countInPeriod(Long habitId, LocalDate startDate, LocalDate endDate) {
+        return calendar(habitId).countInRange(startDate, endDate);
+    }
+
+    /**
+     * Вычисляет серию выполнения привычки, заканчивающуюся указанной датой.
+     *
+     * @param habitId     идентификатор привычки.
+     * @param currentDate последний день серии.
+     * @return количество подряд идущих дней выполнения, заканчивающихся {@code currentDate}.
+     */
+    public int currentStreak(Long habitId, LocalDate currentDate) {
+        return calendar(habitId).streakEndingAt(currentDate);
+    }
+
+    /**
+     * Возвращает все серии выполнения привычки.
+     *
+     * @param habitId идентификатор привычки.
+     * @return серии по возрастанию дат.
+     */
+    public List<StreakInterval> streaks(Long habitId) {
+        return calendar(habitId).streaks();
+    }
+
+    /**
+     * Вычисляет показатели отчета по одному календарю привычки: календарь читается из кэша
+     * один раз, поэтому все показатели относятся к одной версии истории.
+     *
+     * @param habitId     идентификатор привычки.
+     * @param startDate   начало периода отчета.
+     * @param endDate     конец периода отчета.
+     * @param currentDate последний день текущей серии.
+     * @return показатели выполнения привычки.
+     */
+    public CompletionStatistics statistics(Long habitId, LocalDate startDate, LocalDate endDate, LocalDate currentDate) {
+        return calendar(habitId).statistics(startDate, endDate, currentDate);
+    }
+
+    /**
+     * Добавляет день выполнения в загруженный календарь привычки. Если календарь
+     * не загружен, он будет прочитан из базы данных при следующем обращении.
+     *
+     * @param habitId        идентификатор привычки.
+     * @param completionDate дата выполнения.
+     */
+    public synchronized void addCompletion(Long habitId, LocalDate completionDate) {
+        epoch++;
+        Entry entry = calendars.get(habitId);
+        if (entry == null) {
+            return;
+        }
+        CompletionCalendar updated = entry.calendar().withDay(completionDate);
+        calendars.put(habitId, new Entry(updated, entry.expiresAtNanos()));
+        usedBytes += sizeOf(updated) - sizeOf(entry.calendar());
+        evictOverBudget();
+    }
+
+    /**
+     * Удаляет календарь привычки из кэша.
+     *
+     * @param habitId идентификатор привычки.
+     */
+    public synchronized void invalidate(Long habitId) {
+        epoch++;
+        Entry removed = calendars.remove(habitId);
+        if (removed != null) {
+            usedBytes -= sizeOf(removed.calendar());
+        }
+    }
+
+    /**
+     * Удаляет из кэша календари всех привычек. Используется после изменений,
+     * затрагивающих выполнения многих привычек.
+     */
+    public synchronized void invalidateAll() {
+        epoch++;
+        calendars.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Возвращает статистику кэша.
+     *
+     * @return снимок статистики кэша.
+     */
+    public synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(calendars.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    /**
+     * Возвращает оценку памяти, занимаемой календарями.
+     *
+     * @return занятый объем, байт.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private CompletionCalendar calendar(Long habitId) {
+        long loadEpoch;
+        synchronized (this) {
+            Entry entry = calendars.get(habitId);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAtNanos() < 0) {
+                    hits.increment();
+                    return entry.calendar();
+                }
+                calendars.remove(habitId);
+                usedBytes -= sizeOf(entry.calendar());
+                evictions.increment();
+            }
+            misses.increment();
+            loadEpoch = epoch;
+        }
+
+        CompletionCalendar loaded = load(habitId);
+        synchronized (this) {
+            if (loadEpoch == epoch && !calendars.containsKey(habitId)) {
+                calendars.put(habitId, new Entry(loaded, System.nanoTime() + ttlNanos));
+                usedBytes += sizeOf(loaded);
+                evictOverBudget();
+            }
+        }
+        return loaded;
+    }
+
+    private CompletionCalendar load(Long habitId) {
+        return CompletionCalendar.of(LocalDate.now(), habitCompletionRepository.findCompletionDaysByHabitId(habitId));
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Long, Entry>> leastRecentlyUsed = calendars.entrySet().iterator();
+        while (usedBytes > maxBytes && leastRecentlyUsed.hasNext()) {
+            usedBytes -= sizeOf(leastRecentlyUsed.next().getValue().calendar());
+            leastRecentlyUsed.remove();
+            evictions.increment();
+        }
+    }
+
+    private static long sizeOf(CompletionCalendar calendar) {
+        return ENTRY_OVERHEAD_BYTES + calendar.memoryBytes();
+    }
+
+    private record Entry(CompletionCalendar calendar, long expiresAtNanos) {
+    }
+}
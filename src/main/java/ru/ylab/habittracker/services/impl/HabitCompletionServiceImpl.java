@@ -2,21 +2,33 @@ package ru.ylab.habittracker.services.impl;
 
 import ru.ylab.habittracker.dto.BaseResponse;
 import ru.ylab.habittracker.dto.HabitReportResponse;
+import ru.ylab.habittracker.dto.StreakHistoryResponse;
 import ru.ylab.habittracker.exception.HabitAlreadyCompletedException;
 import ru.ylab.habittracker.exception.HabitNotFoundException;
 import ru.ylab.habittracker.exception.InvalidPeriodException;
+import ru.ylab.habittracker.models.CompletionStatistics;
 import ru.ylab.habittracker.models.Habit;
 import ru.ylab.habittracker.models.HabitCompletion;
+import ru.ylab.habittracker.models.HabitCompletionDays;
+import ru.ylab.habittracker.models.HabitStreak;
+import ru.ylab.habittracker.models.StreakInterval;
 import ru.ylab.habittracker.repositories.HabitCompletionRepository;
 import ru.ylab.habittracker.repositories.HabitsRepository;
 import ru.ylab.habittracker.services.HabitCompletionService;
+import ru.ylab.habittracker.utils.EpochDays;
+import ru.ylab.habittracker.utils.Frequency;
+import ru.ylab.habittracker.utils.IsoWeeks;
+import ru.ylab.habittracker.utils.RollupPeriod;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Реализация сервиса для отслеживания выполнения привычек.
@@ -25,20 +37,51 @@ import java.util.stream.Collectors;
 public class HabitCompletionServiceImpl implements HabitCompletionService {
     private final HabitsRepository habitsRepository;
     private final HabitCompletionRepository habitCompletionRepository;
+    private final HabitCompletionCalendarCache calendarCache;
+    private final HabitCompletionWriteBuffer writeBuffer;
 
     /**
-     * Конструктор для создания экземпляра HabitCompletionServiceImpl.
+     * Конструктор для создания экземпляра HabitCompletionServiceImpl с собственным кэшем календарей.
      *
      * @param habitsRepository          репозиторий привычек.
      * @param habitCompletionRepository  репозиторий выполнения привычек.
      */
     public HabitCompletionServiceImpl(HabitsRepository habitsRepository, HabitCompletionRepository habitCompletionRepository) {
+        this(habitsRepository, habitCompletionRepository,
+                new HabitCompletionCalendarCache(habitCompletionRepository, HabitCompletionCalendarCache.DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * Конструктор для создания экземпляра HabitCompletionServiceImpl.
+     *
+     * @param habitsRepository          репозиторий привычек.
+     * @param habitCompletionRepository  репозиторий выполнения привычек.
+     * @param calendarCache             кэш календарей выполнения, общий с сервисом привычек.
+     */
+    public HabitCompletionServiceImpl(HabitsRepository habitsRepository, HabitCompletionRepository habitCompletionRepository,
+                                      HabitCompletionCalendarCache calendarCache) {
+        this(habitsRepository, habitCompletionRepository, calendarCache, null);
+    }
+
+    /**
+     * Конструктор для создания экземпляра HabitCompletionServiceImpl с отложенной записью выполнений.
+     *
+     * @param habitsRepository          репозиторий привычек.
+     * @param habitCompletionRepository  репозиторий выполнения привычек.
+     * @param calendarCache             кэш календарей выполнения, общий с сервисом привычек.
+     * @param writeBuffer               буфер групповой записи выполнений или null для записи каждого выполнения отдельной транзакцией.
+     */
+    public HabitCompletionServiceImpl(HabitsRepository habitsRepository, HabitCompletionRepository habitCompletionRepository,
+                                      HabitCompletionCalendarCache calendarCache, HabitCompletionWriteBuffer writeBuffer) {
         this.habitsRepository = habitsRepository;
         this.habitCompletionRepository = habitCompletionRepository;
+        this.calendarCache = calendarCache;
+        this.writeBuffer = writeBuffer;
     }
 
     /**
-     * Отмечает выполнение привычки по её идентификатору.
+     * Отмечает выполнение привычки по её идентификатору. При включенной отложенной записи
+     * метод ожидает фиксации пакета, в который попало выполнение.
      *
      * @param id идентификатор привычки.
      * @return объект HabitCompletion, представляющий выполненную привычку.
@@ -47,19 +90,53 @@ public class HabitCompletionServiceImpl implements HabitCompletionService {
      */
     @Override
     public HabitCompletion markCompletion(Long id) {
+        if (writeBuffer != null) {
+            try {
+                return markCompletionAsync(id).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
         Habit habit = findHabitById(id);
 
-        LocalDate today = LocalDate.now();
-        List<HabitCompletion> habitCompletions = habitCompletionRepository.findByHabitId(id);
+        HabitCompletion habitCompletion = new HabitCompletion(null, LocalDate.now(), habit.getId());
+        HabitCompletion saved = habitCompletionRepository.saveIfAbsent(habitCompletion)
+                .orElseThrow(() -> new HabitAlreadyCompletedException("Habit already completed"));
+        calendarCache.addCompletion(saved.getHabitId(), saved.getCompletionDate());
+        return saved;
+    }
 
-        if (habitCompletions.stream().anyMatch(completion -> completion.getCompletionDate().equals(today))) {
-            throw new HabitAlreadyCompletedException("Habit already completed");
+    /**
+     * Отмечает выполнение привычки по её идентификатору через буфер групповой записи.
+     * Без буфера выполнение записывается сразу, а future возвращается завершенным.
+     *
+     * @param id идентификатор привычки.
+     * @return future с выполненной привычкой; завершается исключением {@link HabitNotFoundException},
+     * {@link HabitAlreadyCompletedException} или ошибкой записи.
+     */
+    @Override
+    public CompletableFuture<HabitCompletion> markCompletionAsync(Long id) {
+        if (writeBuffer == null) {
+            try {
+                return CompletableFuture.completedFuture(markCompletion(id));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
         }
-
-        HabitCompletion habitCompletion = new HabitCompletion(id, today, habit.getId());
-        habitCompletionRepository.save(habitCompletion);
-
-        return habitCompletion;
+        Habit habit;
+        try {
+            habit = findHabitById(id);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return writeBuffer.submit(new HabitCompletion(null, LocalDate.now(), habit.getId()))
+                .thenApply(saved -> {
+                    calendarCache.addCompletion(saved.getHabitId(), saved.getCompletionDate());
+                    return saved;
+                });
     }
 
     /**
@@ -95,6 +172,45 @@ public class HabitCompletionServiceImpl implements HabitCompletionService {
         };
     }
 
+    /**
+     * Получает количество выполнений привычки по неделям или месяцам. Данные читаются
+     * из сводных таблиц, поэтому отчет за длинный диапазон затрагивает по строке на период.
+     *
+     * @param id идентификатор привычки.
+     * @param period период агрегации: "week" или "month".
+     * @param periodStart начало диапазона.
+     * @param periodEnd конец диапазона.
+     * @return объект BaseResponse с количеством выполнений по началу периода.
+     * @throws InvalidPeriodException если период указан неверно или начало диапазона позже конца.
+     * @throws HabitNotFoundException если привычка не найдена.
+     */
+    @Override
+    public BaseResponse<Map<LocalDate, Integer>> getCompletionCounts(Long id, String period, LocalDate periodStart, LocalDate periodEnd) {
+        RollupPeriod rollupPeriod = switch (period) {
+            case "month" -> RollupPeriod.MONTH;
+            case "week" -> RollupPeriod.WEEK;
+            default -> throw new InvalidPeriodException("Invalid period");
+        };
+        if (periodStart.isAfter(periodEnd)) {
+            throw new InvalidPeriodException("Invalid period");
+        }
+        findHabitById(id);
+        return new BaseResponse<>("Completion counts found.",
+                habitCompletionRepository.findCompletionCounts(id, rollupPeriod, periodStart, periodEnd));
+    }
+
+    /**
+     * Проверяет, содержит ли период хотя бы один полный календарный месяц.
+     *
+     * @param startDate начало периода.
+     * @param endDate конец периода.
+     * @return true, если период охватывает месяц целиком.
+     */
+    private static boolean containsFullMonth(LocalDate startDate, LocalDate endDate) {
+        LocalDate firstFullMonth = startDate.getDayOfMonth() == 1 ? startDate : startDate.plusMonths(1).withDayOfMonth(1);
+        return !firstFullMonth.plusMonths(1).minusDays(1).isAfter(endDate);
+    }
+
     /**
      * Находит привычку по её идентификатору.
      *
@@ -153,36 +269,39 @@ public class HabitCompletionServiceImpl implements HabitCompletionService {
     }
 
     /**
-     * Вычисляет текущую серию выполнения привычки.
+     * Вычисляет текущую серию выполнения привычки с учетом ее частоты. Серия ежедневной привычки
+     * берется из счетчиков, хранящихся в строке привычки, а для дат раньше последнего выполнения
+     * вычисляется по календарю из кэша. Серия еженедельной привычки считается в неделях ISO
+     * по сериям недель, выделенным в базе данных.
      *
      * @param id идентификатор привычки.
      * @param currentDate дата, по которой вычисляется серия.
-     * @return объект BaseResponse, содержащий текущую серию.
-     * @throws HabitNotFoundException если привычка не найдена.
+     * @return объект BaseResponse, содержащий текущую серию в днях или неделях.
+     * @throws HabitNotFoundException если привычка не найдена или у нее нет выполнений.
      */
     @Override
     public BaseResponse<Integer> calculateCurrentStreak(Long id, LocalDate currentDate) {
-        List<HabitCompletion> habitCompletionList = habitCompletionRepository.findByHabitId(id);
-        if(habitCompletionList.isEmpty()) {
-            throw new HabitNotFoundException("Habit completion list is empty.");
-        }
+        HabitStreak streak = habitsRepository.findStreakById(id)
+                .filter(found -> found.lastCompletedDate() != null)
+                .orElseThrow(() -> new HabitNotFoundException("Habit completion list is empty."));
 
-        int streak = 0;
-        for (int i = habitCompletionList.size() - 1; i >= 0; --i) {
-            HabitCompletion completion = habitCompletionList.get(i);
-            if (completion.getCompletionDate().equals(currentDate)) {
-                ++streak;
-                currentDate = currentDate.minusDays(1);
-            } else {
-                break;
-            }
+        int currentStreak;
+        if (streak.frequency() == Frequency.WEEKLY) {
+            currentStreak = IsoWeeks.streakEndingAt(habitCompletionRepository.findStreakIntervals(id), currentDate);
+        } else if (streak.covers(currentDate)) {
+            currentStreak = streak.streakEndingAt(currentDate);
+        } else {
+            currentStreak = calendarCache.currentStreak(id, currentDate);
         }
-
-        return new BaseResponse<>("Current streak found.", streak);
+        return new BaseResponse<>("Current streak found.", currentStreak);
     }
 
     /**
-     * Вычисляет процент выполнения привычки за указанный период.
+     * Вычисляет процент выполнения привычки за указанный период: долю дней с выполнением
+     * для ежедневной привычки и долю недель ISO с выполнением для еженедельной. Недели
+     * с выполнением читаются из сводной таблицы недель. Дни выполнения за период, содержащий
+     * полный календарный месяц, считаются по сводной таблице месяцев и неполным месяцам на краях
+     * периода, за более короткий период — по календарю из кэша.
      *
      * @param id идентификатор привычки.
      * @param periodStart начало периода.
@@ -192,13 +311,24 @@ public class HabitCompletionServiceImpl implements HabitCompletionService {
      */
     @Override
     public BaseResponse<Double> calculateCompletionPercentage(Long id, LocalDate periodStart, LocalDate periodEnd) {
-        List<HabitCompletion> habitCompletionList = findHabitCompletionsOfPeriod(id, periodStart, periodEnd);
-        if(habitCompletionList.isEmpty()) {
+        Habit habit = findHabitById(id);
+        if (habit.getFrequency() == Frequency.WEEKLY) {
+            long completedWeeks = habitCompletionRepository.findCompletionCounts(id, RollupPeriod.WEEK, periodStart, periodEnd).size();
+            if (completedWeeks == 0) {
+                throw new HabitNotFoundException("Habit completion list is empty.");
+            }
+            return new BaseResponse<>("Found completion percentage.",
+                    (double) completedWeeks / IsoWeeks.weeksInPeriod(periodStart, periodEnd));
+        }
+
+        long countDaysInPeriod = containsFullMonth(periodStart, periodEnd)
+                ? habitCompletionRepository.countByHabitIdAndPeriod(id, periodStart, periodEnd)
+                : calendarCache.countInPeriod(id, periodStart, periodEnd);
+        if (countDaysInPeriod == 0) {
             throw new HabitNotFoundException("Habit completion list is empty.");
         }
 
         long totalDaysInPeriod = calculateTotalDays(periodStart, periodEnd);
-        long countDaysInPeriod = calculateCountDaysInPeriod(habitCompletionList, periodStart, periodEnd);
 
         return new BaseResponse<>("Found completion percentage.", (double) countDaysInPeriod / totalDaysInPeriod);
     }
@@ -232,28 +362,131 @@ public class HabitCompletionServiceImpl implements HabitCompletionService {
     }
 
     /**
-     * Генерирует отчет о привычке.
+     * Вычисляет историю серий выполнения привычки. Серии выделяются в базе данных одним
+     * запросом gaps-and-islands, поэтому приложение получает по строке на серию, а не на выполнение.
+     *
+     * @param id идентификатор привычки.
+     * @return объект BaseResponse, содержащий историю серий.
+     * @throws HabitNotFoundException если у привычки нет выполнений.
+     */
+    @Override
+    public BaseResponse<StreakHistoryResponse> calculateStreakHistory(Long id) {
+        List<StreakInterval> streaks = habitCompletionRepository.findStreakIntervals(id);
+        if (streaks.isEmpty()) {
+            throw new HabitNotFoundException("Habit completion list is empty.");
+        }
+
+        return new BaseResponse<>("Streak history found.", StreakHistoryResponse.of(streaks));
+    }
+
+    /**
+     * Генерирует отчет о привычке. Привычка загружается один раз, а календарь выполнений
+     * читается из кэша одним обращением (из базы данных — не более одного раза), после чего
+     * количество выполнений, текущая, самая длинная и средняя серии ежедневной привычки
+     * вычисляются за один проход по календарю без создания списка серий. Для еженедельной
+     * привычки серии и процент успеха считаются в неделях ISO по сериям недель, выделенным
+     * в базе данных одним запросом.
      *
      * @param id идентификатор привычки.
      * @param periodStart начало периода.
      * @param periodEnd конец периода.
      * @return объект BaseResponse, содержащий отчет о привычке.
-     * @throws HabitNotFoundException если привычка не найдена.
+     * @throws HabitNotFoundException если привычка не найдена или в периоде нет выполнений.
      */
     @Override
     public BaseResponse<HabitReportResponse> generateHabitReport(Long id, LocalDate periodStart, LocalDate periodEnd) {
         Habit habit = findHabitById(id);
-        long currentStreak = calculateCurrentStreak(id, LocalDate.now()).data();
-        long totalCompletions = calculateCountDaysInPeriod(habitCompletionRepository.findByHabitId(id), periodStart, periodEnd);
-        double successRate = calculateCompletionPercentage(id, periodStart, periodEnd).data();
-
-        HabitReportResponse report = new HabitReportResponse(habit.getName(), currentStreak, totalCompletions, successRate);
+        HabitReportResponse report = habit.getFrequency() == Frequency.WEEKLY
+                ? weeklyReport(habit, periodStart, periodEnd)
+                : dailyReport(habit, periodStart, periodEnd);
 
         return new BaseResponse<>("Habit report generated successfully.", report);
     }
 
+    private HabitReportResponse dailyReport(Habit habit, LocalDate periodStart, LocalDate periodEnd) {
+        CompletionStatistics statistics = calendarCache.statistics(habit.getId(), periodStart, periodEnd, LocalDate.now());
+        if (statistics.completionsInPeriod() == 0) {
+            throw new HabitNotFoundException("Habit completion list is empty.");
+        }
+        double successRate = (double) statistics.completionsInPeriod() / calculateTotalDays(periodStart, periodEnd);
+        return new HabitReportResponse(habit.getName(), statistics.currentStreak(), statistics.longestStreak(),
+                statistics.averageStreak(), statistics.completionsInPeriod(), successRate);
+    }
+
+    private HabitReportResponse weeklyReport(Habit habit, LocalDate periodStart, LocalDate periodEnd) {
+        long totalCompletions = calendarCache.countInPeriod(habit.getId(), periodStart, periodEnd);
+        if (totalCompletions == 0) {
+            throw new HabitNotFoundException("Habit completion list is empty.");
+        }
+        List<StreakInterval> weeklyStreaks = habitCompletionRepository.findStreakIntervals(habit.getId());
+        StreakHistoryResponse streakHistory = StreakHistoryResponse.of(weeklyStreaks);
+        double successRate = (double) IsoWeeks.countCompletedWeeks(weeklyStreaks, periodStart, periodEnd)
+                / IsoWeeks.weeksInPeriod(periodStart, periodEnd);
+        return new HabitReportResponse(habit.getName(), IsoWeeks.streakEndingAt(weeklyStreaks, LocalDate.now()),
+                streakHistory.longestStreak(), streakHistory.averageStreak(), totalCompletions, successRate);
+    }
+
+    /**
+     * Генерирует отчеты по всем привычкам пользователя. Привычки и дни их выполнения загружаются
+     * одним запросом, после чего серии, количество выполнений и процент успеха каждой привычки
+     * вычисляются в памяти, поэтому число запросов не зависит от количества привычек.
+     *
+     * @param userId идентификатор пользователя.
+     * @param periodStart начало периода.
+     * @param periodEnd конец периода.
+     * @return объект BaseResponse, содержащий отчеты по идентификаторам привычек в порядке их создания.
+     * @throws InvalidPeriodException если начало периода позже его конца.
+     */
+    @Override
+    public BaseResponse<Map<Long, HabitReportResponse>> generateUserReport(Long userId, LocalDate periodStart, LocalDate periodEnd) {
+        if (periodStart.isAfter(periodEnd)) {
+            throw new InvalidPeriodException("Invalid period");
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate upTo = periodEnd.isAfter(today) ? periodEnd : today;
+        Map<Long, HabitReportResponse> reports = new LinkedHashMap<>();
+        for (HabitCompletionDays habitCompletionDays : habitsRepository.findWithCompletionDaysByUserId(userId, null, upTo)) {
+            Habit habit = habitCompletionDays.habit();
+            reports.put(habit.getId(), buildReport(habit, habitCompletionDays.completionDays(), periodStart, periodEnd, today));
+        }
+
+        return new BaseResponse<>("User report generated successfully.", reports);
+    }
+
     /**
-     * Находит выполнения привычки за указанный период.
+     * Строит отчет о привычке по отсортированным дням выполнения за один проход по массиву.
+     *
+     * @param habit привычка.
+     * @param completionDays дни выполнения по возрастанию.
+     * @param periodStart начало периода.
+     * @param periodEnd конец периода.
+     * @param today дата, на которую вычисляется текущая серия.
+     * @return отчет о привычке.
+     */
+    private HabitReportResponse buildReport(Habit habit, int[] completionDays, LocalDate periodStart, LocalDate periodEnd, LocalDate today) {
+        long totalCompletions = EpochDays.countInRange(completionDays, periodStart, periodEnd);
+        List<StreakInterval> streaks;
+        long currentStreak;
+        double successRate;
+        if (habit.getFrequency() == Frequency.WEEKLY) {
+            streaks = IsoWeeks.streaks(completionDays);
+            currentStreak = IsoWeeks.streakEndingAt(streaks, today);
+            successRate = (double) IsoWeeks.countCompletedWeeks(streaks, periodStart, periodEnd)
+                    / IsoWeeks.weeksInPeriod(periodStart, periodEnd);
+        } else {
+            streaks = EpochDays.streaks(completionDays);
+            currentStreak = EpochDays.streakEndingAt(completionDays, today);
+            successRate = (double) totalCompletions / calculateTotalDays(periodStart, periodEnd);
+        }
+        StreakHistoryResponse streakHistory = StreakHistoryResponse.of(streaks);
+
+        return new HabitReportResponse(habit.getName(), currentStreak, streakHistory.longestStreak(),
+                streakHistory.averageStreak(), totalCompletions, successRate);
+    }
+
+    /**
+     * Находит выполнения привычки за указанный период. Фильтрация по датам
+     * выполняется в базе данных.
      *
      * @param habitId идентификатор привычки.
      * @param startDate начало периода.
@@ -261,10 +494,6 @@ public class HabitCompletionServiceImpl implements HabitCompletionService {
      * @return список выполнений привычки за указанный период.
      */
     private List<HabitCompletion> findHabitCompletionsOfPeriod(Long habitId, LocalDate startDate, LocalDate endDate) {
-        return habitCompletionRepository.findByHabitId(habitId).stream()
-                .filter(habitCompletion ->
-                        !habitCompletion.getCompletionDate().isBefore(startDate) &&
-                                !habitCompletion.getCompletionDate().isAfter(endDate))
-                .collect(Collectors.toList());
+        return habitCompletionRepository.findByHabitIdAndPeriod(habitId, startDate, endDate);
     }
 }
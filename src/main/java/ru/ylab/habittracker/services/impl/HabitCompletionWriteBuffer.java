@@ -0,0 +1,208 @@
+package ru.ylab.habittracker.services.impl;
+
+import ru.ylab.habittracker.exception.HabitAlreadyCompletedException;
+import ru.ylab.habittracker.models.HabitCompletion;
+import ru.ylab.habittracker.repositories.HabitCompletionRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Буфер отложенной записи выполнений привычек с групповой фиксацией.
+ *
+ * <p>Выполнения помещаются в ограниченную очередь, фоновый поток забирает их пакетами
+ * и сохраняет через {@link HabitCompletionRepository#saveAllIfAbsent(List)} одной транзакцией.
+ * Пакет записывается, как только набрано {@code maxBatchSize} выполнений или прошло
+ * {@code flushIntervalMillis} с момента поступления первого выполнения пакета, поэтому
+ * задержка записи не превышает интервала, а стоимость фиксации и обращений к базе данных
+ * делится между всеми выполнениями пакета.</p>
+ *
+ * <p>Гарантии записи явные: future, возвращенный {@link #submit(HabitCompletion)}, завершается
+ * только после фиксации транзакции, в которую попало выполнение. До этого момента выполнение
+ * находится лишь в памяти и теряется при аварийной остановке процесса. Дубликат завершает future
+ * исключением {@link HabitAlreadyCompletedException}, ошибка записи пакета — исключением
+ * {@link IllegalStateException} у всех выполнений пакета, переполнение очереди —
+ * {@link RejectedExecutionException} без ожидания.</p>
+ */
+public class HabitCompletionWriteBuffer implements AutoCloseable {
+    /**
+     * Емкость очереди по умолчанию.
+     */
+    public static final int DEFAULT_CAPACITY = 10_000;
+    /**
+     * Максимальный размер пакета по умолчанию.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    /**
+     * Максимальная задержка записи по умолчанию, мс.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 20;
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final HabitCompletionRepository habitCompletionRepository;
+    private final BlockingQueue<PendingCompletion> queue;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final Thread flusher;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final Object lifecycleLock = new Object();
+    private volatile boolean closed;
+
+    /**
+     * Создает буфер и запускает поток записи.
+     *
+     * @param habitCompletionRepository репозиторий, через который записываются пакеты.
+     * @param capacity                  максимальное количество ожидающих записи выполнений.
+     * @param maxBatchSize              максимальное количество выполнений в одной транзакции.
+     * @param flushIntervalMillis       максимальное время ожидания пакета с момента поступления первого выполнения, мс.
+     */
+    public HabitCompletionWriteBuffer(HabitCompletionRepository habitCompletionRepository, int capacity, int maxBatchSize,
+                                      long flushIntervalMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        }
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Flush interval must not be negative: " + flushIntervalMillis);
+        }
+        this.habitCompletionRepository = habitCompletionRepository;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.flusher = new Thread(this::flushLoop, "habit-completion-write-buffer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Ставит выполнение в очередь на запись.
+     *
+     * @param completion выполнение привычки без идентификатора.
+     * @return future с сохраненным выполнением, завершающийся после фиксации транзакции.
+     */
+    public CompletableFuture<HabitCompletion> submit(HabitCompletion completion) {
+        CompletableFuture<HabitCompletion> future = new CompletableFuture<>();
+        synchronized (lifecycleLock) {
+            if (closed) {
+                future.completeExceptionally(new RejectedExecutionException("Write buffer is closed"));
+            } else if (!queue.offer(new PendingCompletion(completion, future))) {
+                future.completeExceptionally(new RejectedExecutionException("Write buffer is full"));
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Возвращает количество записанных пакетов.
+     *
+     * @return количество транзакций, выполненных буфером.
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Возвращает количество записанных выполнений.
+     *
+     * @return количество сохраненных выполнений без учета дубликатов.
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * Прекращает прием выполнений и дожидается, пока поток записи сохранит уже поставленные в очередь.
+     */
+    @Override
+    public void close() {
+        synchronized (lifecycleLock) {
+            closed = true;
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingCompletion> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, maxBatchSize) > 0) {
+            flush(remaining);
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingCompletion> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingCompletion first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() == maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingCompletion next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                return;
+            }
+            flush(batch);
+        }
+    }
+
+    private void flush(List<PendingCompletion> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<HabitCompletion> completions = new ArrayList<>(batch.size());
+            for (PendingCompletion pending : batch) {
+                completions.add(pending.completion());
+            }
+            List<Optional<HabitCompletion>> results = habitCompletionRepository.saveAllIfAbsent(completions);
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException("Completion batch was not saved");
+            }
+            batches.increment();
+            for (int i = 0; i < batch.size(); i++) {
+                Optional<HabitCompletion> saved = results.get(i);
+                if (saved.isPresent()) {
+                    written.increment();
+                    batch.get(i).future().complete(saved.get());
+                } else {
+                    batch.get(i).future().completeExceptionally(new HabitAlreadyCompletedException("Habit already completed"));
+                }
+            }
+        } catch (RuntimeException e) {
+            for (PendingCompletion pending : batch) {
+                pending.future().completeExceptionally(e);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private record PendingCompletion(HabitCompletion completion, CompletableFuture<HabitCompletion> future) {
+    }
+}
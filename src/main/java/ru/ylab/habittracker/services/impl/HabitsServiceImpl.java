@@ -1,15 +1,22 @@
 package ru.ylab.habittracker.services.impl;
 
+import ru.ylab.habittracker.app.TransactionTemplate;
 import ru.ylab.habittracker.dto.BaseResponse;
+import ru.ylab.habittracker.exception.InvalidPeriodException;
 import ru.ylab.habittracker.models.Habit;
+import ru.ylab.habittracker.models.HabitCompletionDays;
 import ru.ylab.habittracker.models.Users;
 import ru.ylab.habittracker.repositories.HabitsRepository;
 import ru.ylab.habittracker.repositories.UsersRepository;
 import ru.ylab.habittracker.services.HabitsService;
+import ru.ylab.habittracker.utils.ContinuationToken;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Реализация сервиса для управления привычками пользователей.
@@ -19,6 +26,8 @@ import java.util.Optional;
 public class HabitsServiceImpl implements HabitsService {
     private final UsersRepository usersRepository;
     private final HabitsRepository habitsRepository;
+    private final HabitCompletionCalendarCache calendarCache;
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * Конструктор класса HabitsServiceImpl.
@@ -27,8 +36,35 @@ public class HabitsServiceImpl implements HabitsService {
      * @param habitsRepository репозиторий для доступа к данным привычек.
      */
     public HabitsServiceImpl(UsersRepository usersRepository, HabitsRepository habitsRepository) {
+        this(usersRepository, habitsRepository, null);
+    }
+
+    /**
+     * Конструктор класса HabitsServiceImpl с инвалидацией кэша календарей выполнения.
+     *
+     * @param usersRepository репозиторий для доступа к данным пользователей.
+     * @param habitsRepository репозиторий для доступа к данным привычек.
+     * @param calendarCache кэш календарей выполнения, из которого удаляются удаленные привычки; может быть null.
+     */
+    public HabitsServiceImpl(UsersRepository usersRepository, HabitsRepository habitsRepository,
+                             HabitCompletionCalendarCache calendarCache) {
+        this(usersRepository, habitsRepository, calendarCache, null);
+    }
+
+    /**
+     * Конструктор класса HabitsServiceImpl, выполняющий многошаговые операции в одной транзакции.
+     *
+     * @param usersRepository     репозиторий для доступа к данным пользователей.
+     * @param habitsRepository    репозиторий для доступа к данным привычек.
+     * @param calendarCache       кэш календарей выполнения, из которого удаляются удаленные привычки; может быть null.
+     * @param transactionTemplate шаблон транзакций; если null, каждое обращение к репозиторию выполняется отдельно.
+     */
+    public HabitsServiceImpl(UsersRepository usersRepository, HabitsRepository habitsRepository,
+                             HabitCompletionCalendarCache calendarCache, TransactionTemplate transactionTemplate) {
         this.usersRepository = usersRepository;
         this.habitsRepository = habitsRepository;
+        this.calendarCache = calendarCache;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
@@ -40,9 +76,11 @@ public class HabitsServiceImpl implements HabitsService {
      */
     @Override
     public BaseResponse<Habit> create(Habit habit) {
-        validateUserExists(habit.getUserId());
-        habit = habitsRepository.save(habit);
-        return new BaseResponse<>("The habit was successfully created.", habit);
+        Habit saved = inTransaction(() -> {
+            validateUserExists(habit.getUserId());
+            return habitsRepository.save(habit);
+        });
+        return new BaseResponse<>("The habit was successfully created.", saved);
     }
 
     /**
@@ -54,13 +92,15 @@ public class HabitsServiceImpl implements HabitsService {
      */
     @Override
     public BaseResponse<Habit> update(Habit habit) {
-        validateUserExists(habit.getUserId());
-        Optional<Habit> optionalHabit = habitsRepository.findById(habit.getId());
-        if (optionalHabit.isEmpty()) {
-            throw new RuntimeException("The habit was not found.");
-        }
-        habit = habitsRepository.update(habit);
-        return new BaseResponse<>("The habit was successfully updated.", habit);
+        Habit updated = inTransaction(() -> {
+            validateUserExists(habit.getUserId());
+            Optional<Habit> optionalHabit = findForUpdate(habit.getId());
+            if (optionalHabit.isEmpty()) {
+                throw new RuntimeException("The habit was not found.");
+            }
+            return habitsRepository.update(habit);
+        });
+        return new BaseResponse<>("The habit was successfully updated.", updated);
     }
 
     /**
@@ -70,13 +110,19 @@ public class HabitsServiceImpl implements HabitsService {
      */
     @Override
     public void delete(Long id) {
-        Optional<Habit> optionalHabit = habitsRepository.findById(id);
-        if (optionalHabit.isEmpty()) {
-            return;
+        boolean deleted = inTransaction(() -> {
+            Optional<Habit> optionalHabit = findForUpdate(id);
+            if (optionalHabit.isEmpty()) {
+                return false;
+            }
+            Habit habit = optionalHabit.get();
+            validateUserExists(habit.getUserId());
+            habitsRepository.delete(id);
+            return true;
+        });
+        if (deleted && calendarCache != null) {
+            calendarCache.invalidate(id);
         }
-        Habit habit = optionalHabit.get();
-        validateUserExists(habit.getUserId());
-        habitsRepository.delete(id);
     }
 
     /**
@@ -93,6 +139,30 @@ public class HabitsServiceImpl implements HabitsService {
         return new BaseResponse<>("The habits found.", habits);
     }
 
+    /**
+     * Возвращает страницу привычек пользователя. Запрашивается на одну запись больше
+     * размера страницы, чтобы определить, есть ли следующая страница.
+     *
+     * @param userId            идентификатор пользователя, чьи привычки нужно найти.
+     * @param continuationToken токен продолжения из предыдущего ответа или null для первой страницы.
+     * @param limit             максимальное количество привычек на странице.
+     * @return BaseResponse<List<Habit>> объект ответа со страницей привычек и токеном следующей страницы.
+     * @throws RuntimeException если пользователь не найден или параметры страницы некорректны.
+     */
+    @Override
+    public BaseResponse<List<Habit>> findByUserId(Long userId, String continuationToken, int limit) {
+        ContinuationToken.validatePageSize(limit);
+        Long afterId = ContinuationToken.decode(continuationToken);
+        validateUserExists(userId);
+        List<Habit> habits = habitsRepository.findByUserId(userId, afterId, limit + 1);
+        String nextToken = null;
+        if (habits.size() > limit) {
+            habits = habits.subList(0, limit);
+            nextToken = ContinuationToken.encode(habits.get(limit - 1).getId());
+        }
+        return new BaseResponse<>("The habits found.", habits, nextToken);
+    }
+
     /**
      * Находит привычки пользователя по его идентификатору и дате.
      *
@@ -108,6 +178,65 @@ public class HabitsServiceImpl implements HabitsService {
         return new BaseResponse<>("The habits found.", habits);
     }
 
+    /**
+     * Находит привычки пользователя по набору идентификаторов одним запросом.
+     * Привычки других пользователей в результат не попадают.
+     *
+     * @param userId   идентификатор пользователя, чьи привычки нужно найти.
+     * @param habitIds идентификаторы привычек.
+     * @return BaseResponse<Map<Long, Habit>> объект ответа с привычками пользователя по идентификаторам.
+     * @throws RuntimeException если пользователь не найден.
+     */
+    @Override
+    public BaseResponse<Map<Long, Habit>> findByIds(Long userId, Collection<Long> habitIds) {
+        validateUserExists(userId);
+        Map<Long, Habit> habits = habitsRepository.findAllByIds(habitIds);
+        habits.values().removeIf(habit -> !userId.equals(habit.getUserId()));
+        return new BaseResponse<>("The habits found.", habits);
+    }
+
+    /**
+     * Находит привычки пользователя вместе с днями их выполнения за период одним запросом,
+     * чтобы экрану сводки не требовалось запрашивать историю каждой привычки отдельно.
+     *
+     * @param userId идентификатор пользователя.
+     * @param from   первая дата периода.
+     * @param to     последняя дата периода.
+     * @return BaseResponse<List<HabitCompletionDays>> объект ответа с привычками и днями их выполнения.
+     * @throws InvalidPeriodException если начало периода позже его конца.
+     * @throws RuntimeException если пользователь не найден.
+     */
+    @Override
+    public BaseResponse<List<HabitCompletionDays>> findDashboard(Long userId, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new InvalidPeriodException("Invalid period");
+        }
+        validateUserExists(userId);
+        return new BaseResponse<>("The habits found.", habitsRepository.findWithCompletionDaysByUserId(userId, from, to));
+    }
+
+    /**
+     * Находит привычку, которую операция проверяет и изменяет. В транзакции ее строка
+     * блокируется до завершения транзакции.
+     *
+     * @param id идентификатор привычки.
+     * @return Optional с привычкой, если найдена.
+     */
+    private Optional<Habit> findForUpdate(Long id) {
+        return transactionTemplate == null ? habitsRepository.findById(id) : habitsRepository.findByIdForUpdate(id);
+    }
+
+    /**
+     * Выполняет действие в транзакции, если сервису передан шаблон транзакций.
+     *
+     * @param action действие, обращающееся к репозиториям.
+     * @param <T>    тип результата.
+     * @return результат действия.
+     */
+    private <T> T inTransaction(Supplier<T> action) {
+        return transactionTemplate == null ? action.get() : transactionTemplate.execute(action);
+    }
+
     /**
      * Проверяет существование пользователя по его идентификатору.
      *
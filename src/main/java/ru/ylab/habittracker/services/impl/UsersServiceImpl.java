@@ -1,14 +1,20 @@
 package ru.ylab.habittracker.services.impl;
 
+import ru.ylab.habittracker.app.TransactionTemplate;
 import ru.ylab.habittracker.dto.BaseResponse;
 import ru.ylab.habittracker.dto.UpdateUserProfileRequest;
 import ru.ylab.habittracker.dto.UserResponse;
 import ru.ylab.habittracker.models.Users;
 import ru.ylab.habittracker.repositories.UsersRepository;
 import ru.ylab.habittracker.services.UsersService;
+import ru.ylab.habittracker.utils.ContinuationToken;
 import ru.ylab.habittracker.utils.Role;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Реализация сервиса для управления пользователями.
@@ -17,6 +23,7 @@ import java.util.Optional;
  */
 public class UsersServiceImpl implements UsersService {
     private final UsersRepository usersRepository;
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * Конструктор класса UsersServiceImpl.
@@ -24,7 +31,18 @@ public class UsersServiceImpl implements UsersService {
      * @param usersRepository репозиторий для доступа к данным пользователей.
      */
     public UsersServiceImpl(UsersRepository usersRepository) {
+        this(usersRepository, null);
+    }
+
+    /**
+     * Конструктор класса UsersServiceImpl, выполняющий многошаговые операции в одной транзакции.
+     *
+     * @param usersRepository     репозиторий для доступа к данным пользователей.
+     * @param transactionTemplate шаблон транзакций; если null, каждое обращение к репозиторию выполняется отдельно.
+     */
+    public UsersServiceImpl(UsersRepository usersRepository, TransactionTemplate transactionTemplate) {
         this.usersRepository = usersRepository;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
@@ -47,17 +65,21 @@ public class UsersServiceImpl implements UsersService {
      */
     @Override
     public BaseResponse<UserResponse> update(UpdateUserProfileRequest updateUserProfileRequest) {
-        Optional<Users> optionalUser = usersRepository.findById(updateUserProfileRequest.id());
-        if (optionalUser.isEmpty()) {
+        if (updateUserProfileRequest.id() == null) {
             throw new RuntimeException("User not found");
         }
-        Users user = optionalUser.get();
-        user.setName(updateUserProfileRequest.name());
-        user.setEmail(updateUserProfileRequest.email());
-        user.setPassword(updateUserProfileRequest.password());
-        user = usersRepository.update(user);
+        return inTransaction(() -> {
+            Users user = findForUpdate(List.of(updateUserProfileRequest.id())).get(updateUserProfileRequest.id());
+            if (user == null) {
+                throw new RuntimeException("User not found");
+            }
+            user.setName(updateUserProfileRequest.name());
+            user.setEmail(updateUserProfileRequest.email());
+            user.setPassword(updateUserProfileRequest.password());
+            user = usersRepository.update(user);
 
-        return new BaseResponse<>("User updated", new UserResponse(user.getId(), user.getName(), user.getEmail()));
+            return new BaseResponse<>("User updated", new UserResponse(user.getId(), user.getName(), user.getEmail()));
+        });
     }
 
     /**
@@ -81,24 +103,32 @@ public class UsersServiceImpl implements UsersService {
      */
     @Override
     public BaseResponse<Void> blockUser(Long adminId, Long userId) {
-        Optional<Users> optionalAdmin = usersRepository.findById(adminId);
-        if (optionalAdmin.isEmpty()) {
+        if (adminId == null) {
             throw new RuntimeException("Admin not found");
         }
-
-        if (optionalAdmin.get().getRole() == Role.USER) {
-            throw new RuntimeException("Forbidden");
-        }
-
-        Optional<Users> optionalUser = usersRepository.findById(userId);
-        if (optionalUser.isEmpty()) {
+        if (userId == null) {
             throw new RuntimeException("User not found");
         }
+        return inTransaction(() -> {
+            Map<Long, Users> found = findForUpdate(List.of(adminId, userId));
+            Users admin = found.get(adminId);
+            if (admin == null) {
+                throw new RuntimeException("Admin not found");
+            }
+
+            if (admin.getRole() == Role.USER) {
+                throw new RuntimeException("Forbidden");
+            }
 
-        Users users = optionalUser.get();
-        users.setBlocked(true);
-        usersRepository.update(users);
-        return new BaseResponse<>("User blocked", null);
+            Users users = found.get(userId);
+            if (users == null) {
+                throw new RuntimeException("User not found");
+            }
+
+            users.setBlocked(true);
+            usersRepository.update(users);
+            return new BaseResponse<>("User blocked", null);
+        });
     }
 
     /**
@@ -112,17 +142,57 @@ public class UsersServiceImpl implements UsersService {
      */
     @Override
     public BaseResponse<Void> deleteUserByAdmin(Long adminId, Long userId) {
-        Optional<Users> optionalAdmin = usersRepository.findById(adminId);
-        Optional<Users> optionalUser = usersRepository.findById(userId);
-        if (optionalAdmin.isEmpty() || optionalUser.isEmpty()) {
+        if (adminId == null || userId == null) {
             throw new RuntimeException("User not found");
         }
+        return inTransaction(() -> {
+            Map<Long, Users> found = findForUpdate(List.of(adminId, userId));
+            Users admin = found.get(adminId);
+            if (admin == null || !found.containsKey(userId)) {
+                throw new RuntimeException("User not found");
+            }
+
+            if (admin.getRole() == Role.USER) {
+                throw new RuntimeException("Forbidden");
+            }
+            usersRepository.delete(userId);
+            return new BaseResponse<>("User deleted", null);
+        });
+    }
+
+    /**
+     * Возвращает страницу списка пользователей, если администратор имеет права.
+     * Запрашивается на одну запись больше размера страницы, чтобы определить, есть ли следующая страница.
+     *
+     * @param adminId           идентификатор администратора, запрашивающего список.
+     * @param continuationToken токен продолжения из предыдущего ответа или null для первой страницы.
+     * @param limit             максимальное количество пользователей на странице.
+     * @return BaseResponse<List<UserResponse>> объект ответа со страницей пользователей и токеном следующей страницы.
+     * @throws RuntimeException если администратор не найден, не имеет прав или параметры страницы некорректны.
+     */
+    @Override
+    public BaseResponse<List<UserResponse>> findPage(Long adminId, String continuationToken, int limit) {
+        ContinuationToken.validatePageSize(limit);
+        Long afterId = ContinuationToken.decode(continuationToken);
+        Optional<Users> optionalAdmin = usersRepository.findById(adminId);
+        if (optionalAdmin.isEmpty()) {
+            throw new RuntimeException("Admin not found");
+        }
 
         if (optionalAdmin.get().getRole() == Role.USER) {
             throw new RuntimeException("Forbidden");
         }
-        usersRepository.delete(userId);
-        return new BaseResponse<>("User deleted", null);
+
+        List<Users> users = usersRepository.findPage(afterId, limit + 1);
+        String nextToken = null;
+        if (users.size() > limit) {
+            users = users.subList(0, limit);
+            nextToken = ContinuationToken.encode(users.get(limit - 1).getId());
+        }
+        List<UserResponse> page = users.stream()
+                .map(user -> new UserResponse(user.getId(), user.getName(), user.getEmail()))
+                .toList();
+        return new BaseResponse<>("Users found", page, nextToken);
     }
 
     /**
@@ -133,12 +203,41 @@ public class UsersServiceImpl implements UsersService {
      */
     @Override
     public void setAdminRole(String email) {
-        Optional<Users> optionalUser = usersRepository.findByEmail(email);
-        if (optionalUser.isEmpty()) {
-            throw new RuntimeException("User not found");
-        }
-        Users users = optionalUser.get();
-        users.setRole(Role.ADMIN);
-        usersRepository.update(users);
+        inTransaction(() -> {
+            Optional<Users> optionalUser = usersRepository.findByEmail(email);
+            if (optionalUser.isEmpty()) {
+                throw new RuntimeException("User not found");
+            }
+            Long id = optionalUser.get().getId();
+            Users users = transactionTemplate == null ? optionalUser.get() : findForUpdate(List.of(id)).get(id);
+            if (users == null) {
+                throw new RuntimeException("User not found");
+            }
+            users.setRole(Role.ADMIN);
+            return usersRepository.update(users);
+        });
+    }
+
+    /**
+     * Находит пользователей, которых операция проверяет и изменяет. В транзакции их строки
+     * блокируются до ее завершения, поэтому роль, блокировка и данные пользователей
+     * не могут измениться между проверкой и записью.
+     *
+     * @param ids идентификаторы пользователей.
+     * @return пользователи по идентификаторам.
+     */
+    private Map<Long, Users> findForUpdate(Collection<Long> ids) {
+        return transactionTemplate == null ? usersRepository.findAllByIds(ids) : usersRepository.findAllByIdsForUpdate(ids);
+    }
+
+    /**
+     * Выполняет действие в транзакции, если сервису передан шаблон транзакций.
+     *
+     * @param action действие, обращающееся к репозиторию.
+     * @param <T>    тип результата.
+     * @return результат действия.
+     */
+    private <T> T inTransaction(Supplier<T> action) {
+        return transactionTemplate == null ? action.get() : transactionTemplate.execute(action);
     }
 }
\ No newline at end of file
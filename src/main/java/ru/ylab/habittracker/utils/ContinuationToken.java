@@ -0,0 +1,62 @@
+package ru.ylab.habittracker.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Токен продолжения для постраничной выборки по ключу.
+ *
+ * <p>Токен содержит идентификатор последней выданной записи; следующая страница
+ * начинается с записей, идентификатор которых больше него. Значение кодируется
+ * в Base64, чтобы клиент передавал его обратно без разбора.</p>
+ */
+public final class ContinuationToken {
+    /**
+     * Максимальное количество записей на одной странице.
+     */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private ContinuationToken() {
+    }
+
+    /**
+     * Кодирует идентификатор последней записи страницы в токен.
+     *
+     * @param lastId идентификатор последней записи страницы
+     * @return токен продолжения
+     */
+    public static String encode(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Извлекает идентификатор последней записи из токена.
+     *
+     * @param token токен продолжения или null для первой страницы
+     * @return идентификатор последней записи или null для первой страницы
+     * @throws IllegalArgumentException если токен поврежден
+     */
+    public static Long decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+    }
+
+    /**
+     * Проверяет размер страницы.
+     *
+     * @param limit запрошенное количество записей
+     * @throws IllegalArgumentException если размер страницы вне диапазона от 1 до {@link #MAX_PAGE_SIZE}
+     */
+    public static void validatePageSize(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+}
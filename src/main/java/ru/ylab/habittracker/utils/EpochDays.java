@@ -0,0 +1,96 @@
+package ru.ylab.habittracker.utils;
+
+import ru.ylab.habittracker.models.StreakInterval;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Операции над отсортированными по возрастанию массивами дней в виде {@link LocalDate#toEpochDay()}.
+ *
+ * <p>Подсчет дней в диапазоне выполняется двумя двоичными поисками, серия — проходом
+ * по массиву от найденного дня назад; эти методы не создают объектов. {@link #streaks(int[])}
+ * создает по объекту на каждую серию, но не на каждый день.</p>
+ */
+public final class EpochDays {
+
+    private EpochDays() {
+    }
+
+    /**
+     * Подсчитывает дни, попадающие в период.
+     *
+     * @param sortedDays отсортированный массив дней без повторов.
+     * @param startDate  начало периода.
+     * @param endDate    конец периода.
+     * @return количество дней в периоде включительно.
+     */
+    public static int countInRange(int[] sortedDays, LocalDate startDate, LocalDate endDate) {
+        long start = startDate.toEpochDay();
+        long end = endDate.toEpochDay();
+        if (start > end) {
+            return 0;
+        }
+        return lowerBound(sortedDays, end + 1) - lowerBound(sortedDays, start);
+    }
+
+    /**
+     * Вычисляет серию подряд идущих дней, заканчивающуюся указанной датой.
+     *
+     * @param sortedDays отсортированный массив дней без повторов.
+     * @param date       последний день серии.
+     * @return длина серии; 0, если дня нет в массиве.
+     */
+    public static int streakEndingAt(int[] sortedDays, LocalDate date) {
+        long day = date.toEpochDay();
+        int index = lowerBound(sortedDays, day);
+        if (index == sortedDays.length || sortedDays[index] != day) {
+            return 0;
+        }
+        int start = index;
+        while (start > 0 && sortedDays[start - 1] == sortedDays[start] - 1) {
+            --start;
+        }
+        return index - start + 1;
+    }
+
+    /**
+     * Выделяет серии подряд идущих дней за один проход по массиву.
+     *
+     * @param sortedDays отсортированный массив дней без повторов.
+     * @return серии по возрастанию дат.
+     */
+    public static List<StreakInterval> streaks(int[] sortedDays) {
+        List<StreakInterval> streaks = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= sortedDays.length; i++) {
+            if (i == sortedDays.length || sortedDays[i] != sortedDays[i - 1] + 1) {
+                streaks.add(new StreakInterval(LocalDate.ofEpochDay(sortedDays[start]), LocalDate.ofEpochDay(sortedDays[i - 1])));
+                start = i;
+            }
+        }
+        return streaks;
+    }
+
+    /**
+     * Находит позицию первого дня, не меньшего указанного.
+     *
+     * @param sortedDays отсортированный массив дней.
+     * @param day        искомый день.
+     * @return индекс первого элемента {@code >= day} или длина массива.
+     */
+    public static int lowerBound(int[] sortedDays, long day) {
+        int low = 0;
+        int high = sortedDays.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedDays[middle] < day) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,131 @@
+package ru.ylab.habittracker.utils;
+
+import ru.ylab.habittracker.models.StreakInterval;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Операции над сериями еженедельных привычек, выделенными по неделям ISO (с понедельника).
+ *
+ * <p>Серия недель задается {@link StreakInterval}, начинающимся в понедельник первой недели
+ * и заканчивающимся в воскресенье последней; длина серии — количество недель. Такие серии
+ * возвращает запрос, группирующий выполнения через {@code date_trunc('week', ...)},
+ * поэтому вычисления ведутся по строке на серию, а не по строке на выполнение.</p>
+ */
+public final class IsoWeeks {
+
+    private IsoWeeks() {
+    }
+
+    /**
+     * Возвращает понедельник недели, содержащей дату.
+     *
+     * @param date дата.
+     * @return первый день недели ISO.
+     */
+    public static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    /**
+     * Выделяет серии подряд идущих недель с выполнением за один проход по дням выполнения.
+     *
+     * @param sortedDays дни выполнения по возрастанию в виде {@link LocalDate#toEpochDay()}.
+     * @return серии недель по возрастанию дат.
+     */
+    public static List<StreakInterval> streaks(int[] sortedDays) {
+        List<StreakInterval> streaks = new ArrayList<>();
+        long firstWeek = 0;
+        long lastWeek = 0;
+        for (int i = 0; i < sortedDays.length; i++) {
+            long week = sortedDays[i] - Math.floorMod(sortedDays[i] + 3, 7);
+            if (i == 0) {
+                firstWeek = week;
+            } else if (week > lastWeek + 7) {
+                streaks.add(weeklyStreak(firstWeek, lastWeek));
+                firstWeek = week;
+            }
+            lastWeek = week;
+        }
+        if (sortedDays.length > 0) {
+            streaks.add(weeklyStreak(firstWeek, lastWeek));
+        }
+        return streaks;
+    }
+
+    /**
+     * Подсчитывает недели ISO, затрагиваемые периодом.
+     *
+     * @param startDate начало периода.
+     * @param endDate   конец периода.
+     * @return количество недель, хотя бы один день которых входит в период.
+     */
+    public static long weeksInPeriod(LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            return 0;
+        }
+        return ChronoUnit.WEEKS.between(weekStart(startDate), weekStart(endDate)) + 1;
+    }
+
+    /**
+     * Подсчитывает недели с выполнением, попадающие в период.
+     *
+     * @param weeklyStreaks серии недель по возрастанию дат.
+     * @param startDate     начало периода.
+     * @param endDate       конец периода.
+     * @return количество недель периода, в которых привычка выполнялась.
+     */
+    public static long countCompletedWeeks(List<StreakInterval> weeklyStreaks, LocalDate startDate, LocalDate endDate) {
+        LocalDate firstWeek = weekStart(startDate);
+        LocalDate lastWeek = weekStart(endDate);
+        long completedWeeks = 0;
+        for (StreakInterval streak : weeklyStreaks) {
+            LocalDate from = max(streak.startDate(), firstWeek);
+            LocalDate to = min(weekStart(streak.endDate()), lastWeek);
+            if (!from.isAfter(to)) {
+                completedWeeks += ChronoUnit.WEEKS.between(from, to) + 1;
+            }
+        }
+        return completedWeeks;
+    }
+
+    /**
+     * Вычисляет серию подряд идущих недель с выполнением, заканчивающуюся неделей указанной даты.
+     *
+     * @param weeklyStreaks серии недель по возрастанию дат.
+     * @param date          дата, неделя которой завершает серию.
+     * @return длина серии в неделях; 0, если на этой неделе привычка не выполнялась.
+     */
+    public static int streakEndingAt(List<StreakInterval> weeklyStreaks, LocalDate date) {
+        LocalDate week = weekStart(date);
+        for (int i = weeklyStreaks.size() - 1; i >= 0; i--) {
+            StreakInterval streak = weeklyStreaks.get(i);
+            if (streak.startDate().isAfter(week)) {
+                continue;
+            }
+            if (streak.endDate().isBefore(week)) {
+                return 0;
+            }
+            return (int) ChronoUnit.WEEKS.between(streak.startDate(), week) + 1;
+        }
+        return 0;
+    }
+
+    private static StreakInterval weeklyStreak(long firstWeek, long lastWeek) {
+        return new StreakInterval(LocalDate.ofEpochDay(firstWeek), LocalDate.ofEpochDay(lastWeek + 6),
+                (int) ((lastWeek - firstWeek) / 7) + 1);
+    }
+
+    private static LocalDate max(LocalDate first, LocalDate second) {
+        return first.isAfter(second) ? first : second;
+    }
+
+    private static LocalDate min(LocalDate first, LocalDate second) {
+        return first.isBefore(second) ? first : second;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.ylab.habittracker.utils;
+
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Периоды, по которым выполнения привычек предварительно агрегируются в сводные таблицы.
+ */
+public enum RollupPeriod {
+    WEEK,
+    MONTH;
+
+    /**
+     * Возвращает первый день периода, содержащего дату: понедельник недели ISO или первое число месяца.
+     *
+     * @param date дата
+     * @return начало периода
+     */
+    public LocalDate start(LocalDate date) {
+        return this == WEEK ? IsoWeeks.weekStart(date) : date.with(TemporalAdjusters.firstDayOfMonth());
+    }
+}
@@ -0,0 +1,80 @@
+package ru.ylab.habbittracker.jobs;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ylab.habittracker.jobs.AnalyticsAccumulator;
+import ru.ylab.habittracker.models.AnalyticsSummary;
+import ru.ylab.habittracker.models.CompletionActivity;
+import ru.ylab.habittracker.utils.Frequency;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalyticsAccumulatorTest {
+    private static final LocalDate MONDAY = LocalDate.of(2024, 10, 21);
+    private static final LocalDate SUNDAY = MONDAY.plusDays(6);
+    private static final LocalDate CREATED = MONDAY.minusDays(30);
+
+    @Test
+    @DisplayName("Given partitions of habits When merged Then totals, histogram and top habits are combined")
+    void givenPartitionsOfHabits_WhenMerged_ThenTotalsHistogramAndTopHabitsAreCombined() {
+        AnalyticsAccumulator first = new AnalyticsAccumulator(MONDAY, SUNDAY, 2);
+        first.accept(new CompletionActivity(1, CREATED, Frequency.DAILY, MONDAY));
+        first.accept(new CompletionActivity(1, CREATED, Frequency.DAILY, MONDAY.plusDays(1)));
+        first.accept(new CompletionActivity(2, CREATED, Frequency.DAILY, null));
+        AnalyticsAccumulator second = new AnalyticsAccumulator(MONDAY, SUNDAY, 2);
+        second.accept(new CompletionActivity(3, CREATED, Frequency.DAILY, MONDAY));
+        second.accept(new CompletionActivity(4, CREATED, Frequency.WEEKLY, MONDAY));
+        second.accept(new CompletionActivity(4, CREATED, Frequency.WEEKLY, SUNDAY));
+
+        AnalyticsSummary summary = first.merge(second).toSummary(Map.of(MONDAY, 2, MONDAY.plusDays(1), 1));
+
+        assertEquals(5, summary.totalCompletions());
+        assertEquals(4, summary.habits());
+        assertEquals(7, summary.dailyActiveUsers().size());
+        assertEquals(2, summary.dailyActiveUsers().get(MONDAY));
+        assertEquals(1, summary.dailyActiveUsers().get(MONDAY.plusDays(1)));
+        assertEquals(0, summary.dailyActiveUsers().get(MONDAY.plusDays(2)));
+        assertEquals(List.of(1L, 1L, 1L, 0L, 0L, 0L, 0L, 0L, 0L, 1L), summary.completionRateHistogram());
+        assertEquals(List.of(new AnalyticsSummary.TopHabit(1, 2), new AnalyticsSummary.TopHabit(4, 2)), summary.topHabits());
+    }
+
+    @Test
+    @DisplayName("Given habits created inside the period When summarized Then completion rate uses their own active span")
+    void givenHabitsCreatedInsidePeriod_WhenSummarized_ThenCompletionRateUsesTheirOwnActiveSpan() {
+        LocalDate nextSunday = SUNDAY.plusDays(7);
+        AnalyticsAccumulator accumulator = new AnalyticsAccumulator(MONDAY, nextSunday, 1);
+        accumulator.accept(new CompletionActivity(1, nextSunday.minusDays(1), Frequency.DAILY, nextSunday.minusDays(1)));
+        accumulator.accept(new CompletionActivity(1, nextSunday.minusDays(1), Frequency.DAILY, nextSunday));
+        accumulator.accept(new CompletionActivity(2, SUNDAY.plusDays(1), Frequency.WEEKLY, SUNDAY.plusDays(3)));
+        accumulator.accept(new CompletionActivity(3, nextSunday.plusDays(1), Frequency.DAILY, null));
+
+        AnalyticsSummary summary = accumulator.toSummary(Map.of());
+
+        assertEquals(2, summary.habits());
+        assertEquals(List.of(0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 2L), summary.completionRateHistogram());
+        assertEquals(14, summary.dailyActiveUsers().size());
+    }
+
+    @Test
+    @DisplayName("Given accumulators of different periods When merged Then merge is rejected")
+    void givenAccumulatorsOfDifferentPeriods_WhenMerged_ThenMergeIsRejected() {
+        AnalyticsAccumulator first = new AnalyticsAccumulator(MONDAY, SUNDAY, 1);
+        AnalyticsAccumulator second = new AnalyticsAccumulator(MONDAY, SUNDAY.plusDays(1), 1);
+
+        assertThrows(IllegalArgumentException.class, () -> first.merge(second));
+    }
+
+    @Test
+    @DisplayName("Given period longer than the limit When accumulator is created Then period is rejected")
+    void givenPeriodLongerThanLimit_WhenAccumulatorIsCreated_ThenPeriodIsRejected() {
+        LocalDate lastAllowedDay = MONDAY.plusDays(AnalyticsAccumulator.MAX_PERIOD_DAYS - 1);
+
+        assertEquals(AnalyticsAccumulator.MAX_PERIOD_DAYS,
+                new AnalyticsAccumulator(MONDAY, lastAllowedDay, 1).toSummary(Map.of()).dailyActiveUsers().size());
+        assertThrows(IllegalArgumentException.class, () -> new AnalyticsAccumulator(MONDAY, lastAllowedDay.plusDays(1), 1));
+    }
+}
@@ -0,0 +1,112 @@
+package ru.ylab.habbittracker.jobs;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ylab.habittracker.jobs.HabitCompletionPartitionJob;
+import ru.ylab.habittracker.repositories.HabitCompletionPartitionRepository;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HabitCompletionPartitionJobTest {
+    private static final YearMonth CURRENT = YearMonth.of(2024, 10);
+
+    @Test
+    @DisplayName("Given some partitions exist When createMissing Then only absent months up to the horizon are created")
+    void givenSomePartitionsExist_WhenCreateMissing_ThenOnlyAbsentMonthsUpToHorizonAreCreated() {
+        InMemoryPartitions partitions = new InMemoryPartitions(CURRENT.minusMonths(1), CURRENT, CURRENT.plusMonths(2));
+
+        int created = new HabitCompletionPartitionJob(partitions, 3, 0).createMissing(CURRENT);
+
+        assertEquals(2, created);
+        assertEquals(List.of(CURRENT.plusMonths(1), CURRENT.plusMonths(3)), partitions.created);
+        assertEquals(0, new HabitCompletionPartitionJob(partitions, 3, 0).createMissing(CURRENT));
+    }
+
+    @Test
+    @DisplayName("Given retention policy When dropExpired Then only months before the retention window are dropped")
+    void givenRetentionPolicy_WhenDropExpired_ThenOnlyMonthsBeforeRetentionWindowAreDropped() {
+        InMemoryPartitions partitions = new InMemoryPartitions(CURRENT.minusMonths(13), CURRENT.minusMonths(12),
+                CURRENT.minusMonths(11), CURRENT, CURRENT.plusMonths(1));
+
+        int dropped = new HabitCompletionPartitionJob(partitions, 1, 12).dropExpired(CURRENT);
+
+        assertEquals(2, dropped);
+        assertEquals(List.of(CURRENT.minusMonths(11), CURRENT, CURRENT.plusMonths(1)), partitions.findPartitions());
+        assertEquals(0, new HabitCompletionPartitionJob(partitions, 1, 0).dropExpired(CURRENT.plusYears(5)));
+    }
+
+    @Test
+    @DisplayName("Given expired partitions When dropExpired Then drop callback runs only when something was dropped")
+    void givenExpiredPartitions_WhenDropExpired_ThenDropCallbackRunsOnlyWhenSomethingWasDropped() {
+        InMemoryPartitions partitions = new InMemoryPartitions(CURRENT.minusMonths(2), CURRENT);
+        AtomicInteger callbacks = new AtomicInteger();
+        HabitCompletionPartitionJob job = new HabitCompletionPartitionJob(partitions, 0, 2, callbacks::incrementAndGet);
+
+        assertEquals(1, job.dropExpired(CURRENT));
+        assertEquals(1, callbacks.get());
+        assertEquals(0, job.dropExpired(CURRENT));
+        assertEquals(1, callbacks.get());
+    }
+
+    @Test
+    @DisplayName("Given closed months When clusterClosed Then current and previous months keep append order")
+    void givenClosedMonths_WhenClusterClosed_ThenCurrentAndPreviousMonthsKeepAppendOrder() {
+        InMemoryPartitions partitions = new InMemoryPartitions(CURRENT.minusMonths(3), CURRENT.minusMonths(2),
+                CURRENT.minusMonths(1), CURRENT);
+
+        int clustered = new HabitCompletionPartitionJob(partitions, 0, 0).clusterClosed(CURRENT);
+
+        assertEquals(2, clustered);
+        assertEquals(List.of(CURRENT.minusMonths(1)), partitions.clusteredBefore);
+    }
+
+    @Test
+    @DisplayName("Given negative settings When job is created Then throw IllegalArgumentException")
+    void givenNegativeSettings_WhenJobIsCreated_ThenThrowIllegalArgumentException() {
+        InMemoryPartitions partitions = new InMemoryPartitions();
+
+        assertThrows(IllegalArgumentException.class, () -> new HabitCompletionPartitionJob(partitions, -1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HabitCompletionPartitionJob(partitions, 0, -1));
+    }
+
+    private static class InMemoryPartitions implements HabitCompletionPartitionRepository {
+        private final TreeSet<YearMonth> months = new TreeSet<>();
+        private final List<YearMonth> created = new ArrayList<>();
+        private final List<YearMonth> clusteredBefore = new ArrayList<>();
+
+        InMemoryPartitions(YearMonth... existing) {
+            months.addAll(List.of(existing));
+        }
+
+        @Override
+        public List<YearMonth> findPartitions() {
+            return new ArrayList<>(months);
+        }
+
+        @Override
+        public boolean createPartition(YearMonth month) {
+            if (!months.add(month)) {
+                return false;
+            }
+            created.add(month);
+            return true;
+        }
+
+        @Override
+        public boolean dropPartition(YearMonth month) {
+            return months.remove(month);
+        }
+
+        @Override
+        public int clusterPartitions(YearMonth before) {
+            clusteredBefore.add(before);
+            return months.headSet(before).size();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ru.ylab.habbittracker.models;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ylab.habittracker.dto.StreakHistoryResponse;
+import ru.ylab.habittracker.models.CompletionCalendar;
+import ru.ylab.habittracker.models.CompletionStatistics;
+import ru.ylab.habittracker.models.StreakInterval;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CompletionCalendarTest {
+    private static final LocalDate BASE = LocalDate.of(2020, 1, 1);
+
+    @Test
+    @DisplayName("Given completions across word boundaries When countInRange Then only days in range are counted")
+    void givenCompletionsAcrossWordBoundaries_WhenCountInRange_ThenOnlyDaysInRangeAreCounted() {
+        int base = (int) BASE.toEpochDay();
+        CompletionCalendar calendar = CompletionCalendar.of(BASE, new int[]{base, base + 63, base + 64, base + 200});
+
+        assertEquals(4, calendar.count());
+        assertEquals(2, calendar.countInRange(BASE.plusDays(63), BASE.plusDays(64)));
+        assertEquals(3, calendar.countInRange(BASE.minusDays(10), BASE.plusDays(199)));
+        assertEquals(0, calendar.countInRange(BASE.plusDays(201), BASE.plusDays(500)));
+        assertEquals(0, calendar.countInRange(BASE.minusDays(10), BASE.minusDays(1)));
+    }
+
+    @Test
+    @DisplayName("Given streak spanning several words When streakEndingAt Then whole streak is counted")
+    void givenStreakSpanningSeveralWords_WhenStreakEndingAt_ThenWholeStreakIsCounted() {
+        int base = (int) BASE.toEpochDay();
+        CompletionCalendar calendar = CompletionCalendar.of(BASE, IntStream.rangeClosed(base + 10, base + 150).toArray());
+
+        assertEquals(141, calendar.streakEndingAt(BASE.plusDays(150)));
+        assertEquals(55, calendar.streakEndingAt(BASE.plusDays(64)));
+        assertEquals(0, calendar.streakEndingAt(BASE.plusDays(151)));
+        assertEquals(0, calendar.streakEndingAt(BASE.minusDays(1)));
+    }
+
+    @Test
+    @DisplayName("Given runs across word boundaries When streaks Then every run is returned in order")
+    void givenRunsAcrossWordBoundaries_WhenStreaks_ThenEveryRunIsReturnedInOrder() {
+        int base = (int) BASE.toEpochDay();
+        int[] days = IntStream.concat(IntStream.of(base + 3), IntStream.rangeClosed(base + 60, base + 191)).toArray();
+        CompletionCalendar calendar = CompletionCalendar.of(BASE, days);
+
+        List<StreakInterval> streaks = calendar.streaks();
+
+        assertEquals(List.of(
+                new StreakInterval(BASE.plusDays(3), BASE.plusDays(3)),
+                new StreakInterval(BASE.plusDays(60), BASE.plusDays(191))), streaks);
+        assertEquals(132, streaks.get(1).length());
+        assertTrue(CompletionCalendar.empty(BASE).streaks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given runs inside and around the period When statistics Then it matches the separate calculations")
+    void givenRunsInsideAndAroundPeriod_WhenStatistics_ThenItMatchesTheSeparateCalculations() {
+        int base = (int) BASE.toEpochDay();
+        int[] days = IntStream.concat(IntStream.of(base + 3, base + 5),
+                IntStream.concat(IntStream.rangeClosed(base + 60, base + 191), IntStream.rangeClosed(base + 195, base + 199))).toArray();
+        CompletionCalendar calendar = CompletionCalendar.of(BASE, days);
+        StreakHistoryResponse history = StreakHistoryResponse.of(calendar.streaks());
+
+        CompletionStatistics statistics = calendar.statistics(BASE.plusDays(150), BASE.plusDays(196), BASE.plusDays(198));
+
+        assertEquals(new CompletionStatistics(calendar.countInRange(BASE.plusDays(150), BASE.plusDays(196)),
+                calendar.streakEndingAt(BASE.plusDays(198)), history.longestStreak(), history.averageStreak()), statistics);
+        assertEquals(new CompletionStatistics(44, 4, 132, 34.75), statistics);
+        assertEquals(new CompletionStatistics(0, 0, 0, 0), CompletionCalendar.empty(BASE).statistics(BASE, BASE, BASE));
+    }
+
+    @Test
+    @DisplayName("Given many streaks When statistics Then it allocates far less than building the streak list")
+    void givenManyStreaks_WhenStatistics_ThenItAllocatesFarLessThanBuildingTheStreakList() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int base = (int) BASE.toEpochDay();
+        CompletionCalendar calendar = CompletionCalendar.of(BASE, IntStream.iterate(base, day -> day + 2).limit(1825).toArray());
+        LocalDate today = BASE.plusDays(3648);
+        for (int i = 0; i < 1000; i++) {
+            calendar.statistics(BASE, today, today);
+            StreakHistoryResponse.of(calendar.streaks());
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        CompletionStatistics statistics = calendar.statistics(BASE, today, today);
+        long singlePass = threads.getThreadAllocatedBytes(threadId) - before;
+        before = threads.getThreadAllocatedBytes(threadId);
+        StreakHistoryResponse history = StreakHistoryResponse.of(calendar.streaks());
+        long streakList = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(history.longestStreak(), statistics.longestStreak());
+        assertTrue(singlePass * 10 < streakList, "single pass: " + singlePass + " B, streak list: " + streakList + " B");
+    }
+
+    @Test
+    @DisplayName("Given day before base date When withDay Then calendar is rebased and keeps existing days")
+    void givenDayBeforeBaseDate_WhenWithDay_ThenCalendarIsRebasedAndKeepsExistingDays() {
+        CompletionCalendar calendar = CompletionCalendar.empty(BASE).withDay(BASE).withDay(BASE.plusDays(1));
+
+        CompletionCalendar rebased = calendar.withDay(BASE.minusDays(100));
+
+        assertEquals(BASE.minusDays(100), rebased.getBaseDate());
+        assertEquals(3, rebased.count());
+        assertTrue(rebased.contains(BASE.minusDays(100)));
+        assertEquals(2, rebased.streakEndingAt(BASE.plusDays(1)));
+        assertFalse(calendar.contains(BASE.minusDays(100)));
+    }
+
+    @Test
+    @DisplayName("Given calendar When serialized to bytes Then it is restored unchanged")
+    void givenCalendar_WhenSerializedToBytes_ThenItIsRestoredUnchanged() {
+        int base = (int) BASE.toEpochDay();
+        CompletionCalendar calendar = CompletionCalendar.of(BASE, new int[]{base + 5, base + 70, base + 3650});
+
+        CompletionCalendar restored = CompletionCalendar.fromBytes(calendar.toBytes());
+
+        assertEquals(calendar, restored);
+        assertArrayEquals(new int[]{base + 5, base + 70, base + 3650}, restored.toEpochDays());
+        assertThrows(IllegalArgumentException.class, () -> CompletionCalendar.fromBytes(new byte[3]));
+    }
+}
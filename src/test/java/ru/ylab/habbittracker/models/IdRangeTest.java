@@ -0,0 +1,21 @@
+package ru.ylab.habbittracker.models;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ylab.habittracker.models.IdRange;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdRangeTest {
+
+    @Test
+    @DisplayName("Given id range When split Then parts cover the range without overlaps")
+    void givenIdRange_WhenSplit_ThenPartsCoverRangeWithoutOverlaps() {
+        assertEquals(List.of(new IdRange(1, 4), new IdRange(5, 8), new IdRange(9, 10)), new IdRange(1, 10).split(3));
+        assertEquals(List.of(new IdRange(5, 5), new IdRange(6, 6)), new IdRange(5, 6).split(8));
+        assertEquals(List.of(new IdRange(7, 7)), new IdRange(7, 7).split(4));
+        assertThrows(IllegalArgumentException.class, () -> new IdRange(2, 1));
+    }
+}
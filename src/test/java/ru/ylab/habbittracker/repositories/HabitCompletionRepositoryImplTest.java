@@ -9,50 +9,77 @@ import liquibase.resource.ClassLoaderResourceAccessor;
 import org.junit.jupiter.api.*;
 import org.testcontainers.containers.PostgreSQLContainer;
 import ru.ylab.habittracker.app.DatabaseConnection;
+import ru.ylab.habittracker.models.CompletionActivity;
+import ru.ylab.habittracker.models.Habit;
 import ru.ylab.habittracker.models.HabitCompletion;
+import ru.ylab.habittracker.models.HabitStreak;
+import ru.ylab.habittracker.models.IdRange;
+import ru.ylab.habittracker.repositories.HabitCompletionPartitionRepository;
 import ru.ylab.habittracker.repositories.HabitCompletionRepository;
+import ru.ylab.habittracker.repositories.HabitsRepository;
+import ru.ylab.habittracker.repositories.impl.HabitCompletionPartitionRepositoryImpl;
 import ru.ylab.habittracker.repositories.impl.HabitCompletionRepositoryImpl;
+import ru.ylab.habittracker.repositories.impl.HabitsRepositoryImpl;
+import ru.ylab.habittracker.utils.Frequency;
+import ru.ylab.habittracker.utils.RollupPeriod;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class HabitCompletionRepositoryImplTest {
     public static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:13");
 
+    private static DatabaseConnection databaseConnection;
     private static HabitCompletionRepository habitCompletionRepository;
+    private static HabitsRepository habitsRepository;
+    private static HabitCompletionPartitionRepository partitionRepository;
 
     @BeforeAll
     static void beforeAll() throws LiquibaseException, SQLException {
         postgres.start();
-        Connection connection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()).getConnection();
-        Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
-        Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
-        liquibase.update();
+        try (DatabaseConnection migrationConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Connection connection = migrationConnection.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
+            liquibase.update();
+        }
     }
 
     @BeforeEach
     void setUp() {
-        DatabaseConnection databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
         try (Connection connection = databaseConnection.getConnection();
              Statement statement = connection.createStatement()) {
             statement.execute("DROP SEQUENCE IF EXISTS habit_tracking_schema.habit_completion_sequence CASCADE");
             statement.execute("DROP TABLE IF EXISTS habit_tracking_schema.habit_completion CASCADE");
 
             statement.executeUpdate("CREATE SEQUENCE IF NOT EXISTS habit_tracking_schema.habit_completion_sequence");
-            statement.executeUpdate("CREATE TABLE habit_tracking_schema.habit_completion (id BIGINT PRIMARY KEY NOT NULL DEFAULT nextval('habit_tracking_schema.habit_completion_sequence')," +
+            statement.executeUpdate("CREATE TABLE habit_tracking_schema.habit_completion (id BIGINT NOT NULL DEFAULT nextval('habit_tracking_schema.habit_completion_sequence')," +
                     "    completion_date DATE NOT NULL," +
                     "    habit_id BIGINT NOT NULL," +
-                    "    FOREIGN KEY (habit_id) REFERENCES habit_tracking_schema.habit(id) ON DELETE CASCADE)");
+                    "    PRIMARY KEY (id, completion_date)," +
+                    "    FOREIGN KEY (habit_id) REFERENCES habit_tracking_schema.habit(id) ON DELETE CASCADE) PARTITION BY RANGE (completion_date)");
+            statement.executeUpdate("CREATE TABLE habit_tracking_schema.habit_completion_default PARTITION OF habit_tracking_schema.habit_completion DEFAULT");
+            statement.executeUpdate("CREATE UNIQUE INDEX ux_habit_completion_habit_id_completion_date ON habit_tracking_schema.habit_completion (habit_id, completion_date)");
+            statement.executeUpdate("UPDATE habit_tracking_schema.habit SET current_streak = 0, longest_streak = 0, last_completed_date = NULL");
+            statement.executeUpdate("TRUNCATE habit_tracking_schema.habit_completion_weekly, habit_tracking_schema.habit_completion_monthly");
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
         habitCompletionRepository = new HabitCompletionRepositoryImpl(databaseConnection);
+        habitsRepository = new HabitsRepositoryImpl(databaseConnection);
+        partitionRepository = new HabitCompletionPartitionRepositoryImpl(databaseConnection);
     }
 
     @Test
@@ -99,6 +126,334 @@ public class HabitCompletionRepositoryImplTest {
         assertNull(result);
     }
 
+    @Test
+    @DisplayName("Given completion for the same date When saveIfAbsent Then return empty")
+    void givenCompletionForSameDate_WhenSaveIfAbsent_ThenReturnEmpty() {
+        HabitCompletion habitCompletion = new HabitCompletion(null, LocalDate.now(), 1L);
+
+        Optional<HabitCompletion> first = habitCompletionRepository.saveIfAbsent(habitCompletion);
+        Optional<HabitCompletion> second = habitCompletionRepository.saveIfAbsent(habitCompletion);
+
+        assertTrue(first.isPresent());
+        assertNotNull(first.get().getId());
+        assertFalse(second.isPresent());
+        assertEquals(1, habitCompletionRepository.findByHabitId(1L).size());
+    }
+
+    @Test
+    @DisplayName("Given completion of non-existing habit When saveIfAbsent Then the error is not reported as a duplicate")
+    void givenCompletionOfNonExistingHabit_WhenSaveIfAbsent_ThenErrorIsNotReportedAsDuplicate() {
+        HabitCompletion habitCompletion = new HabitCompletion(null, LocalDate.now(), 999L);
+
+        assertThrows(IllegalStateException.class, () -> habitCompletionRepository.saveIfAbsent(habitCompletion));
+        assertTrue(habitCompletionRepository.findByHabitId(999L).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given several completions When saveAll Then return completions with generated IDs in input order")
+    void givenSeveralCompletions_WhenSaveAll_ThenReturnCompletionsWithIdsInOrder() {
+        List<HabitCompletion> completions = List.of(
+                new HabitCompletion(null, LocalDate.of(2024, 10, 1), 1L),
+                new HabitCompletion(null, LocalDate.of(2024, 10, 2), 1L),
+                new HabitCompletion(null, LocalDate.of(2024, 10, 3), 1L));
+
+        List<HabitCompletion> saved = habitCompletionRepository.saveAll(completions);
+
+        assertEquals(3, saved.size());
+        for (int i = 0; i < completions.size(); i++) {
+            assertNotNull(saved.get(i).getId());
+            assertEquals(completions.get(i).getCompletionDate(), saved.get(i).getCompletionDate());
+            assertEquals(saved.get(i), habitCompletionRepository.findById(saved.get(i).getId()).orElseThrow());
+        }
+    }
+
+    @Test
+    @DisplayName("Given completions with an invalid habit When saveAll Then nothing is saved")
+    void givenCompletionsWithInvalidHabit_WhenSaveAll_ThenNothingIsSaved() {
+        List<HabitCompletion> completions = List.of(
+                new HabitCompletion(null, LocalDate.of(2024, 10, 1), 1L),
+                new HabitCompletion(null, LocalDate.of(2024, 10, 2), -1L));
+
+        List<HabitCompletion> saved = habitCompletionRepository.saveAll(completions);
+
+        assertTrue(saved.isEmpty());
+        assertEquals(0, habitCompletionRepository.findCompletionDaysByHabitId(1L).length);
+    }
+
+    @Test
+    @DisplayName("Given several completions When copyAll Then all rows are loaded")
+    void givenSeveralCompletions_WhenCopyAll_ThenAllRowsAreLoaded() {
+        List<HabitCompletion> completions = List.of(
+                new HabitCompletion(null, LocalDate.of(2024, 10, 1), 1L),
+                new HabitCompletion(null, LocalDate.of(2024, 10, 2), 1L));
+
+        long loaded = habitCompletionRepository.copyAll(completions);
+
+        assertEquals(2, loaded);
+        assertEquals(2, habitCompletionRepository.findCompletionDaysByHabitId(1L).length);
+    }
+
+    @Test
+    @DisplayName("Given completions saved out of order When findCompletionDaysByHabitId Then sorted epoch days are returned")
+    void givenCompletionsSavedOutOfOrder_WhenFindCompletionDaysByHabitId_ThenSortedEpochDaysAreReturned() {
+        LocalDate first = LocalDate.of(2024, 10, 1);
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, first.plusDays(2), 1L),
+                new HabitCompletion(null, first, 1L),
+                new HabitCompletion(null, first.plusDays(1), 1L)));
+
+        int[] days = habitCompletionRepository.findCompletionDaysByHabitId(1L);
+
+        int start = (int) first.toEpochDay();
+        assertArrayEquals(new int[]{start, start + 1, start + 2}, days);
+        assertEquals(0, habitCompletionRepository.findCompletionDaysByHabitId(-1L).length);
+    }
+
+    @Test
+    @DisplayName("Given consecutive completions When saveIfAbsent Then streak counters are advanced")
+    void givenConsecutiveCompletions_WhenSaveIfAbsent_ThenStreakCountersAreAdvanced() {
+        LocalDate first = LocalDate.of(2024, 10, 1);
+        habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, first, 1L));
+        habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, first.plusDays(1), 1L));
+        habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, first.plusDays(2), 1L));
+        habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, first.plusDays(5), 1L));
+
+        assertEquals(new HabitStreak(1L, Frequency.WEEKLY, 1, 3, first.plusDays(5)), habitsRepository.findStreakById(1L).orElseThrow());
+
+        habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, first.plusDays(4), 1L));
+
+        assertEquals(new HabitStreak(1L, Frequency.WEEKLY, 2, 3, first.plusDays(5)), habitsRepository.findStreakById(1L).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Given completions saved out of order and deleted When streak counters are read Then they match the history")
+    void givenCompletionsSavedOutOfOrderAndDeleted_WhenStreakCountersAreRead_ThenTheyMatchHistory() {
+        LocalDate first = LocalDate.of(2024, 10, 1);
+        List<HabitCompletion> saved = habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, first.plusDays(3), 1L),
+                new HabitCompletion(null, first, 1L),
+                new HabitCompletion(null, first.plusDays(1), 1L),
+                new HabitCompletion(null, first.plusDays(2), 1L)));
+
+        assertEquals(new HabitStreak(1L, Frequency.WEEKLY, 4, 4, first.plusDays(3)), habitsRepository.findStreakById(1L).orElseThrow());
+
+        habitCompletionRepository.delete(saved.get(3).getId());
+
+        assertEquals(new HabitStreak(1L, Frequency.WEEKLY, 1, 2, first.plusDays(3)), habitsRepository.findStreakById(1L).orElseThrow());
+        assertEquals(1, habitCompletionRepository.recalculateStreaks(List.of(1L)));
+        assertEquals(new HabitStreak(1L, Frequency.WEEKLY, 1, 2, first.plusDays(3)), habitsRepository.findStreakById(1L).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Given completions marked one by one When findCompletionCounts Then weekly and monthly rollups are incremented")
+    void givenCompletionsMarkedOneByOne_WhenFindCompletionCounts_ThenWeeklyAndMonthlyRollupsAreIncremented() {
+        LocalDate monday = LocalDate.of(2024, 10, 28);
+        habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, monday, 1L));
+        habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, monday.plusDays(2), 1L));
+        habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, monday.plusDays(2), 1L));
+        habitCompletionRepository.save(new HabitCompletion(null, monday.plusDays(4), 1L));
+
+        assertEquals(Map.of(monday, 3),
+                habitCompletionRepository.findCompletionCounts(1L, RollupPeriod.WEEK, monday.plusDays(1), monday.plusDays(6)));
+        assertEquals(List.of(LocalDate.of(2024, 10, 1), LocalDate.of(2024, 11, 1)),
+                List.copyOf(habitCompletionRepository.findCompletionCounts(1L, RollupPeriod.MONTH, monday, monday.plusDays(30)).keySet()));
+        assertEquals(Map.of(LocalDate.of(2024, 10, 1), 2, LocalDate.of(2024, 11, 1), 1),
+                habitCompletionRepository.findCompletionCounts(1L, RollupPeriod.MONTH, monday, monday.plusDays(30)));
+        assertTrue(habitCompletionRepository.findCompletionCounts(1L, RollupPeriod.WEEK, monday.plusDays(7), monday.plusDays(30)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given completions saved in batch and deleted When findCompletionCounts Then rollups are rebuilt from the history")
+    void givenCompletionsSavedInBatchAndDeleted_WhenFindCompletionCounts_ThenRollupsAreRebuiltFromHistory() {
+        LocalDate monday = LocalDate.of(2024, 9, 30);
+        List<HabitCompletion> saved = habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, monday, 1L),
+                new HabitCompletion(null, monday.plusDays(1), 1L),
+                new HabitCompletion(null, monday.plusDays(7), 1L)));
+
+        assertEquals(Map.of(monday, 2, monday.plusDays(7), 1),
+                habitCompletionRepository.findCompletionCounts(1L, RollupPeriod.WEEK, monday, monday.plusDays(13)));
+
+        habitCompletionRepository.delete(saved.get(2).getId());
+
+        assertEquals(Map.of(monday, 2),
+                habitCompletionRepository.findCompletionCounts(1L, RollupPeriod.WEEK, monday, monday.plusDays(13)));
+        assertEquals(Map.of(LocalDate.of(2024, 9, 1), 1, LocalDate.of(2024, 10, 1), 1),
+                habitCompletionRepository.findCompletionCounts(1L, RollupPeriod.MONTH, monday, monday.plusDays(13)));
+        assertEquals(3, habitCompletionRepository.recalculateRollups(List.of(1L)));
+        assertEquals(0, habitCompletionRepository.recalculateRollups(List.of()));
+    }
+
+    @Test
+    @DisplayName("Given completions in the default partition When createPartition Then rows of the month are moved to the new partition")
+    void givenCompletionsInDefaultPartition_WhenCreatePartition_ThenRowsOfMonthAreMovedToNewPartition() {
+        YearMonth october = YearMonth.of(2024, 10);
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, october.atDay(1), 1L),
+                new HabitCompletion(null, october.atEndOfMonth(), 1L),
+                new HabitCompletion(null, october.plusMonths(1).atDay(1), 1L)));
+
+        assertTrue(partitionRepository.createPartition(october));
+        assertFalse(partitionRepository.createPartition(october));
+        assertTrue(partitionRepository.createPartition(october.plusMonths(1)));
+
+        assertEquals(List.of(october, october.plusMonths(1)), partitionRepository.findPartitions());
+        assertEquals(3, habitCompletionRepository.findCompletionDaysByHabitId(1L).length);
+        assertTrue(habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, october.atDay(15), 1L)).isPresent());
+        assertTrue(habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, october.atDay(15), 1L)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given monthly partitions When dropPartition Then rows of the month are removed and other months remain")
+    void givenMonthlyPartitions_WhenDropPartition_ThenRowsOfMonthAreRemovedAndOtherMonthsRemain() {
+        YearMonth september = YearMonth.of(2024, 9);
+        partitionRepository.createPartition(september);
+        partitionRepository.createPartition(september.plusMonths(1));
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, september.atDay(10), 1L),
+                new HabitCompletion(null, september.atDay(11), 1L),
+                new HabitCompletion(null, september.plusMonths(1).atDay(10), 1L)));
+
+        assertTrue(partitionRepository.dropPartition(september));
+        assertFalse(partitionRepository.dropPartition(september));
+
+        assertEquals(List.of(september.plusMonths(1)), partitionRepository.findPartitions());
+        assertEquals(1, habitCompletionRepository.findCompletionDaysByHabitId(1L).length);
+        assertTrue(habitCompletionRepository.findByHabitIdAndPeriod(1L, september.atDay(1), september.atEndOfMonth()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given a week spanning two months When dropPartition Then rollups keep only the remaining completions")
+    void givenWeekSpanningTwoMonths_WhenDropPartition_ThenRollupsKeepOnlyRemainingCompletions() {
+        YearMonth september = YearMonth.of(2024, 9);
+        partitionRepository.createPartition(september);
+        partitionRepository.createPartition(september.plusMonths(1));
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, LocalDate.of(2024, 9, 30), 1L),
+                new HabitCompletion(null, LocalDate.of(2024, 10, 2), 1L),
+                new HabitCompletion(null, LocalDate.of(2024, 10, 10), 1L)));
+
+        assertTrue(partitionRepository.dropPartition(september));
+
+        assertEquals(Map.of(LocalDate.of(2024, 9, 30), 1, LocalDate.of(2024, 10, 7), 1),
+                habitCompletionRepository.findCompletionCounts(1L, RollupPeriod.WEEK, september.atDay(1), LocalDate.of(2024, 10, 31)));
+        assertEquals(Map.of(LocalDate.of(2024, 10, 1), 2),
+                habitCompletionRepository.findCompletionCounts(1L, RollupPeriod.MONTH, september.atDay(1), LocalDate.of(2024, 10, 31)));
+    }
+
+    @Test
+    @DisplayName("Given closed and current month partitions When clusterPartitions Then only unclustered closed months are reordered")
+    void givenClosedAndCurrentMonthPartitions_WhenClusterPartitions_ThenOnlyUnclusteredClosedMonthsAreReordered() {
+        YearMonth august = YearMonth.of(2024, 8);
+        partitionRepository.createPartition(august);
+        partitionRepository.createPartition(august.plusMonths(1));
+        partitionRepository.createPartition(august.plusMonths(2));
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, august.atDay(20), 1L),
+                new HabitCompletion(null, august.atDay(2), 1L),
+                new HabitCompletion(null, august.plusMonths(1).atDay(5), 1L),
+                new HabitCompletion(null, august.plusMonths(2).atDay(5), 1L)));
+
+        assertEquals(2, partitionRepository.clusterPartitions(august.plusMonths(2)));
+        assertEquals(0, partitionRepository.clusterPartitions(august.plusMonths(2)));
+        assertEquals(1, partitionRepository.clusterPartitions(august.plusMonths(3)));
+        assertEquals(List.of(august.atDay(2), august.atDay(20)),
+                habitCompletionRepository.findByHabitIdAndPeriod(1L, august.atDay(1), august.atEndOfMonth()).stream()
+                        .map(HabitCompletion::getCompletionDate).toList());
+    }
+
+    @Test
+    @DisplayName("Given batch with existing and repeated dates When saveAllIfAbsent Then duplicates are skipped and counters follow the saved rows")
+    void givenBatchWithExistingAndRepeatedDates_WhenSaveAllIfAbsent_ThenDuplicatesAreSkippedAndCountersFollowSavedRows() {
+        LocalDate monday = LocalDate.of(2024, 10, 28);
+        habitCompletionRepository.save(new HabitCompletion(null, monday, 1L));
+
+        List<Optional<HabitCompletion>> results = habitCompletionRepository.saveAllIfAbsent(List.of(
+                new HabitCompletion(null, monday.plusDays(2), 1L),
+                new HabitCompletion(null, monday, 1L),
+                new HabitCompletion(null, monday.plusDays(1), 1L),
+                new HabitCompletion(null, monday.plusDays(1), 1L)));
+
+        assertEquals(4, results.size());
+        assertEquals(monday.plusDays(2), results.get(0).orElseThrow().getCompletionDate());
+        assertTrue(results.get(1).isEmpty());
+        assertEquals(monday.plusDays(1), results.get(2).orElseThrow().getCompletionDate());
+        assertTrue(results.get(3).isEmpty());
+        assertEquals(3, habitCompletionRepository.findCompletionDaysByHabitId(1L).length);
+        assertEquals(new HabitStreak(1L, Frequency.WEEKLY, 3, 3, monday.plusDays(2)), habitsRepository.findStreakById(1L).orElseThrow());
+        assertEquals(Map.of(monday, 3), habitCompletionRepository.findCompletionCounts(1L, RollupPeriod.WEEK, monday, monday));
+        assertTrue(habitCompletionRepository.saveAllIfAbsent(List.of()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given completions inside and outside the period When streamActivity Then rows of the range are streamed by habit")
+    void givenCompletionsInsideAndOutsidePeriod_WhenStreamActivity_ThenRowsOfRangeAreStreamedByHabit() {
+        LocalDate start = LocalDate.of(2024, 10, 1);
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, start.minusDays(1), 1L),
+                new HabitCompletion(null, start, 1L),
+                new HabitCompletion(null, start.plusDays(1), 1L)));
+
+        List<CompletionActivity> activity;
+        try (Stream<CompletionActivity> stream = habitCompletionRepository.streamActivity(new IdRange(1, 1), start, start.plusDays(6))) {
+            activity = stream.toList();
+        }
+
+        assertEquals(2, activity.size());
+        assertTrue(activity.stream().allMatch(row -> row.habitId() == 1L && row.createdDate().equals(LocalDate.of(2024, 10, 21)) && row.frequency() == Frequency.WEEKLY));
+        try (Stream<CompletionActivity> stream = habitCompletionRepository.streamActivity(new IdRange(1, 1), start.plusDays(30), start.plusDays(31))) {
+            assertEquals(List.of(new CompletionActivity(1L, LocalDate.of(2024, 10, 21), Frequency.WEEKLY, null)), stream.toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Given completions of several habits When countDailyActiveUsers Then each user is counted once per day")
+    void givenCompletionsOfSeveralHabits_WhenCountDailyActiveUsers_ThenEachUserIsCountedOncePerDay() {
+        LocalDate start = LocalDate.of(2024, 10, 1);
+        Habit secondHabit = habitsRepository.save(new Habit(null, "Habit 2", "Description 2", Frequency.DAILY, 1L, start));
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, start, 1L),
+                new HabitCompletion(null, start, secondHabit.getId()),
+                new HabitCompletion(null, start.plusDays(2), 1L),
+                new HabitCompletion(null, start.plusDays(10), 1L)));
+
+        Map<LocalDate, Integer> activeUsers = habitCompletionRepository.countDailyActiveUsers(start, start.plusDays(6));
+        habitsRepository.delete(secondHabit.getId());
+
+        assertEquals(Map.of(start, 1, start.plusDays(2), 1), activeUsers);
+    }
+
+    @Test
+    @DisplayName("Given more completions than the fetch size When streamAll Then all rows are streamed in order")
+    void givenMoreCompletionsThanFetchSize_WhenStreamAll_ThenAllRowsAreStreamedInOrder() {
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        List<HabitCompletion> completions = IntStream.range(0, 2500)
+                .mapToObj(i -> new HabitCompletion(null, start.plusDays(i), 1L))
+                .toList();
+        habitCompletionRepository.copyAll(completions);
+
+        List<LocalDate> streamed;
+        try (Stream<HabitCompletion> stream = habitCompletionRepository.streamAll()) {
+            streamed = stream.map(HabitCompletion::getCompletionDate).toList();
+        }
+
+        assertEquals(completions.stream().map(HabitCompletion::getCompletionDate).toList(), streamed);
+    }
+
+    @Test
+    @DisplayName("Given existing completions When forEach Then every completion is passed to the callback")
+    void givenExistingCompletions_WhenForEach_ThenEveryCompletionIsPassedToCallback() {
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, LocalDate.of(2024, 10, 1), 1L),
+                new HabitCompletion(null, LocalDate.of(2024, 10, 2), 1L)));
+
+        List<HabitCompletion> visited = new ArrayList<>();
+        habitCompletionRepository.forEach(visited::add);
+
+        assertEquals(habitCompletionRepository.findAll().size(), visited.size());
+        assertEquals(2, visited.size());
+    }
+
     @Test
     @DisplayName("Given a valid habit completion When update Then return updated completion")
     void givenValidHabitCompletion_WhenUpdate_ThenReturnUpdatedCompletion() {
@@ -244,6 +599,44 @@ public class HabitCompletionRepositoryImplTest {
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    @DisplayName("Given completions inside and outside period, When countByHabitIdAndPeriod is called, Then only completions in period are counted")
+    void testCountByHabitIdAndPeriod_CompletionsInsideAndOutsidePeriod_ShouldCountOnlyPeriod() {
+        Long existingHabitId = 1L;
+        habitCompletionRepository.save(new HabitCompletion(null, LocalDate.of(2024, 10, 1), existingHabitId));
+        habitCompletionRepository.save(new HabitCompletion(null, LocalDate.of(2024, 10, 5), existingHabitId));
+        habitCompletionRepository.save(new HabitCompletion(null, LocalDate.of(2024, 11, 1), existingHabitId));
+
+        long result = habitCompletionRepository.countByHabitIdAndPeriod(existingHabitId, LocalDate.of(2024, 10, 1), LocalDate.of(2024, 10, 31));
+
+        assertEquals(2, result);
+        assertEquals(3, habitCompletionRepository.findCompletionDaysByHabitId(existingHabitId).length);
+    }
+
+    @Test
+    @DisplayName("Given completions across several months, When countByHabitIdAndPeriod is called with partial edge months, Then full months and edges are counted")
+    void testCountByHabitIdAndPeriod_PartialEdgeMonths_ShouldCountFullMonthsAndEdges() {
+        Long existingHabitId = 1L;
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, LocalDate.of(2024, 9, 14), existingHabitId),
+                new HabitCompletion(null, LocalDate.of(2024, 9, 15), existingHabitId),
+                new HabitCompletion(null, LocalDate.of(2024, 9, 30), existingHabitId),
+                new HabitCompletion(null, LocalDate.of(2024, 10, 1), existingHabitId),
+                new HabitCompletion(null, LocalDate.of(2024, 10, 31), existingHabitId),
+                new HabitCompletion(null, LocalDate.of(2024, 11, 1), existingHabitId),
+                new HabitCompletion(null, LocalDate.of(2024, 11, 10), existingHabitId),
+                new HabitCompletion(null, LocalDate.of(2024, 11, 11), existingHabitId)));
+
+        assertEquals(6, habitCompletionRepository.countByHabitIdAndPeriod(existingHabitId, LocalDate.of(2024, 9, 15), LocalDate.of(2024, 11, 10)));
+        assertEquals(2, habitCompletionRepository.countByHabitIdAndPeriod(existingHabitId, LocalDate.of(2024, 9, 14), LocalDate.of(2024, 9, 15)));
+        assertEquals(3, habitCompletionRepository.countByHabitIdAndPeriod(existingHabitId, LocalDate.of(2024, 10, 31), LocalDate.of(2024, 11, 10)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        databaseConnection.close();
+    }
+
     @AfterAll
     static void afterAll() {
         postgres.stop();
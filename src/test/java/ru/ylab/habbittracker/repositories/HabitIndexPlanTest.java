@@ -0,0 +1,95 @@
+package ru.ylab.habbittracker.repositories;
+
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.ylab.habittracker.app.DatabaseConnection;
+import ru.ylab.habittracker.repositories.impl.HabitsRepositoryImpl;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HabitIndexPlanTest {
+    public static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:13");
+
+    private static DatabaseConnection databaseConnection;
+    private static long userId;
+
+    @BeforeAll
+    static void beforeAll() throws LiquibaseException, SQLException {
+        postgres.start();
+        databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        try (Connection connection = databaseConnection.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
+            liquibase.update();
+        }
+        try (Connection connection = databaseConnection.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO habit_tracking_schema.users(name, email, password, role, is_blocked) " +
+                    "SELECT 'seed user ' || g, 'seed' || g || '@example.com', 'password', 0, false " +
+                    "FROM generate_series(1, 10000) g");
+            statement.executeUpdate("INSERT INTO habit_tracking_schema.habit(name, description, frequency, created_date, user_id) " +
+                    "SELECT 'Habit ' || g, NULL, g % 2, DATE '2024-01-01' + (g * 7 + u.id) % 365, u.id " +
+                    "FROM habit_tracking_schema.users u CROSS JOIN generate_series(1, 100) g");
+            statement.execute("ANALYZE habit_tracking_schema.users");
+            statement.execute("ANALYZE habit_tracking_schema.habit");
+            try (ResultSet resultSet = statement.executeQuery("SELECT min(id) FROM habit_tracking_schema.users")) {
+                resultSet.next();
+                userId = resultSet.getLong(1);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Given a million habits When findByUserId query is explained Then the user/date index from the migration is used")
+    void givenMillionHabits_WhenFindByUserIdIsExplained_ThenMigrationIndexIsUsed() throws SQLException {
+        String plan = explain(HabitsRepositoryImpl.FIND_BY_USER_ID_SQL, userId);
+
+        assertTrue(plan.contains("ix_habit_user_id_created_date"), plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+    }
+
+    @Test
+    @DisplayName("Given a million habits When findByUserIdAndDate query is explained Then the user/date index from the migration is used")
+    void givenMillionHabits_WhenFindByUserIdAndDateIsExplained_ThenMigrationIndexIsUsed() throws SQLException {
+        String plan = explain(HabitsRepositoryImpl.FIND_BY_USER_ID_AND_DATE_SQL, userId, Date.valueOf(LocalDate.of(2024, 3, 1)));
+
+        assertTrue(plan.contains("ix_habit_user_id_created_date"), plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+    }
+
+    private String explain(String query, Object... parameters) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        databaseConnection.close();
+        postgres.stop();
+    }
+}
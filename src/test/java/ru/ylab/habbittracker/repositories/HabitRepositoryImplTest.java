@@ -19,6 +19,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -27,19 +28,22 @@ public class HabitRepositoryImplTest {
     public static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:13");
 
     private static HabitsRepository habitsRepository;
+    private static DatabaseConnection databaseConnection;
 
     @BeforeAll
     static void beforeAll() throws LiquibaseException, SQLException {
         postgres.start();
-        Connection connection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()).getConnection();
-        Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
-        Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
-        liquibase.update();
+        try (DatabaseConnection migrationConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Connection connection = migrationConnection.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
+            liquibase.update();
+        }
     }
 
     @BeforeEach
     void setUp() {
-        DatabaseConnection databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
         try (Connection connection = databaseConnection.getConnection();
              Statement statement = connection.createStatement()) {
             statement.execute("DROP SEQUENCE IF EXISTS habit_tracking_schema.habit_sequence CASCADE");
@@ -53,6 +57,9 @@ public class HabitRepositoryImplTest {
                     "    frequency INT NOT NULL,\n" +
                     "    created_date DATE NOT NULL,\n" +
                     "    user_id BIGINT NOT NULL,\n" +
+                    "    current_streak INT NOT NULL DEFAULT 0,\n" +
+                    "    longest_streak INT NOT NULL DEFAULT 0,\n" +
+                    "    last_completed_date DATE,\n" +
                     "    CONSTRAINT fk_habit_user FOREIGN KEY (user_id) REFERENCES habit_tracking_schema.users(id) ON DELETE CASCADE)");
         } catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -81,6 +88,20 @@ public class HabitRepositoryImplTest {
         assertEquals("Description 2", habits.get(1).getDescription());
     }
 
+    @Test
+    void givenExistingHabits_WhenFindAllByIds_ThenHabitsAreLoadedInOneQuery() {
+        Habit first = habitsRepository.save(new Habit(null, "Habit 1", "Description 1", Frequency.DAILY, 1L, LocalDate.now()));
+        Habit second = habitsRepository.save(new Habit(null, "Habit 2", "Description 2", Frequency.WEEKLY, 1L, LocalDate.now()));
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+
+        Map<Long, Habit> habits = habitsRepository.findAllByIds(List.of(first.getId(), second.getId(), 999L));
+
+        assertEquals(1, databaseConnection.getPoolStatistics().borrowed() - borrowedBefore);
+        assertEquals(2, habits.size());
+        assertEquals("Habit 2", habits.get(second.getId()).getName());
+        assertEquals(Frequency.WEEKLY, habits.get(second.getId()).getFrequency());
+    }
+
     @Test
     public void givenValidHabit_WhenSaved_ThenHabitIsPersisted() {
         Habit habit = new Habit(null, "Test Habit", "Test Description", Frequency.DAILY, 1L, LocalDate.now());
@@ -218,6 +239,11 @@ public class HabitRepositoryImplTest {
         assertDoesNotThrow(() -> habitsRepository.delete(999L));
     }
 
+    @AfterEach
+    void tearDown() {
+        databaseConnection.close();
+    }
+
     @AfterAll
     static void afterAll() {
         postgres.stop();
@@ -11,14 +11,18 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import ru.ylab.habittracker.app.DatabaseConnection;
 import ru.ylab.habittracker.models.Users;
 import ru.ylab.habittracker.repositories.UsersRepository;
+import ru.ylab.habittracker.repositories.impl.CachingUsersRepository;
 import ru.ylab.habittracker.repositories.impl.UsersRepositoryImpl;
 import ru.ylab.habittracker.utils.Role;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -26,19 +30,22 @@ class UsersRepositoryImplTest {
     public static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:13");
 
     private static UsersRepository usersRepository;
+    private static DatabaseConnection databaseConnection;
 
     @BeforeAll
     public static void beforeAll() throws LiquibaseException, SQLException {
         postgres.start();
-        Connection connection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()).getConnection();
-        Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
-        Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
-        liquibase.update();
+        try (DatabaseConnection migrationConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Connection connection = migrationConnection.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
+            liquibase.update();
+        }
     }
 
     @BeforeEach
     void setUp() {
-        DatabaseConnection databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
         try (Connection connection = databaseConnection.getConnection();
              Statement statement = connection.createStatement()) {
             statement.execute("DROP SEQUENCE IF EXISTS habit_tracking_schema.users_sequence CASCADE");
@@ -84,6 +91,96 @@ class UsersRepositoryImplTest {
         assertEquals("testuser2", foundUser.get().getName());
     }
 
+    @Test
+    void givenRepeatedFindById_WhenExecuted_ThenPreparedStatementIsTakenFromCache() {
+        usersRepository.save(new Users(null, "testuser3", "test3@example.com", "password", Role.USER, false));
+        long hitsBefore = databaseConnection.getPoolStatistics().statementCacheHits();
+
+        usersRepository.findById(1L);
+        usersRepository.findById(1L);
+
+        assertTrue(databaseConnection.getPoolStatistics().statementCacheHits() > hitsBefore);
+    }
+
+    @Test
+    void givenCachedStatementWithChangedSettings_WhenPreparedAgain_ThenSettingsAreReset() throws SQLException {
+        String sql = "SELECT id FROM habit_tracking_schema.users";
+        try (Connection connection = databaseConnection.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setMaxRows(1);
+                statement.setQueryTimeout(5);
+                statement.setFetchSize(10);
+            }
+            long hitsBefore = databaseConnection.getPoolStatistics().statementCacheHits();
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                assertEquals(hitsBefore + 1, databaseConnection.getPoolStatistics().statementCacheHits());
+                assertEquals(0, statement.getMaxRows());
+                assertEquals(0, statement.getQueryTimeout());
+                assertEquals(0, statement.getFetchSize());
+            }
+        }
+    }
+
+    @Test
+    void givenCachedUser_WhenFindByIdRepeatedly_ThenDatabaseIsQueriedOnce() {
+        CachingUsersRepository cachingRepository = new CachingUsersRepository(usersRepository, 10, 60_000);
+        Users saved = cachingRepository.save(new Users(null, "testuser4", "test4@example.com", "password", Role.USER, false));
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+
+        cachingRepository.findById(saved.getId());
+        cachingRepository.findById(saved.getId()).orElseThrow().setName("changed locally");
+        Optional<Users> cached = cachingRepository.findById(saved.getId());
+
+        assertEquals(1, databaseConnection.getPoolStatistics().borrowed() - borrowedBefore);
+        assertEquals("testuser4", cached.orElseThrow().getName());
+        assertEquals(2.0 / 3, cachingRepository.getStatistics().hitRatio(), 1e-9);
+    }
+
+    @Test
+    void givenCachedUser_WhenUpdated_ThenNextFindByIdReturnsUpdatedUser() {
+        CachingUsersRepository cachingRepository = new CachingUsersRepository(usersRepository, 10, 60_000);
+        Users saved = cachingRepository.save(new Users(null, "testuser5", "test5@example.com", "password", Role.USER, false));
+        Users user = cachingRepository.findById(saved.getId()).orElseThrow();
+
+        user.setBlocked(true);
+        cachingRepository.update(user);
+
+        assertTrue(cachingRepository.findById(saved.getId()).orElseThrow().isBlocked());
+        cachingRepository.delete(saved.getId());
+        assertTrue(cachingRepository.findById(saved.getId()).isEmpty());
+    }
+
+    @Test
+    void givenExistingUsers_WhenFindAllByIds_ThenUsersAreLoadedInOneQuery() {
+        Users first = usersRepository.save(new Users(null, "testuser6", "test6@example.com", "password", Role.USER, false));
+        Users second = usersRepository.save(new Users(null, "testuser7", "test7@example.com", "password", Role.ADMIN, false));
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+
+        Map<Long, Users> users = usersRepository.findAllByIds(List.of(first.getId(), second.getId(), 999L));
+
+        assertEquals(1, databaseConnection.getPoolStatistics().borrowed() - borrowedBefore);
+        assertEquals(Set.of(first.getId(), second.getId()), users.keySet());
+        assertEquals("testuser7", users.get(second.getId()).getName());
+        assertTrue(usersRepository.findAllByIds(List.of()).isEmpty());
+    }
+
+    @Test
+    void givenPartiallyCachedUsers_WhenFindAllByIds_ThenOnlyMissingUsersAreLoaded() {
+        CachingUsersRepository cachingRepository = new CachingUsersRepository(usersRepository, 10, 60_000);
+        Users cached = cachingRepository.save(new Users(null, "testuser8", "test8@example.com", "password", Role.USER, false));
+        Users missing = cachingRepository.save(new Users(null, "testuser9", "test9@example.com", "password", Role.USER, false));
+        cachingRepository.findById(cached.getId());
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+
+        Map<Long, Users> users = cachingRepository.findAllByIds(List.of(cached.getId(), missing.getId()));
+        cachingRepository.findAllByIds(List.of(cached.getId(), missing.getId()));
+
+        assertEquals(1, databaseConnection.getPoolStatistics().borrowed() - borrowedBefore);
+        assertEquals(Set.of(cached.getId(), missing.getId()), users.keySet());
+        assertEquals(2, cachingRepository.getStatistics().size());
+    }
+
     @Test
     void givenNonExistingUser_WhenFindById_ThenEmptyIsReturned() {
         Optional<Users> foundUser = usersRepository.findById(999L);
@@ -109,6 +206,19 @@ class UsersRepositoryImplTest {
         assertTrue(users.stream().anyMatch(u -> "User Two".equals(u.getName())), "Expected User Two to be in the list");
     }
 
+    @Test
+    void givenMultipleUsers_WhenFindPageAfterId_ThenOnlyFollowingUsersAreReturned() {
+        Users user1 = usersRepository.save(new Users(null, "User One", "user1@example.com", "password1", Role.USER, false));
+        Users user2 = usersRepository.save(new Users(null, "User Two", "user2@example.com", "password2", Role.USER, false));
+        Users user3 = usersRepository.save(new Users(null, "User Three", "user3@example.com", "password3", Role.USER, false));
+
+        List<Users> firstPage = usersRepository.findPage(null, 2);
+        List<Users> secondPage = usersRepository.findPage(firstPage.get(firstPage.size() - 1).getId(), 2);
+
+        assertEquals(List.of(user1.getId(), user2.getId()), firstPage.stream().map(Users::getId).toList());
+        assertEquals(List.of(user3.getId()), secondPage.stream().map(Users::getId).toList());
+    }
+
     @Test
     void givenValidUser_WhenSaved_ThenUserIsReturnedWithId() {
         Users user = new Users(null, "Valid User", "valid@example.com", "password", Role.USER, false);
@@ -174,6 +284,11 @@ class UsersRepositoryImplTest {
         assertDoesNotThrow(() -> usersRepository.delete(999L));
     }
 
+    @AfterEach
+    void tearDown() {
+        databaseConnection.close();
+    }
+
     @AfterAll
     static void afterAll() {
         postgres.stop();
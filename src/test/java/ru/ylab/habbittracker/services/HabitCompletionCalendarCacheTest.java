@@ -0,0 +1,64 @@
+package ru.ylab.habbittracker.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ylab.habittracker.repositories.HabitCompletionRepository;
+import ru.ylab.habittracker.services.impl.HabitCompletionCalendarCache;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HabitCompletionCalendarCacheTest {
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Test
+    @DisplayName("Given expired calendar When read Then calendar is reloaded from the repository")
+    void givenExpiredCalendar_WhenRead_ThenCalendarIsReloadedFromRepository() throws InterruptedException {
+        AtomicReference<int[]> days = new AtomicReference<>(new int[]{(int) TODAY.toEpochDay()});
+        AtomicInteger loads = new AtomicInteger();
+        HabitCompletionCalendarCache cache = new HabitCompletionCalendarCache(repository(days, loads), 1024 * 1024, 1);
+
+        assertEquals(1, cache.count(1L));
+        days.set(new int[]{(int) TODAY.minusDays(1).toEpochDay(), (int) TODAY.toEpochDay()});
+        Thread.sleep(10);
+
+        assertEquals(2, cache.count(1L));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Given cached calendars When invalidateAll Then every calendar is reloaded")
+    void givenCachedCalendars_WhenInvalidateAll_ThenEveryCalendarIsReloaded() {
+        AtomicReference<int[]> days = new AtomicReference<>(new int[]{(int) TODAY.toEpochDay()});
+        AtomicInteger loads = new AtomicInteger();
+        HabitCompletionCalendarCache cache = new HabitCompletionCalendarCache(repository(days, loads), 1024 * 1024, 60_000);
+
+        cache.count(1L);
+        cache.count(2L);
+        cache.count(1L);
+        assertEquals(2, loads.get());
+
+        days.set(new int[0]);
+        cache.invalidateAll();
+
+        assertEquals(0, cache.count(1L));
+        assertEquals(0, cache.count(2L));
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getStatistics().size());
+    }
+
+    private static HabitCompletionRepository repository(AtomicReference<int[]> days, AtomicInteger loads) {
+        return (HabitCompletionRepository) Proxy.newProxyInstance(HabitCompletionRepository.class.getClassLoader(),
+                new Class<?>[]{HabitCompletionRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("findCompletionDaysByHabitId")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    loads.incrementAndGet();
+                    return days.get().clone();
+                });
+    }
+}
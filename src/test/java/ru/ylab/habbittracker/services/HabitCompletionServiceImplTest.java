@@ -10,20 +10,38 @@ import org.junit.jupiter.api.*;
 import org.testcontainers.containers.PostgreSQLContainer;
 import ru.ylab.habittracker.app.DatabaseConnection;
 import ru.ylab.habittracker.dto.BaseResponse;
+import ru.ylab.habittracker.dto.HabitReportResponse;
+import ru.ylab.habittracker.dto.StreakHistoryResponse;
+import ru.ylab.habittracker.exception.HabitAlreadyCompletedException;
 import ru.ylab.habittracker.exception.HabitNotFoundException;
+import ru.ylab.habittracker.exception.InvalidPeriodException;
+import ru.ylab.habittracker.jobs.RollupCatchUpJob;
+import ru.ylab.habittracker.jobs.StreakRepairJob;
+import ru.ylab.habittracker.models.Habit;
 import ru.ylab.habittracker.models.HabitCompletion;
+import ru.ylab.habittracker.models.HabitCompletionDays;
+import ru.ylab.habittracker.models.HabitStreak;
+import ru.ylab.habittracker.models.StreakInterval;
 import ru.ylab.habittracker.repositories.HabitCompletionRepository;
 import ru.ylab.habittracker.repositories.HabitsRepository;
 import ru.ylab.habittracker.repositories.impl.HabitCompletionRepositoryImpl;
 import ru.ylab.habittracker.repositories.impl.HabitsRepositoryImpl;
 import ru.ylab.habittracker.services.HabitCompletionService;
+import ru.ylab.habittracker.services.impl.HabitCompletionCalendarCache;
 import ru.ylab.habittracker.services.impl.HabitCompletionServiceImpl;
+import ru.ylab.habittracker.services.impl.HabitCompletionWriteBuffer;
+import ru.ylab.habittracker.utils.Frequency;
+import ru.ylab.habittracker.utils.IsoWeeks;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -33,29 +51,37 @@ public class HabitCompletionServiceImplTest {
     private static HabitCompletionService habitCompletionService;
     private static HabitCompletionRepository habitCompletionRepository;
     private static HabitsRepository habitsRepository;
+    private static DatabaseConnection databaseConnection;
 
     @BeforeAll
     static void beforeAll() throws LiquibaseException, SQLException {
         postgres.start();
-        Connection connection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()).getConnection();
-        Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
-        Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
-        liquibase.update();
+        try (DatabaseConnection migrationConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Connection connection = migrationConnection.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
+            liquibase.update();
+        }
     }
 
     @BeforeEach
     void setUp() {
-        DatabaseConnection databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
         try (Connection connection = databaseConnection.getConnection();
              Statement statement = connection.createStatement()) {
             statement.execute("DROP SEQUENCE IF EXISTS habit_tracking_schema.habit_completion_sequence CASCADE");
             statement.execute("DROP TABLE IF EXISTS habit_tracking_schema.habit_completion CASCADE");
 
             statement.executeUpdate("CREATE SEQUENCE IF NOT EXISTS habit_tracking_schema.habit_completion_sequence");
-            statement.executeUpdate("CREATE TABLE habit_tracking_schema.habit_completion (id BIGINT PRIMARY KEY NOT NULL DEFAULT nextval('habit_tracking_schema.habit_completion_sequence')," +
+            statement.executeUpdate("CREATE TABLE habit_tracking_schema.habit_completion (id BIGINT NOT NULL DEFAULT nextval('habit_tracking_schema.habit_completion_sequence')," +
                     "    completion_date DATE NOT NULL," +
                     "    habit_id BIGINT NOT NULL," +
-                    "    FOREIGN KEY (habit_id) REFERENCES habit_tracking_schema.habit(id) ON DELETE CASCADE)");
+                    "    PRIMARY KEY (id, completion_date)," +
+                    "    FOREIGN KEY (habit_id) REFERENCES habit_tracking_schema.habit(id) ON DELETE CASCADE) PARTITION BY RANGE (completion_date)");
+            statement.executeUpdate("CREATE TABLE habit_tracking_schema.habit_completion_default PARTITION OF habit_tracking_schema.habit_completion DEFAULT");
+            statement.executeUpdate("CREATE UNIQUE INDEX ux_habit_completion_habit_id_completion_date ON habit_tracking_schema.habit_completion (habit_id, completion_date)");
+            statement.executeUpdate("UPDATE habit_tracking_schema.habit SET current_streak = 0, longest_streak = 0, last_completed_date = NULL");
+            statement.executeUpdate("TRUNCATE habit_tracking_schema.habit_completion_weekly, habit_tracking_schema.habit_completion_monthly");
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
@@ -81,6 +107,16 @@ public class HabitCompletionServiceImplTest {
         assertFalse(habitCompletionRepository.findByHabitId(habitId).isEmpty(), "Habit should have at least one completion");
     }
 
+    @Test
+    @DisplayName("Given habit completed today When markCompletion Then throw HabitAlreadyCompletedException")
+    void givenHabitCompletedToday_WhenMarkCompletion_ThenThrowHabitAlreadyCompletedException() {
+        Long habitId = 1L;
+        habitCompletionService.markCompletion(habitId);
+
+        assertThrows(HabitAlreadyCompletedException.class, () -> habitCompletionService.markCompletion(habitId));
+        assertEquals(1, habitCompletionRepository.findCompletionDaysByHabitId(habitId).length, "Only one completion should be stored");
+    }
+
     @Test
     @DisplayName("Given habit with completions When showTheHistory Then return habit completion history")
     void givenHabitWithCompletions_WhenShowTheHistory_ThenReturnHabitCompletionHistory() {
@@ -103,6 +139,280 @@ public class HabitCompletionServiceImplTest {
         assertEquals("Habit completion list is empty.", exception.getMessage(), "Exception message should match");
     }
 
+    @Test
+    @DisplayName("Given habit with completions When generateHabitReport Then report is built from two queries")
+    void givenHabitWithCompletions_WhenGenerateHabitReport_ThenReportIsBuiltFromTwoQueries() {
+        Long habitId = saveDailyHabit();
+        LocalDate today = LocalDate.now();
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, today.minusDays(400), habitId),
+                new HabitCompletion(null, today.minusDays(4), habitId),
+                new HabitCompletion(null, today.minusDays(2), habitId),
+                new HabitCompletion(null, today.minusDays(1), habitId),
+                new HabitCompletion(null, today, habitId)));
+
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+        HabitReportResponse report = habitCompletionService.generateHabitReport(habitId, today.minusDays(6), today).data();
+        long queries = databaseConnection.getPoolStatistics().borrowed() - borrowedBefore;
+
+        assertEquals(2, queries, "Report should load the habit and its completions once");
+        assertEquals(3, report.getCurrentStreak());
+        assertEquals(3, report.getLongestStreak());
+        assertEquals(5.0 / 3, report.getAverageStreak(), 1e-9);
+        assertEquals(4, report.getTotalCompletions());
+        assertEquals(4.0 / 7, report.getSuccessRate(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Given completions with gaps When calculateStreakHistory Then intervals are found in one query")
+    void givenCompletionsWithGaps_WhenCalculateStreakHistory_ThenIntervalsAreFoundInOneQuery() {
+        Long habitId = saveDailyHabit();
+        LocalDate first = LocalDate.of(2024, 10, 1);
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, first.plusDays(10), habitId),
+                new HabitCompletion(null, first, habitId),
+                new HabitCompletion(null, first.plusDays(5), habitId),
+                new HabitCompletion(null, first.plusDays(1), habitId),
+                new HabitCompletion(null, first.plusDays(6), habitId),
+                new HabitCompletion(null, first.plusDays(7), habitId)));
+
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+        StreakHistoryResponse history = habitCompletionService.calculateStreakHistory(habitId).data();
+
+        assertEquals(1, databaseConnection.getPoolStatistics().borrowed() - borrowedBefore);
+        assertEquals(List.of(
+                new StreakInterval(first, first.plusDays(1)),
+                new StreakInterval(first.plusDays(5), first.plusDays(7)),
+                new StreakInterval(first.plusDays(10), first.plusDays(10))), history.streaks());
+        assertEquals(3, history.longestStreak());
+        assertEquals(2.0, history.averageStreak(), 1e-9);
+        assertThrows(HabitNotFoundException.class, () -> habitCompletionService.calculateStreakHistory(-1L));
+    }
+
+    @Test
+    @DisplayName("Given loaded calendar When markCompletion Then statistics are answered from memory and counters")
+    void givenLoadedCalendar_WhenMarkCompletion_ThenStatisticsAreAnsweredFromMemoryAndCounters() {
+        Long habitId = saveDailyHabit();
+        LocalDate today = LocalDate.now();
+        habitCompletionRepository.save(new HabitCompletion(null, today.minusDays(1), habitId));
+        assertEquals(0.25, habitCompletionService.calculateCompletionPercentage(habitId, today.minusDays(3), today).data(), 1e-9);
+        assertEquals(0, habitCompletionService.calculateCurrentStreak(habitId, today).data());
+
+        habitCompletionService.markCompletion(habitId);
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+        double percentage = habitCompletionService.calculateCompletionPercentage(habitId, today.minusDays(3), today).data();
+        long percentageQueries = databaseConnection.getPoolStatistics().borrowed() - borrowedBefore;
+        int streak = habitCompletionService.calculateCurrentStreak(habitId, today).data();
+        long streakQueries = databaseConnection.getPoolStatistics().borrowed() - borrowedBefore - percentageQueries;
+
+        assertEquals(1, percentageQueries, "Only the habit frequency should be read from the database");
+        assertEquals(1, streakQueries, "Streak should be read from the habit row");
+        assertEquals(2, streak);
+        assertEquals(0.5, percentage, 1e-9);
+    }
+
+    @Test
+    @DisplayName("Given corrupted streak counters When repair Then counters are recalculated from completions")
+    void givenCorruptedStreakCounters_WhenRepair_ThenCountersAreRecalculatedFromCompletions() throws SQLException {
+        Long habitId = saveDailyHabit();
+        LocalDate today = LocalDate.now();
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, today.minusDays(2), habitId),
+                new HabitCompletion(null, today.minusDays(1), habitId)));
+        try (Connection connection = databaseConnection.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE habit_tracking_schema.habit SET current_streak = 7, longest_streak = 7, last_completed_date = CURRENT_DATE");
+        }
+
+        int repaired = new StreakRepairJob(habitsRepository, habitCompletionRepository, 1).repair();
+
+        assertEquals(habitsRepository.findAll().size(), repaired);
+        assertEquals(new HabitStreak(habitId, Frequency.DAILY, 2, 2, today.minusDays(1)), habitsRepository.findStreakById(habitId).orElseThrow());
+        assertEquals(0, habitCompletionService.calculateCurrentStreak(habitId, today).data());
+        assertThrows(HabitNotFoundException.class, () -> habitCompletionService.calculateCurrentStreak(-1L, today));
+    }
+
+    @Test
+    @DisplayName("Given weekly habit When streak and percentage are calculated Then they are counted in ISO weeks")
+    void givenWeeklyHabit_WhenStreakAndPercentageAreCalculated_ThenTheyAreCountedInIsoWeeks() {
+        Long habitId = 1L;
+        LocalDate today = LocalDate.now();
+        LocalDate monday = IsoWeeks.weekStart(today);
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, monday.minusWeeks(8), habitId),
+                new HabitCompletion(null, monday.minusWeeks(3).plusDays(2), habitId),
+                new HabitCompletion(null, monday.minusWeeks(2), habitId),
+                new HabitCompletion(null, monday.minusWeeks(2).plusDays(6), habitId),
+                new HabitCompletion(null, monday.minusWeeks(1).plusDays(4), habitId),
+                new HabitCompletion(null, today, habitId)));
+
+        assertEquals(4, habitCompletionService.calculateCurrentStreak(habitId, today).data());
+        assertEquals(3, habitCompletionService.calculateCurrentStreak(habitId, monday.minusDays(1)).data());
+        assertEquals(0, habitCompletionService.calculateCurrentStreak(habitId, monday.minusWeeks(4)).data());
+        assertEquals(4.0 / 6, habitCompletionService.calculateCompletionPercentage(habitId, monday.minusWeeks(5), today).data(), 1e-9);
+
+        StreakHistoryResponse history = habitCompletionService.calculateStreakHistory(habitId).data();
+        assertEquals(List.of(
+                new StreakInterval(monday.minusWeeks(8), monday.minusWeeks(8).plusDays(6), 1),
+                new StreakInterval(monday.minusWeeks(3), monday.plusDays(6), 4)), history.streaks());
+        assertEquals(2.5, history.averageStreak(), 1e-9);
+
+        HabitReportResponse report = habitCompletionService.generateHabitReport(habitId, monday.minusWeeks(5), today).data();
+        assertEquals(4, report.getCurrentStreak());
+        assertEquals(4, report.getLongestStreak());
+        assertEquals(5, report.getTotalCompletions());
+        assertEquals(4.0 / 6, report.getSuccessRate(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Given user with several habits When generateUserReport Then all reports are built from one query")
+    void givenUserWithSeveralHabits_WhenGenerateUserReport_ThenAllReportsAreBuiltFromOneQuery() {
+        Long dailyHabitId = saveDailyHabit();
+        Long idleHabitId = saveDailyHabit();
+        LocalDate today = LocalDate.now();
+        LocalDate monday = IsoWeeks.weekStart(today);
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, today.minusDays(2), dailyHabitId),
+                new HabitCompletion(null, today.minusDays(1), dailyHabitId),
+                new HabitCompletion(null, today, dailyHabitId),
+                new HabitCompletion(null, monday.minusWeeks(1), 1L),
+                new HabitCompletion(null, today, 1L)));
+
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+        Map<Long, HabitReportResponse> reports = habitCompletionService.generateUserReport(1L, today.minusDays(6), today).data();
+
+        assertEquals(1, databaseConnection.getPoolStatistics().borrowed() - borrowedBefore);
+        assertEquals(habitsRepository.findByUserId(1L).size(), reports.size());
+        assertEquals(reports.keySet().stream().sorted().toList(), List.copyOf(reports.keySet()));
+        assertEquals(3, reports.get(dailyHabitId).getCurrentStreak());
+        assertEquals(3, reports.get(dailyHabitId).getTotalCompletions());
+        assertEquals(3.0 / 7, reports.get(dailyHabitId).getSuccessRate(), 1e-9);
+        assertEquals(2, reports.get(1L).getCurrentStreak());
+        assertEquals(2, reports.get(1L).getLongestStreak());
+        assertEquals(0, reports.get(idleHabitId).getTotalCompletions());
+        assertEquals(0, reports.get(idleHabitId).getSuccessRate(), 1e-9);
+        assertTrue(habitCompletionService.generateUserReport(-1L, today.minusDays(6), today).data().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given period ending before it starts When generateUserReport Then InvalidPeriodException is thrown")
+    void givenPeriodEndingBeforeItStarts_WhenGenerateUserReport_ThenInvalidPeriodExceptionIsThrown() {
+        LocalDate today = LocalDate.now();
+
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+        assertThrows(InvalidPeriodException.class,
+                () -> habitCompletionService.generateUserReport(1L, today, today.minusDays(1)));
+        assertEquals(0, databaseConnection.getPoolStatistics().borrowed() - borrowedBefore);
+    }
+
+    @Test
+    @DisplayName("Given user with several habits When findWithCompletionDaysByUserId for a period Then days of the period are aggregated per habit in one query")
+    void givenUserWithSeveralHabits_WhenFindWithCompletionDaysForPeriod_ThenDaysOfPeriodAreAggregatedPerHabitInOneQuery() {
+        Long dailyHabitId = saveDailyHabit();
+        Long idleHabitId = saveDailyHabit();
+        LocalDate today = LocalDate.now();
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, today.minusDays(10), dailyHabitId),
+                new HabitCompletion(null, today.minusDays(2), dailyHabitId),
+                new HabitCompletion(null, today, dailyHabitId)));
+
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+        List<HabitCompletionDays> habits = habitsRepository.findWithCompletionDaysByUserId(1L, today.minusDays(6), today);
+
+        assertEquals(1, databaseConnection.getPoolStatistics().borrowed() - borrowedBefore);
+        assertEquals(habitsRepository.findByUserId(1L).size(), habits.size());
+        Map<Long, int[]> days = new HashMap<>();
+        habits.forEach(habit -> days.put(habit.habit().getId(), habit.completionDays()));
+        assertArrayEquals(new int[]{(int) today.minusDays(2).toEpochDay(), (int) today.toEpochDay()}, days.get(dailyHabitId));
+        assertArrayEquals(new int[0], days.get(idleHabitId));
+        assertTrue(habitsRepository.findWithCompletionDaysByUserId(-1L, today.minusDays(6), today).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given completions over several months When getCompletionCounts Then counts are read per month and week")
+    void givenCompletionsOverSeveralMonths_WhenGetCompletionCounts_ThenCountsAreReadPerMonthAndWeek() {
+        Long habitId = saveDailyHabit();
+        LocalDate start = LocalDate.of(2023, 1, 1);
+        for (int i = 0; i < 90; i += 3) {
+            habitCompletionRepository.saveIfAbsent(new HabitCompletion(null, start.plusDays(i), habitId));
+        }
+
+        Map<LocalDate, Integer> monthly = habitCompletionService.getCompletionCounts(habitId, "month", start, start.plusDays(89)).data();
+        Map<LocalDate, Integer> weekly = habitCompletionService.getCompletionCounts(habitId, "week", start, start.plusDays(89)).data();
+
+        assertEquals(List.of(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 2, 1), LocalDate.of(2023, 3, 1)), List.copyOf(monthly.keySet()));
+        assertEquals(30, monthly.values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(30, weekly.values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(LocalDate.of(2022, 12, 26), weekly.keySet().iterator().next());
+        assertThrows(InvalidPeriodException.class, () -> habitCompletionService.getCompletionCounts(habitId, "day", start, start));
+        assertThrows(InvalidPeriodException.class, () -> habitCompletionService.getCompletionCounts(habitId, "week", start, start.minusDays(1)));
+        assertThrows(HabitNotFoundException.class, () -> habitCompletionService.getCompletionCounts(-1L, "week", start, start));
+    }
+
+    @Test
+    @DisplayName("Given rollups lost outside the repository When RollupCatchUpJob runs Then rollups are rebuilt")
+    void givenRollupsLostOutsideRepository_WhenRollupCatchUpJobRuns_ThenRollupsAreRebuilt() throws SQLException {
+        Long habitId = 1L;
+        LocalDate monday = LocalDate.of(2024, 10, 28);
+        habitCompletionRepository.saveAll(List.of(
+                new HabitCompletion(null, monday, habitId),
+                new HabitCompletion(null, monday.plusDays(3), habitId)));
+        try (Connection connection = databaseConnection.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("TRUNCATE habit_tracking_schema.habit_completion_weekly, habit_tracking_schema.habit_completion_monthly");
+        }
+
+        int written = new RollupCatchUpJob(habitsRepository, habitCompletionRepository, 1).catchUp();
+
+        assertEquals(3, written);
+        assertEquals(Map.of(monday, 2), habitCompletionService.getCompletionCounts(habitId, "week", monday, monday).data());
+        assertEquals(Map.of(LocalDate.of(2024, 10, 1), 1, LocalDate.of(2024, 11, 1), 1),
+                habitCompletionService.getCompletionCounts(habitId, "month", monday, monday.plusDays(6)).data());
+    }
+
+    @Test
+    @DisplayName("Given write-behind mode When several habits are marked Then they are committed in one batch and duplicates fail")
+    void givenWriteBehindMode_WhenSeveralHabitsAreMarked_ThenTheyAreCommittedInOneBatchAndDuplicatesFail() {
+        List<Long> habitIds = List.of(saveDailyHabit(), saveDailyHabit(), saveDailyHabit());
+        try (HabitCompletionWriteBuffer writeBuffer = new HabitCompletionWriteBuffer(habitCompletionRepository, 100, 4, 60_000)) {
+            HabitCompletionService service = new HabitCompletionServiceImpl(habitsRepository, habitCompletionRepository,
+                    new HabitCompletionCalendarCache(habitCompletionRepository, HabitCompletionCalendarCache.DEFAULT_MAX_BYTES), writeBuffer);
+
+            List<CompletableFuture<HabitCompletion>> futures = habitIds.stream().map(service::markCompletionAsync).toList();
+            CompletableFuture<HabitCompletion> duplicate = service.markCompletionAsync(habitIds.get(0));
+
+            for (int i = 0; i < habitIds.size(); i++) {
+                assertEquals(habitIds.get(i), futures.get(i).join().getHabitId());
+                assertEquals(1, service.calculateCurrentStreak(habitIds.get(i), LocalDate.now()).data());
+            }
+            CompletionException exception = assertThrows(CompletionException.class, duplicate::join);
+            assertInstanceOf(HabitAlreadyCompletedException.class, exception.getCause());
+            assertEquals(1, writeBuffer.getBatches());
+            assertTrue(service.markCompletionAsync(-1L).isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    @DisplayName("Given no completions in period When generateHabitReport Then throw HabitNotFoundException")
+    void givenNoCompletionsInPeriod_WhenGenerateHabitReport_ThenThrowHabitNotFoundException() {
+        LocalDate today = LocalDate.now();
+        habitCompletionRepository.save(new HabitCompletion(null, today.minusDays(30), 1L));
+
+        HabitNotFoundException exception = assertThrows(HabitNotFoundException.class,
+                () -> habitCompletionService.generateHabitReport(1L, today.minusDays(6), today));
+
+        assertEquals("Habit completion list is empty.", exception.getMessage());
+    }
+
+    private static Long saveDailyHabit() {
+        return habitsRepository.save(new Habit(null, "Reading", "Daily reading", Frequency.DAILY, 1L, LocalDate.now())).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        databaseConnection.close();
+    }
+
     @AfterAll
     static void afterAll() {
         postgres.stop();
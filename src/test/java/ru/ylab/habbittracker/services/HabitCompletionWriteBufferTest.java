@@ -0,0 +1,138 @@
+package ru.ylab.habbittracker.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ylab.habittracker.exception.HabitAlreadyCompletedException;
+import ru.ylab.habittracker.models.HabitCompletion;
+import ru.ylab.habittracker.repositories.HabitCompletionRepository;
+import ru.ylab.habittracker.services.impl.HabitCompletionWriteBuffer;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HabitCompletionWriteBufferTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 10, 21);
+
+    @Test
+    @DisplayName("Given a full batch When submitted Then completions are saved in one transaction and futures complete")
+    void givenFullBatch_WhenSubmitted_ThenCompletionsAreSavedInOneTransactionAndFuturesComplete() throws Exception {
+        List<List<HabitCompletion>> batches = new ArrayList<>();
+        try (HabitCompletionWriteBuffer buffer = new HabitCompletionWriteBuffer(repository(batches, new UniqueStore()::save), 100, 3, 60_000)) {
+            List<CompletableFuture<HabitCompletion>> futures = List.of(
+                    buffer.submit(new HabitCompletion(null, TODAY, 1L)),
+                    buffer.submit(new HabitCompletion(null, TODAY, 2L)),
+                    buffer.submit(new HabitCompletion(null, TODAY, 3L)));
+
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i + 1L, futures.get(i).get(5, TimeUnit.SECONDS).getHabitId());
+            }
+            assertEquals(1, buffer.getBatches());
+            assertEquals(3, buffer.getWritten());
+        }
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    @DisplayName("Given a duplicate completion When flushed Then only the duplicate future fails")
+    void givenDuplicateCompletion_WhenFlushed_ThenOnlyDuplicateFutureFails() throws Exception {
+        try (HabitCompletionWriteBuffer buffer = new HabitCompletionWriteBuffer(repository(new ArrayList<>(), new UniqueStore()::save), 100, 2, 60_000)) {
+            CompletableFuture<HabitCompletion> first = buffer.submit(new HabitCompletion(null, TODAY, 1L));
+            CompletableFuture<HabitCompletion> duplicate = buffer.submit(new HabitCompletion(null, TODAY, 1L));
+
+            assertNotNull(first.get(5, TimeUnit.SECONDS).getId());
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> duplicate.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(HabitAlreadyCompletedException.class, exception.getCause());
+        }
+    }
+
+    @Test
+    @DisplayName("Given a failing repository When flushed Then every future of the batch fails")
+    void givenFailingRepository_WhenFlushed_ThenEveryFutureOfBatchFails() {
+        try (HabitCompletionWriteBuffer buffer = new HabitCompletionWriteBuffer(repository(new ArrayList<>(), entities -> List.of()), 100, 2, 60_000)) {
+            CompletableFuture<HabitCompletion> first = buffer.submit(new HabitCompletion(null, TODAY, 1L));
+            CompletableFuture<HabitCompletion> second = buffer.submit(new HabitCompletion(null, TODAY, 2L));
+
+            for (CompletableFuture<HabitCompletion> future : List.of(first, second)) {
+                ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, exception.getCause());
+            }
+            assertEquals(0, buffer.getBatches());
+        }
+    }
+
+    @Test
+    @DisplayName("Given a full queue When submit Then the completion is rejected without waiting")
+    void givenFullQueue_WhenSubmit_ThenCompletionIsRejectedWithoutWaiting() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        UniqueStore store = new UniqueStore();
+        HabitCompletionWriteBuffer buffer = new HabitCompletionWriteBuffer(repository(new ArrayList<>(), entities -> {
+            flushing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return store.save(entities);
+        }), 1, 1, 0);
+
+        CompletableFuture<HabitCompletion> inFlight = buffer.submit(new HabitCompletion(null, TODAY, 1L));
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<HabitCompletion> queued = buffer.submit(new HabitCompletion(null, TODAY, 2L));
+        CompletableFuture<HabitCompletion> rejected = buffer.submit(new HabitCompletion(null, TODAY, 3L));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        release.countDown();
+        buffer.close();
+        assertTrue(inFlight.isDone() && !inFlight.isCompletedExceptionally());
+        assertTrue(queued.isDone() && !queued.isCompletedExceptionally());
+        assertTrue(buffer.submit(new HabitCompletion(null, TODAY, 4L)).isCompletedExceptionally());
+    }
+
+    private static HabitCompletionRepository repository(List<List<HabitCompletion>> batches,
+                                                        Function<List<HabitCompletion>, List<Optional<HabitCompletion>>> saveAllIfAbsent) {
+        return (HabitCompletionRepository) Proxy.newProxyInstance(HabitCompletionRepository.class.getClassLoader(),
+                new Class<?>[]{HabitCompletionRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("saveAllIfAbsent")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<HabitCompletion> entities = (List<HabitCompletion>) args[0];
+                    synchronized (batches) {
+                        batches.add(List.copyOf(entities));
+                    }
+                    return saveAllIfAbsent.apply(entities);
+                });
+    }
+
+    private static class UniqueStore {
+        private final Set<List<Object>> saved = new HashSet<>();
+        private long nextId = 1;
+
+        synchronized List<Optional<HabitCompletion>> save(List<HabitCompletion> entities) {
+            List<Optional<HabitCompletion>> results = new ArrayList<>();
+            for (HabitCompletion entity : entities) {
+                if (saved.add(List.of(entity.getHabitId(), entity.getCompletionDate()))) {
+                    results.add(Optional.of(new HabitCompletion(nextId++, entity.getCompletionDate(), entity.getHabitId())));
+                } else {
+                    results.add(Optional.empty());
+                }
+            }
+            return results;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.junit.jupiter.api.*;
 import org.testcontainers.containers.PostgreSQLContainer;
 import ru.ylab.habittracker.app.DatabaseConnection;
 import ru.ylab.habittracker.dto.BaseResponse;
+import ru.ylab.habittracker.exception.InvalidPeriodException;
 import ru.ylab.habittracker.models.Habit;
 import ru.ylab.habittracker.repositories.HabitsRepository;
 import ru.ylab.habittracker.repositories.impl.HabitsRepositoryImpl;
@@ -23,6 +24,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,21 +32,24 @@ import static org.junit.jupiter.api.Assertions.*;
 public class HabitServiceImplTest {
     public static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:13");
 
+    private static DatabaseConnection databaseConnection;
     private static HabitsRepository habitsRepository;
     private static HabitsService habitsService;
 
     @BeforeAll
     static void beforeAll() throws LiquibaseException, SQLException {
         postgres.start();
-        Connection connection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()).getConnection();
-        Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
-        Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
-        liquibase.update();
+        try (DatabaseConnection migrationConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Connection connection = migrationConnection.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
+            liquibase.update();
+        }
     }
 
     @BeforeEach
     void setUp() {
-        DatabaseConnection databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
         try (Connection connection = databaseConnection.getConnection();
              Statement statement = connection.createStatement()) {
             statement.execute("DROP SEQUENCE IF EXISTS habit_tracking_schema.habit_sequence CASCADE");
@@ -58,7 +63,11 @@ public class HabitServiceImplTest {
                     "    frequency INT NOT NULL,\n" +
                     "    created_date DATE NOT NULL,\n" +
                     "    user_id BIGINT NOT NULL,\n" +
+                    "    current_streak INT NOT NULL DEFAULT 0,\n" +
+                    "    longest_streak INT NOT NULL DEFAULT 0,\n" +
+                    "    last_completed_date DATE,\n" +
                     "    CONSTRAINT fk_habit_user FOREIGN KEY (user_id) REFERENCES habit_tracking_schema.users(id) ON DELETE CASCADE)");
+            statement.executeUpdate("CREATE INDEX ix_habit_user_id_created_date ON habit_tracking_schema.habit (user_id, created_date)");
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
@@ -82,6 +91,28 @@ public class HabitServiceImplTest {
         assertEquals(1L, response.data().getId());
     }
 
+    @Test
+    @DisplayName("Given several habits When find by ids Then existing habits of user are returned")
+    void givenSeveralHabits_WhenFindByIds_ThenExistingHabitsOfUserAreReturned() {
+        Habit first = habitsService.create(new Habit(null, "Exercise", "Daily exercise", Frequency.DAILY, 1L, LocalDate.now())).data();
+        Habit second = habitsService.create(new Habit(null, "Reading", "Read 10 pages", Frequency.DAILY, 1L, LocalDate.now())).data();
+
+        BaseResponse<Map<Long, Habit>> response = habitsService.findByIds(1L, List.of(first.getId(), second.getId(), 999L));
+
+        assertEquals("The habits found.", response.status());
+        assertEquals(2, response.data().size());
+        assertEquals("Reading", response.data().get(second.getId()).getName());
+    }
+
+    @Test
+    @DisplayName("Given reversed period When find dashboard Then throw InvalidPeriodException")
+    void givenReversedPeriod_WhenFindDashboard_ThenThrowInvalidPeriodException() {
+        LocalDate today = LocalDate.now();
+
+        assertThrows(InvalidPeriodException.class, () -> habitsService.findDashboard(1L, today, today.minusDays(1)));
+        assertThrows(RuntimeException.class, () -> habitsService.findDashboard(99L, today.minusDays(1), today));
+    }
+
     @Test
     @DisplayName("Given non-existing user When creating habit Then throw exception")
     void givenNonExistingUser_WhenCreatingHabit_ThenThrowException() {
@@ -175,6 +206,27 @@ public class HabitServiceImplTest {
         assertEquals(2, response.data().size());
     }
 
+    @Test
+    @DisplayName("Given more habits than page size When paging by continuation token Then every habit is returned once")
+    void givenMoreHabitsThanPageSize_WhenPagingByContinuationToken_ThenEveryHabitIsReturnedOnce() {
+        for (int i = 0; i < 5; i++) {
+            habitsService.create(new Habit(null, "Habit " + i, "Description", Frequency.DAILY, 1L, LocalDate.now()));
+        }
+
+        BaseResponse<List<Habit>> first = habitsService.findByUserId(1L, null, 2);
+        BaseResponse<List<Habit>> second = habitsService.findByUserId(1L, first.continuationToken(), 2);
+        BaseResponse<List<Habit>> last = habitsService.findByUserId(1L, second.continuationToken(), 2);
+
+        assertEquals(2, first.data().size());
+        assertEquals(2, second.data().size());
+        assertEquals(1, last.data().size());
+        assertNotNull(first.continuationToken());
+        assertNotNull(second.continuationToken());
+        assertNull(last.continuationToken());
+        assertTrue(first.data().get(1).getId() < second.data().get(0).getId());
+        assertTrue(second.data().get(1).getId() < last.data().get(0).getId());
+    }
+
     @Test
     @DisplayName("Given user with habits on specific date When findByUserIdAndDate Then return habits for that date")
     void givenUserWithHabitsOnSpecificDate_WhenFindByUserIdAndDate_ThenReturnHabitsForThatDate() {
@@ -191,6 +243,11 @@ public class HabitServiceImplTest {
         assertEquals(1, response.data().size());
     }
 
+    @AfterEach
+    void tearDown() {
+        databaseConnection.close();
+    }
+
     @AfterAll
     static void afterAll() {
         postgres.stop();
@@ -9,9 +9,11 @@ import liquibase.resource.ClassLoaderResourceAccessor;
 import org.junit.jupiter.api.*;
 import org.testcontainers.containers.PostgreSQLContainer;
 import ru.ylab.habittracker.app.DatabaseConnection;
+import ru.ylab.habittracker.app.TransactionTemplate;
 import ru.ylab.habittracker.dto.*;
 import ru.ylab.habittracker.models.Users;
 import ru.ylab.habittracker.repositories.UsersRepository;
+import ru.ylab.habittracker.repositories.impl.CachingUsersRepository;
 import ru.ylab.habittracker.repositories.impl.UsersRepositoryImpl;
 import ru.ylab.habittracker.services.UsersService;
 import ru.ylab.habittracker.services.impl.AuthenticationService;
@@ -27,6 +29,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 public class UsersServiceImplTest {
     public static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:13");
+    private static DatabaseConnection databaseConnection;
     private static UsersRepository usersRepository;
     private static UsersService usersService;
     private static AuthenticationService authenticationService;
@@ -34,15 +37,17 @@ public class UsersServiceImplTest {
     @BeforeAll
     public static void beforeAll() throws LiquibaseException, SQLException {
         postgres.start();
-        Connection connection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()).getConnection();
-        Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
-        Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
-        liquibase.update();
+        try (DatabaseConnection migrationConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Connection connection = migrationConnection.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml", new ClassLoaderResourceAccessor(), database);
+            liquibase.update();
+        }
     }
 
     @BeforeEach
     void setUp() {
-        DatabaseConnection databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        databaseConnection = new DatabaseConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
         try (Connection connection = databaseConnection.getConnection();
              Statement statement = connection.createStatement()) {
             statement.execute("DROP SEQUENCE IF EXISTS habit_tracking_schema.users_sequence CASCADE");
@@ -131,6 +136,16 @@ public class UsersServiceImplTest {
         assertEquals("Admin not found", exception.getMessage());
     }
 
+    @Test
+    @DisplayName("Given null ids When admin operations and update are called Then throw not found exceptions")
+    void givenNullIds_WhenAdminOperationsAndUpdateAreCalled_ThenThrowNotFoundExceptions() {
+        assertEquals("Admin not found", assertThrows(RuntimeException.class, () -> usersService.blockUser(null, 1L)).getMessage());
+        assertEquals("User not found", assertThrows(RuntimeException.class, () -> usersService.blockUser(1L, null)).getMessage());
+        assertEquals("User not found", assertThrows(RuntimeException.class, () -> usersService.deleteUserByAdmin(1L, null)).getMessage());
+        assertEquals("User not found", assertThrows(RuntimeException.class,
+                () -> usersService.update(new UpdateUserProfileRequest(null, "New Name", "new@example.com", "password"))).getMessage());
+    }
+
     @Test
     @DisplayName("Given user is not admin When blocking user Then throw exception")
     void givenUserIsNotAdmin_WhenBlockingUser_ThenThrowException() {
@@ -306,6 +321,58 @@ public class UsersServiceImplTest {
         assertEquals("Wrong password", exception.getMessage());
     }
 
+    @Test
+    @DisplayName("Given transaction template When block user Then one connection is borrowed and user is blocked")
+    void givenTransactionTemplate_WhenBlockUser_ThenOneConnectionIsBorrowedAndUserIsBlocked() {
+        Users admin = usersRepository.save(new Users(null, "admin", "admin@example.com", "password", Role.ADMIN, false));
+        Users user = usersRepository.save(new Users(null, "user", "user@example.com", "password", Role.USER, false));
+        UsersService transactionalService = new UsersServiceImpl(usersRepository, new TransactionTemplate(databaseConnection));
+
+        long borrowedBefore = databaseConnection.getPoolStatistics().borrowed();
+        transactionalService.blockUser(admin.getId(), user.getId());
+
+        assertEquals(1, databaseConnection.getPoolStatistics().borrowed() - borrowedBefore);
+        assertTrue(usersRepository.findById(user.getId()).orElseThrow().isBlocked());
+    }
+
+    @Test
+    @DisplayName("Given admin demoted behind the cache When block user in transaction Then current role is checked")
+    void givenAdminDemotedBehindCache_WhenBlockUserInTransaction_ThenCurrentRoleIsChecked() {
+        Users admin = usersRepository.save(new Users(null, "admin", "admin@example.com", "password", Role.ADMIN, false));
+        Users user = usersRepository.save(new Users(null, "user", "user@example.com", "password", Role.USER, false));
+        CachingUsersRepository cachingRepository = new CachingUsersRepository(usersRepository, 10, 60_000);
+        UsersService transactionalService = new UsersServiceImpl(cachingRepository, new TransactionTemplate(databaseConnection));
+        cachingRepository.findById(admin.getId());
+
+        admin.setRole(Role.USER);
+        usersRepository.update(admin);
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> transactionalService.blockUser(admin.getId(), user.getId()));
+        assertEquals("Forbidden", exception.getMessage());
+        assertFalse(usersRepository.findById(user.getId()).orElseThrow().isBlocked());
+    }
+
+    @Test
+    @DisplayName("Given failing action When executed in transaction Then earlier changes are rolled back")
+    void givenFailingAction_WhenExecutedInTransaction_ThenEarlierChangesAreRolledBack() {
+        Users user = usersRepository.save(new Users(null, "user", "user@example.com", "password", Role.USER, false));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(databaseConnection);
+
+        assertThrows(RuntimeException.class, () -> transactionTemplate.executeWithoutResult(() -> {
+            user.setBlocked(true);
+            usersRepository.update(user);
+            throw new RuntimeException("Forbidden");
+        }));
+
+        assertFalse(usersRepository.findById(user.getId()).orElseThrow().isBlocked());
+    }
+
+    @AfterEach
+    void tearDown() {
+        databaseConnection.close();
+    }
+
     @AfterAll
     public static void afterAll() {
         postgres.stop();
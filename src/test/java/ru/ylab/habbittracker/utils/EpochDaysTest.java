@@ -0,0 +1,49 @@
+package ru.ylab.habbittracker.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ylab.habittracker.models.StreakInterval;
+import ru.ylab.habittracker.utils.EpochDays;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpochDaysTest {
+    private static final LocalDate START = LocalDate.of(2015, 1, 1);
+
+    @Test
+    @DisplayName("Given ten-year daily history When countInRange Then days of the period are counted")
+    void givenTenYearDailyHistory_WhenCountInRange_ThenDaysOfPeriodAreCounted() {
+        int[] days = IntStream.range(0, 3653).map(i -> (int) START.plusDays(i).toEpochDay()).toArray();
+
+        assertEquals(31, EpochDays.countInRange(days, LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 31)));
+        assertEquals(3653, EpochDays.countInRange(days, START.minusYears(1), START.plusYears(20)));
+        assertEquals(0, EpochDays.countInRange(days, START.minusDays(10), START.minusDays(1)));
+        assertEquals(0, EpochDays.countInRange(days, START.plusDays(5), START));
+    }
+
+    @Test
+    @DisplayName("Given history with gaps When streaks Then every run of days is returned")
+    void givenHistoryWithGaps_WhenStreaks_ThenEveryRunOfDaysIsReturned() {
+        int start = (int) START.toEpochDay();
+
+        assertEquals(List.of(new StreakInterval(START, START.plusDays(1)), new StreakInterval(START.plusDays(5), START.plusDays(5))),
+                EpochDays.streaks(new int[]{start, start + 1, start + 5}));
+        assertTrue(EpochDays.streaks(new int[0]).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given history with a gap When streakEndingAt Then streak stops at the gap")
+    void givenHistoryWithGap_WhenStreakEndingAt_ThenStreakStopsAtGap() {
+        int start = (int) START.toEpochDay();
+        int[] days = {start, start + 1, start + 3, start + 4, start + 5};
+
+        assertEquals(3, EpochDays.streakEndingAt(days, START.plusDays(5)));
+        assertEquals(2, EpochDays.streakEndingAt(days, START.plusDays(1)));
+        assertEquals(0, EpochDays.streakEndingAt(days, START.plusDays(2)));
+        assertEquals(0, EpochDays.streakEndingAt(new int[0], START));
+    }
+}
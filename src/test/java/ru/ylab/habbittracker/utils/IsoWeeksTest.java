@@ -0,0 +1,52 @@
+package ru.ylab.habbittracker.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ylab.habittracker.models.StreakInterval;
+import ru.ylab.habittracker.utils.IsoWeeks;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsoWeeksTest {
+    private static final LocalDate MONDAY = LocalDate.of(2024, 10, 21);
+
+    @Test
+    @DisplayName("Given period crossing week boundaries When weeksInPeriod Then every touched week is counted")
+    void givenPeriodCrossingWeekBoundaries_WhenWeeksInPeriod_ThenEveryTouchedWeekIsCounted() {
+        assertEquals(MONDAY, IsoWeeks.weekStart(MONDAY.plusDays(6)));
+        assertEquals(1, IsoWeeks.weeksInPeriod(MONDAY, MONDAY.plusDays(6)));
+        assertEquals(2, IsoWeeks.weeksInPeriod(MONDAY.minusDays(1), MONDAY));
+        assertEquals(0, IsoWeeks.weeksInPeriod(MONDAY, MONDAY.minusDays(1)));
+    }
+
+    @Test
+    @DisplayName("Given completion days When streaks Then days are grouped into runs of ISO weeks")
+    void givenCompletionDays_WhenStreaks_ThenDaysAreGroupedIntoRunsOfIsoWeeks() {
+        int monday = (int) MONDAY.toEpochDay();
+        int[] days = {monday - 1, monday + 2, monday + 6, monday + 7, monday + 21};
+
+        assertEquals(List.of(
+                new StreakInterval(MONDAY.minusWeeks(1), MONDAY.plusWeeks(1).plusDays(6), 3),
+                new StreakInterval(MONDAY.plusWeeks(3), MONDAY.plusWeeks(3).plusDays(6), 1)), IsoWeeks.streaks(days));
+        assertTrue(IsoWeeks.streaks(new int[0]).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given weekly streaks When streakEndingAt and countCompletedWeeks Then weeks are counted")
+    void givenWeeklyStreaks_WhenStreakEndingAtAndCountCompletedWeeks_ThenWeeksAreCounted() {
+        List<StreakInterval> streaks = List.of(
+                new StreakInterval(MONDAY, MONDAY.plusDays(6), 1),
+                new StreakInterval(MONDAY.plusWeeks(2), MONDAY.plusWeeks(4).plusDays(6), 3));
+
+        assertEquals(3, IsoWeeks.streakEndingAt(streaks, MONDAY.plusWeeks(4).plusDays(3)));
+        assertEquals(2, IsoWeeks.streakEndingAt(streaks, MONDAY.plusWeeks(3)));
+        assertEquals(0, IsoWeeks.streakEndingAt(streaks, MONDAY.plusWeeks(1)));
+        assertEquals(0, IsoWeeks.streakEndingAt(streaks, MONDAY.plusWeeks(5)));
+        assertEquals(1, IsoWeeks.streakEndingAt(streaks, MONDAY.plusDays(6)));
+        assertEquals(4, IsoWeeks.countCompletedWeeks(streaks, MONDAY.plusDays(3), MONDAY.plusWeeks(4)));
+        assertEquals(2, IsoWeeks.countCompletedWeeks(streaks, MONDAY.plusWeeks(1), MONDAY.plusWeeks(3)));
+    }
+}